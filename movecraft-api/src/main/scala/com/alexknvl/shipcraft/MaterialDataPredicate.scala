@@ -8,13 +8,23 @@ import org.bukkit.material.MaterialData
 sealed abstract class MaterialDataPredicate {
   def isTrivial: Boolean
 
-  def check(materialData: MaterialData): Boolean
-  def check(material: Material): Boolean = check(new MaterialData(material))
-  def check(material: Material, data: Byte): Boolean = check(new MaterialData(material, data))
-  def checkBlock(block: Block): Boolean = check(block.getState.getData)
+  /** Checks a block given by its raw type id and data value, without allocating. */
+  def check(typeId: Int, data: Byte): Boolean
+
+  def check(materialData: MaterialData): Boolean = check(materialData.getItemTypeId, materialData.getData)
+  def check(material: Material): Boolean = check(material.getId, 0.toByte)
+  def check(material: Material, data: Byte): Boolean = check(material.getId, data)
+  def checkBlock(block: Block): Boolean = check(block.getTypeId, block.getData)
 
   def allMaterials: Set[Material]
   def allMaterialDataPairs: Set[MaterialData]
+
+  /**
+    * Returns a predicate that answers the same as this one, with a single lookup into a table
+    * of every (typeId, data) pair. The table takes 8 KiB, so compile predicates once when
+    * they are loaded rather than per check.
+    */
+  def compile: MaterialDataPredicate = MaterialDataPredicate.Compiled(this)
 }
 
 object MaterialDataPredicate {
@@ -40,7 +50,9 @@ object MaterialDataPredicate {
   final private case object None extends MaterialDataPredicate {
     def isTrivial = true
 
-    def check(materialData: MaterialData) = false
+    def check(typeId: Int, data: Byte) = false
+
+    override def compile: MaterialDataPredicate = this
 
     def allMaterials: Set[Material] = Set.empty
 
@@ -59,7 +71,10 @@ object MaterialDataPredicate {
 
     def isTrivial: Boolean = NON_AIR_BLOCK_MATERIALS.nonEmpty
 
-    def check(materialData: MaterialData): Boolean = (materialData.getItemType ne Material.AIR) && materialData.getItemType.isBlock
+    def check(typeId: Int, data: Byte): Boolean = {
+      val material = Material.getMaterial(typeId)
+      (material ne null) && (material ne Material.AIR) && material.isBlock
+    }
 
     def allMaterials = NON_AIR_BLOCK_MATERIALS
 
@@ -73,7 +88,9 @@ object MaterialDataPredicate {
 
     def isTrivial = false
 
-    def check(materialData: MaterialData): Boolean = material eq materialData.getItemType
+    private val typeId = material.getId
+
+    def check(typeId: Int, data: Byte): Boolean = this.typeId == typeId
 
     def allMaterials: Set[Material] = Set(material)
 
@@ -87,7 +104,10 @@ object MaterialDataPredicate {
 
     def isTrivial = false
 
-    def check(materialData: MaterialData): Boolean = this.materialData == materialData
+    private val typeId = materialData.getItemTypeId
+    private val data = materialData.getData
+
+    def check(typeId: Int, data: Byte): Boolean = this.typeId == typeId && this.data == data
 
     def allMaterials: Set[Material] = Set.empty
 
@@ -101,7 +121,12 @@ object MaterialDataPredicate {
 
     def isTrivial = false
 
-    def check(materialData: MaterialData): Boolean = materials.contains(materialData.getItemType) || materialDataPairs.contains(materialData)
+    // sorted (typeId << 4 | data) keys of the material data pairs
+    private val pairKeys = materialDataPairs.iterator.map(x => x.getItemTypeId << 4 | x.getData & 15).toArray.sorted
+
+    def check(typeId: Int, data: Byte): Boolean =
+      materials.contains(Material.getMaterial(typeId)) ||
+        java.util.Arrays.binarySearch(pairKeys, typeId << 4 | data & 15) >= 0
 
     def allMaterials: Set[Material] = materials
 
@@ -111,6 +136,40 @@ object MaterialDataPredicate {
       "(" + (materials.map(_.toString) ++ materialDataPairs.map(_.toString)).mkString(" | ") + ")"
   }
 
+  // one bit per (typeId << 4 | data) for the 12 bit type ids and 4 bit data values of a chunk section
+  private val TABLE_SIZE = 1 << 16
+
+  final private case class Compiled(source: MaterialDataPredicate) extends MaterialDataPredicate {
+    Preconditions.checkNotNull(source)
+
+    private val table: Array[Long] = {
+      val result = new Array[Long](TABLE_SIZE >>> 6)
+      var key = 0
+      while (key < TABLE_SIZE) {
+        if (source.check(key >>> 4, (key & 15).toByte)) result(key >>> 6) |= 1L << key
+        key += 1
+      }
+      result
+    }
+
+    def isTrivial: Boolean = source.isTrivial
+
+    override def compile: MaterialDataPredicate = this
+
+    def check(typeId: Int, data: Byte): Boolean =
+      if ((typeId >>> 12) != 0 || (data & 0xF0) != 0) source.check(typeId, data)
+      else {
+        val key = typeId << 4 | data
+        (table(key >>> 6) & (1L << key)) != 0
+      }
+
+    def allMaterials: Set[Material] = source.allMaterials
+
+    def allMaterialDataPairs: Set[MaterialData] = source.allMaterialDataPairs
+
+    override def toString: String = source.toString
+  }
+
   class Builder() {
     final private val materials = Set.newBuilder[Material]
     final private val materialDataPairs = Set.newBuilder[MaterialData]
@@ -122,6 +181,7 @@ object MaterialDataPredicate {
 
     def add(predicate: MaterialDataPredicate): Unit =
       if (!all) predicate match {
+        case MaterialDataPredicate.Compiled(x) => add(x)
         case MaterialDataPredicate.None => ()
         case MaterialDataPredicate.SingleMaterial(x) => materials.+=(x)
         case MaterialDataPredicate.SingleMaterialData(x) => materialDataPairs.+=(x)
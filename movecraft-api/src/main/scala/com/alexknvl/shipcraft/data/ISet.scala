@@ -41,10 +41,10 @@ object ISet {
   }
 
   private final case class And[A](args: List[ISet[A]]) extends ISet[A] {
-    def apply(a: A): Boolean = args.map(_.apply(a)).forall(identity)
+    def apply(a: A): Boolean = args.forall(_.apply(a))
   }
   private final case class Or[A](args: List[ISet[A]]) extends ISet[A] {
-    def apply(a: A): Boolean = args.map(_.apply(a)).exists(identity)
+    def apply(a: A): Boolean = args.exists(_.apply(a))
   }
   private final case class Not[A](arg: ISet[A]) extends ISet[A] {
     def apply(a: A): Boolean = !arg.apply(a)
@@ -25,16 +25,19 @@ import com.sk89q.worldguard.bukkit.WorldGuardPlugin;
 import com.sk89q.worldguard.protection.flags.StateFlag;
 import net.countercraft.movecraft.api.MovecraftPlugin;
 import net.countercraft.movecraft.async.AsyncManager;
+import net.countercraft.movecraft.async.detection.DetectionCache;
 import net.countercraft.movecraft.config.Settings;
 import net.countercraft.movecraft.craft.CraftManager;
 import net.countercraft.movecraft.listener.BlockListener;
 import net.countercraft.movecraft.listener.CommandListener;
 import net.countercraft.movecraft.listener.CraftHelpListener;
+import net.countercraft.movecraft.listener.DetectionCacheListener;
 import net.countercraft.movecraft.listener.InteractListener;
 import net.countercraft.movecraft.listener.PlayerListener;
 import net.countercraft.movecraft.listener.WorldEditInteractListener;
 import net.countercraft.movecraft.localisation.I18nSupport;
 import net.countercraft.movecraft.detail.MapUpdateManager;
+import net.countercraft.movecraft.detail.WorldSnapshotService;
 import net.countercraft.movecraft.utils.WGCustomFlagsUtils;
 import net.milkbowl.vault.economy.Economy;
 import org.bukkit.Material;
@@ -78,6 +81,9 @@ public class Movecraft extends JavaPlugin implements MovecraftPlugin {
     @Override public void onDisable() {
         // Process the storage crates to disk
         this.shuttingDown = true;
+        if (this.asyncManager != null) {
+            this.asyncManager.close();
+        }
     }
 
     @Override public void onEnable() {
@@ -117,6 +123,14 @@ public class Movecraft extends JavaPlugin implements MovecraftPlugin {
         this.settings.FireballLifespan = config.getInt("FireballLifespan", 6);
         this.settings.FireballPenetration = config.getBoolean("FireballPenetration", true);
         this.settings.BlockQueueChunkSize = config.getInt("BlockQueueChunkSize", 1000);
+        this.settings.DetectionSnapshotRadius = config.getInt("DetectionSnapshotRadius", 32);
+        this.settings.DetectionMaxRadius = config.getInt("DetectionMaxRadius", 256);
+        this.settings.DetectionMaxSnapshotSections = config.getInt("DetectionMaxSnapshotSections", 2048);
+        this.settings.ParallelDetectionThreshold = config.getInt("ParallelDetectionThreshold", 0);
+        this.settings.ParallelDetectionThreads = config.getInt("ParallelDetectionThreads", 4);
+        this.settings.TaskApplyMillisPerTick = config.getInt("TaskApplyMillisPerTick", 5);
+        this.settings.DetectionCacheSize = config.getInt("DetectionCacheSize", 64);
+        this.settings.DetectionCacheSeconds = config.getInt("DetectionCacheSeconds", 10);
         this.settings.ProtectPilotedCrafts = config.getBoolean("ProtectPilotedCrafts", false);
         this.settings.AllowCrewSigns = config.getBoolean("AllowCrewSigns", true);
         this.settings.SetHomeToCrewSign = config.getBoolean("SetHomeToCrewSign", true);
@@ -220,13 +234,19 @@ public class Movecraft extends JavaPlugin implements MovecraftPlugin {
         } else {
             this.craftManager = new CraftManager(this.settings, this.i18nSupport, this);
             this.craftManager.initCraftTypes();
-            this.mapUpdateManager = new MapUpdateManager(this, this.settings.CompatibilityMode, this.settings.BlockQueueChunkSize);
-            this.asyncManager = new AsyncManager(this.settings, this.i18nSupport, this.craftManager, this, this.mapUpdateManager);
+            final WorldSnapshotService worldSnapshots = new WorldSnapshotService(this.settings.CompatibilityMode);
+            final DetectionCache detectionCache = new DetectionCache(Math.max(this.settings.DetectionCacheSize, 0),
+                                                                     Math.max(this.settings.DetectionCacheSeconds, 0) * 1000L);
+            this.mapUpdateManager = new MapUpdateManager(this, this.settings.CompatibilityMode, this.settings.BlockQueueChunkSize,
+                                                         worldSnapshots, detectionCache);
+            this.asyncManager = new AsyncManager(this.settings, this.i18nSupport, this.craftManager, this, this.mapUpdateManager,
+                                                 worldSnapshots, detectionCache);
 
             // Startup procedure
             this.asyncManager.runTaskTimer(this, 0, 1);
             this.mapUpdateManager.runTaskTimer(this, 0, 1);
 
+            this.getServer().getPluginManager().registerEvents(new DetectionCacheListener(detectionCache), this);
             this.getServer().getPluginManager()
                 .registerEvents(new InteractListener(this, this.settings, this.i18nSupport, this.craftManager,
                                                             this.asyncManager),
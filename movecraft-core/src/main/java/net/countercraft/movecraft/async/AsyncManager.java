@@ -18,35 +18,45 @@
 package net.countercraft.movecraft.async;
 
 import at.pavlov.cannons.cannon.Cannon;
+import com.alexknvl.shipcraft.math.AABB;
 import com.alexknvl.shipcraft.math.BlockVec;
 import com.alexknvl.shipcraft.math.RotationXZ;
-import com.google.common.base.Optional;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableList;
 import com.sk89q.worldguard.protection.ApplicableRegionSet;
 import com.sk89q.worldguard.protection.flags.DefaultFlag;
 import net.countercraft.movecraft.Events;
 import net.countercraft.movecraft.Movecraft;
 import com.alexknvl.shipcraft.math.Direction;
-import com.alexknvl.shipcraft.MaterialDataPredicate;
+import net.countercraft.movecraft.async.detection.DetectionCache;
+import net.countercraft.movecraft.async.detection.DetectionRegion;
 import net.countercraft.movecraft.async.detection.DetectionTask;
 import net.countercraft.movecraft.async.detection.DetectionTaskData;
 import net.countercraft.movecraft.async.rotation.RotationTask;
 import net.countercraft.movecraft.async.translation.TranslationTask;
 import net.countercraft.movecraft.async.translation.TranslationTaskData;
 import net.countercraft.movecraft.config.Settings;
+import net.countercraft.movecraft.craft.BlockSet;
 import net.countercraft.movecraft.craft.Craft;
+import net.countercraft.movecraft.craft.CraftGeometry;
 import net.countercraft.movecraft.craft.CraftManager;
+import net.countercraft.movecraft.craft.CraftState;
 import net.countercraft.movecraft.craft.CraftType;
+import net.countercraft.movecraft.craft.FlyBlockTable;
+import net.countercraft.movecraft.craft.PackedBlockSet;
+import net.countercraft.movecraft.craft.SpecialBlockIndex;
 import net.countercraft.movecraft.localisation.I18nSupport;
-import net.countercraft.movecraft.utils.BlockUtils;
+import net.countercraft.movecraft.detail.EntitySnapshot;
 import net.countercraft.movecraft.detail.MapUpdateCommand;
 import net.countercraft.movecraft.detail.MapUpdateManager;
+import net.countercraft.movecraft.detail.WorldSnapshot;
+import net.countercraft.movecraft.detail.WorldSnapshotService;
 import net.countercraft.movecraft.utils.MathUtils;
 import net.countercraft.movecraft.utils.WGCustomFlagsUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.TNTPrimed;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -54,6 +64,7 @@ import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -63,6 +74,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 
@@ -72,32 +84,124 @@ public final class AsyncManager extends BukkitRunnable {
     @Nonnull private final CraftManager craftManager;
     @Nonnull private final Movecraft plugin;
     @Nonnull private final MapUpdateManager mapUpdateManager;
+    @Nonnull private final WorldSnapshotService worldSnapshots;
+    @Nonnull private final DetectionCache detectionCache;
     @Nonnull private final Events events = new Events(Bukkit.getPluginManager());
 
     private final Map<AsyncTask, Craft> ownershipMap = new HashMap<>();
     private final Map<org.bukkit.entity.TNTPrimed, Double> TNTTracking = new HashMap<>();
     private final Map<org.bukkit.entity.SmallFireball, Long> FireballTracking = new HashMap<>();
     private final BlockingQueue<AsyncTask> finishedAlgorithms = new LinkedBlockingQueue<>();
+    private final TaskTimings timings = new TaskTimings();
+    private final TaskApplier applier = new TaskApplier() {
+        @Override public boolean applyDetection(final DetectionTask task, final Craft craft) {
+            return AsyncManager.this.applyDetection(task, craft);
+        }
+
+        @Override public boolean applyTranslation(final TranslationTask task, final Craft craft) {
+            return AsyncManager.this.applyTranslation(task, craft);
+        }
+
+        @Override public boolean applyRotation(final RotationTask task, final Craft craft) {
+            return AsyncManager.this.applyRotation(task, craft);
+        }
+    };
     private final Set<Craft> clearanceSet = new HashSet<>();
     private long lastTracerUpdate = 0;
     private long lastFireballCheck = 0;
     private long lastTNTContactCheck = 0;
     private long lastFadeCheck = 0;
+    private long lastTimingsReport = 0;
+    private ForkJoinPool detectionPool;
 
     public AsyncManager(@Nonnull final Settings settings, @Nonnull final I18nSupport i18n, @Nonnull final CraftManager craftManager,
-                        @Nonnull final Movecraft plugin, @Nonnull final MapUpdateManager mapUpdateManager)
+                        @Nonnull final Movecraft plugin, @Nonnull final MapUpdateManager mapUpdateManager,
+                        @Nonnull final WorldSnapshotService worldSnapshots, @Nonnull final DetectionCache detectionCache)
     {
         this.settings = settings;
         this.i18n = i18n;
         this.craftManager = craftManager;
         this.plugin = plugin;
         this.mapUpdateManager = mapUpdateManager;
+        this.worldSnapshots = worldSnapshots;
+        this.detectionCache = detectionCache;
+    }
+
+    public DetectionCache getDetectionCache() {
+        return this.detectionCache;
+    }
+
+    /**
+     * Returns the time tasks spent in each stage. The timings are logged and reset every minute in debug mode.
+     */
+    public TaskTimings getTimings() {
+        return this.timings;
+    }
+
+    /**
+     * Shuts down the pool crafts are detected in parallel with. Detections that are already running finish.
+     */
+    public void close() {
+        if (this.detectionPool != null) {
+            this.detectionPool.shutdown();
+            this.detectionPool = null;
+        }
     }
 
     public void detect(final Craft craft, final Player player, final Player notificationPlayer, final BlockVec startPoint) {
+        // a connected craft can't reach further from the start point than its block limit
+        final int maxRadius = Math.max(Math.min(this.settings.DetectionMaxRadius, craft.type.getSizeRange().max()), 0);
+        final int radius = Math.max(Math.min(this.settings.DetectionSnapshotRadius, maxRadius), 0);
+        final DetectionRegion region = DetectionRegion.around(startPoint, radius, maxRadius,
+                                                              this.settings.DetectionMaxSnapshotSections);
+
+        final long gatherStart = System.nanoTime();
+        final DetectionCache.Result cached = this.detectionCache.get(craft.world, startPoint, craft.type,
+                                                                     player == null ? null : player.getUniqueId());
+        if (cached != null) {
+            this.submitTask(new DetectionTask(craft, startPoint, craft.type.getSizeRange(), craft.type.getAllowedBlocks(),
+                                              craft.type.getForbiddenBlocks(), player, notificationPlayer, craft.world,
+                                              this.plugin, this.settings, this.i18n,
+                                              this.worldSnapshots.empty(craft.world), region, null, cached), craft,
+                            gatherStart);
+            return;
+        }
+
         this.submitTask(new DetectionTask(craft, startPoint, craft.type.getSizeRange(), craft.type.getAllowedBlocks(),
                                           craft.type.getForbiddenBlocks(), player, notificationPlayer, craft.world,
-                                          this.plugin, this.settings, this.i18n), craft);
+                                          this.plugin, this.settings, this.i18n,
+                                          this.worldSnapshots.capture(craft.world, region.getBounds(),
+                                                                      DetectionRegion.MARGIN), region,
+                                          this.detectionPoolFor(craft.type), null), craft, gatherStart);
+    }
+
+    /**
+     * Detects the craft {@code task} found reaching past its region again in {@code region}. Only
+     * the sections the grown region adds to the snapshot of the task are copied.
+     */
+    private void redetect(final Craft craft, final DetectionTask task, final DetectionRegion region) {
+        final long gatherStart = System.nanoTime();
+        final DetectionTaskData data = task.getData();
+        this.submitTask(new DetectionTask(craft, task.getStartLocation(), craft.type.getSizeRange(),
+                                          craft.type.getAllowedBlocks(), craft.type.getForbiddenBlocks(),
+                                          data.getPlayer(), data.getNotificationPlayer(), craft.world, this.plugin,
+                                          this.settings, this.i18n,
+                                          this.worldSnapshots.extend(task.getSnapshot(), region.getBounds(),
+                                                                     DetectionRegion.MARGIN), region,
+                                          this.detectionPoolFor(craft.type), null), craft, gatherStart);
+    }
+
+    /**
+     * Returns the pool to detect crafts of {@code type} in parallel with, or null to detect them
+     * on a single thread. Only types whose size limit reaches the configured threshold use the pool.
+     */
+    @Nullable private ForkJoinPool detectionPoolFor(final CraftType type) {
+        final int threshold = this.settings.ParallelDetectionThreshold;
+        if (threshold <= 0 || type.getSizeRange().max() < threshold) return null;
+        if (this.detectionPool == null) {
+            this.detectionPool = new ForkJoinPool(Math.max(this.settings.ParallelDetectionThreads, 1));
+        }
+        return this.detectionPool;
     }
 
     public void translate(final Craft craft, int dx, int dy, int dz) {
@@ -119,17 +223,19 @@ public final class AsyncManager extends BukkitRunnable {
             }
         }
 
+        // a busy craft would drop the task, so don't load or copy anything for it
+        if (!craft.isNotProcessing()) return;
+
         // find region that will need to be loaded to translate this craft
-        int cminX = craft.getMinX();
-        int cmaxX = craft.getMinX();
+        final long gatherStart = System.nanoTime();
+        final CraftState state = craft.getState();
+        final CraftGeometry geometry = state.getGeometry();
+        int cminX = geometry.getMinX();
+        int cmaxX = geometry.getMaxX();
         if (dx < 0) cminX = cminX + dx;
-        int cminZ = craft.getMinZ();
-        int cmaxZ = craft.getMinZ();
+        int cminZ = geometry.getMinZ();
+        int cmaxZ = geometry.getMaxZ();
         if (dz < 0) cminZ = cminZ + dz;
-        for (final BlockVec m : craft.getBlockList()) {
-            if (m.x() > cmaxX) cmaxX = m.x();
-            if (m.z() > cmaxZ) cmaxZ = m.z();
-        }
         if (dx > 0) cmaxX = cmaxX + dx;
         if (dz > 0) cmaxZ = cmaxZ + dz;
         cminX = cminX >> 4;
@@ -147,21 +253,58 @@ public final class AsyncManager extends BukkitRunnable {
         }
 
         this.submitTask(new TranslationTask(craft, this.plugin, this.settings, this.i18n, this.craftManager,
-                                            new TranslationTaskData(dx, dz, dy, craft.getBlockList(), craft.getHitBox(),
-                                                               craft.getMinZ(), craft.getMinX(),
-                                                               craft.type.getHeightRange())), craft);
+                                            new TranslationTaskData(dx, dz, dy, state.getBlocks().toArray(), geometry,
+                                                                    craft.type.getHeightRange()),
+                                            this.captureTranslation(craft, geometry.getBounds(), dx, dy, dz),
+                                            craft.getType().getMoveEntities() && !craft.getSinking() ?
+                                            this.captureEntities(craft, geometry.getBounds()) : ImmutableList.of()), craft,
+                        gatherStart);
+    }
+
+    // The craft before and after the move and the blocks around it, the space a hovercraft may
+    // search above and below it, and the ground check under crafts with a height limit.
+    private WorldSnapshot captureTranslation(final Craft craft, final AABB bounds, final int dx, final int dy, final int dz) {
+        if (bounds == null) return this.worldSnapshots.empty(craft.getWorld());
+        final CraftType type = craft.getType();
+        final int hoverRange = type.getHoverLimit() + 3;
+        final int below = Math.max(hoverRange, type.getMaxHeightAboveGround() + 1);
+        final AABB region = new AABB(Math.min(bounds.minX(), bounds.minX() + dx),
+                                     bounds.minY() + Math.min(dy, 0) - below,
+                                     Math.min(bounds.minZ(), bounds.minZ() + dz),
+                                     Math.max(bounds.maxX(), bounds.maxX() + dx),
+                                     Math.max(bounds.maxY() + Math.max(dy, 0) + hoverRange, type.getStaticWaterLevel()),
+                                     Math.max(bounds.maxZ(), bounds.maxZ() + dz));
+        return this.worldSnapshots.capture(craft.getWorld(), region, 2);
+    }
+
+    // Everything that may be standing on the craft: the hitbox check allows two blocks above its top
+    private ImmutableList<EntitySnapshot> captureEntities(final Craft craft, final AABB bounds) {
+        if (bounds == null) return ImmutableList.of();
+        return EntitySnapshot.capture(craft.getWorld(), bounds, 2);
+    }
+
+    private WorldSnapshot captureRotation(final Craft craft, final AABB bounds, final RotationXZ rotation,
+                                          final BlockVec originPoint)
+    {
+        if (bounds == null) return this.worldSnapshots.empty(craft.getWorld());
+        final AABB rotated = bounds.rotate(originPoint, rotation);
+        final AABB region = new AABB(Math.min(bounds.minX(), rotated.minX()), bounds.minY(),
+                                     Math.min(bounds.minZ(), rotated.minZ()), Math.max(bounds.maxX(), rotated.maxX()),
+                                     bounds.maxY(), Math.max(bounds.maxZ(), rotated.maxZ()));
+        return this.worldSnapshots.capture(craft.getWorld(), region, 2);
     }
 
     public void rotate(final Craft craft, final RotationXZ rotation, final BlockVec originPoint) {
+        if (!craft.isNotProcessing()) return;
+
         // find region that will need to be loaded to rotate this craft
-        int cminX = craft.getMinX();
-        int cmaxX = craft.getMinX();
-        int cminZ = craft.getMinZ();
-        int cmaxZ = craft.getMinZ();
-        for (final BlockVec m : craft.getBlockList()) {
-            if (m.x() > cmaxX) cmaxX = m.x();
-            if (m.z() > cmaxZ) cmaxZ = m.z();
-        }
+        final long gatherStart = System.nanoTime();
+        final CraftState state = craft.getState();
+        final CraftGeometry geometry = state.getGeometry();
+        int cminX = geometry.getMinX();
+        int cmaxX = geometry.getMaxX();
+        int cminZ = geometry.getMinZ();
+        int cmaxZ = geometry.getMaxZ();
         final int distX = cmaxX - cminX;
         final int distZ = cmaxZ - cminZ;
         if (distX > distZ) {
@@ -188,16 +331,28 @@ public final class AsyncManager extends BukkitRunnable {
 
         craft.setCruiseDirection(craft.getCruiseDirection().rotateXZ(rotation));
 
-        this.submitTask(new RotationTask(craft, this.plugin, this.settings, this.i18n, this.craftManager, originPoint, craft.getBlockList(),
-                                         rotation, craft.getWorld()), craft);
+        this.submitTask(new RotationTask(craft, this.plugin, this.settings, this.i18n, this.craftManager, originPoint, state.getBlocks().toArray(),
+                                         geometry, rotation, craft.getWorld(),
+                                         this.captureRotation(craft, geometry.getBounds(), rotation, originPoint),
+                                         this.captureEntities(craft, geometry.getBounds())), craft, gatherStart);
     }
 
     public void rotate(final Craft craft, final RotationXZ rotation, final BlockVec originPoint, final boolean isSubCraft) {
-        this.submitTask(new RotationTask(craft, this.plugin, this.settings, this.i18n, this.craftManager, originPoint, craft.getBlockList(),
-                                         rotation, craft.getWorld(), isSubCraft), craft);
+        if (!craft.isNotProcessing()) return;
+
+        final long gatherStart = System.nanoTime();
+        final CraftState state = craft.getState();
+        this.submitTask(new RotationTask(craft, this.plugin, this.settings, this.i18n, this.craftManager, originPoint,
+                                         state.getBlocks().toArray(), state.getGeometry(), rotation, craft.getWorld(),
+                                         isSubCraft,
+                                         this.captureRotation(craft, state.getGeometry().getBounds(), rotation,
+                                                              originPoint),
+                                         this.captureEntities(craft, state.getGeometry().getBounds())), craft,
+                        gatherStart);
     }
 
-    private void submitTask(final AsyncTask task, final Craft c) {
+    private void submitTask(final AsyncTask task, final Craft c, final long gatherStart) {
+        task.setGatherNanos(System.nanoTime() - gatherStart);
         if (c.isNotProcessing()) {
             c.setProcessing(true);
             this.ownershipMap.put(task, c);
@@ -215,6 +370,8 @@ public final class AsyncManager extends BukkitRunnable {
                     }
                 }
             }.runTaskAsynchronously(this.plugin);
+        } else {
+            this.worldSnapshots.release(task.getSnapshot());
         }
     }
 
@@ -223,265 +380,310 @@ public final class AsyncManager extends BukkitRunnable {
     }
 
     private void processAlgorithmQueue() {
-        int runLength = 10;
-        final int queueLength = this.finishedAlgorithms.size();
-
-        runLength = Math.min(runLength, queueLength);
-
-        for (int i = 0; i < runLength; i++) {
-            boolean sentMapUpdate = false;
-            final AsyncTask poll = this.finishedAlgorithms.poll();
+        // apply at least one task per tick, then as many as fit in the budget
+        final long deadline = System.nanoTime() + this.settings.TaskApplyMillisPerTick * 1000000L;
+        AsyncTask poll;
+        while ((poll = this.finishedAlgorithms.poll()) != null) {
             final Craft c = this.ownershipMap.get(poll);
+            final String kind = poll.getClass().getSimpleName();
+            final long applyStart = System.nanoTime();
+            final boolean sentMapUpdate = poll.applyWith(this.applier);
+            final long applyEnd = System.nanoTime();
+            this.timings.record(kind, TaskStage.GATHER, poll.getGatherNanos());
+            this.timings.record(kind, TaskStage.COMPUTE, poll.getComputeNanos());
+            this.timings.record(kind, TaskStage.APPLY, applyEnd - applyStart);
 
-            if (poll instanceof DetectionTask) {
-                // Process detection task
+            this.ownershipMap.remove(poll);
+            this.worldSnapshots.release(poll.getSnapshot());
 
-                final DetectionTask task = (DetectionTask) poll;
-                final DetectionTaskData data = task.getData();
+            // only mark the craft as having finished updating if you didn't send any updates to the map updater.
+            // Otherwise the map updater will mark the crafts once it is done with them.
+            if (!sentMapUpdate) {
+                this.clear(c);
+            }
+            if (applyEnd >= deadline) break;
+        }
+    }
 
-                final Player p = data.getPlayer();
-                final Player notifyP = data.getNotificationPlayer();
-                final Craft pCraft = this.craftManager.getCraftByPlayer(p);
+    private boolean applyDetection(final DetectionTask task, final Craft c) {
+        final DetectionTaskData data = task.getData();
+        final DetectionRegion grown =
+                task.getFacesReached() == 0 ? null : task.getRegion().grow(task.getFacesReached());
+        if (grown != null) {
+            // the craft reaches past the region it was detected in, but may still be within its
+            // size limit, so detect it again in a region grown past the faces it reached
+            c.setProcessing(false);
+            this.redetect(c, task, grown);
+            // the new task clears the craft once it has been applied
+            return true;
+        }
+        task.checkPilotSigns();
 
-                if (pCraft != null && p != null) {
-                    //Player is already controlling a craft
-                    notifyP.sendMessage(this.i18n.get("Detection - Failed - Already commanding a craft"));
-                } else {
-                    if (data.failed()) {
-                        if (notifyP != null) notifyP.sendMessage(data.getFailMessage());
-                        else this.plugin.getLogger()
-                                        .log(Level.INFO, "NULL Player Craft Detection failed:" + data.getFailMessage());
-                    } else {
-                        final Set<Craft> craftsInWorld = this.craftManager.getCraftsInWorld(c.getWorld());
-                        boolean failed = false;
-
-                        for (final Craft craft : craftsInWorld) {
-
-                            if (BlockUtils.arrayContainsOverlap(craft.getBlockList(), data.getBlockList()) &&
-                                (c.getType().getCruiseOnPilot() || p != null)) {  // changed from p!=null
-                                if (craft.getType() == c.getType() ||
-                                    craft.getBlockList().length <= data.getBlockList().length) {
-                                    notifyP.sendMessage(this.i18n
-                                                                .get("Detection - Failed Craft is already being controlled"));
-                                    failed = true;
-                                } else { // if this is a different type than the overlapping craft, and is
-                                    // smaller, this must be a child craft, like a fighter on a carrier
-                                    if (!craft.isNotProcessing()) {
-                                        failed = true;
-                                        notifyP.sendMessage(this.i18n.get("Parent Craft is busy"));
-                                    }
+        final Player p = data.getPlayer();
+        final Player notifyP = data.getNotificationPlayer();
+        final Craft pCraft = this.craftManager.getCraftByPlayer(p);
 
-                                    // remove the new craft from the parent craft
-                                    final Set<BlockVec> parentBlockList = Sets.difference(
-                                            Sets.newHashSet(craft.getBlockList()),
-                                            Sets.newHashSet(data.getBlockList()));
-                                    craft.setBlockList(parentBlockList.toArray(new BlockVec[parentBlockList.size()]));
-                                    craft.setOrigBlockCount(craft.getOrigBlockCount() - data.getBlockList().length);
-
-                                    // Rerun the polygonal bounding formula for the parent craft
-                                    Integer parentMaxX = null;
-                                    Integer parentMaxZ = null;
-                                    Integer parentMinX = null;
-                                    Integer parentMinZ = null;
-                                    for (final BlockVec l : parentBlockList) {
-                                        if (parentMaxX == null || l.x() > parentMaxX) {
-                                            parentMaxX = l.x();
-                                        }
-                                        if (parentMaxZ == null || l.z() > parentMaxZ) {
-                                            parentMaxZ = l.z();
-                                        }
-                                        if (parentMinX == null || l.x() < parentMinX) {
-                                            parentMinX = l.x();
-                                        }
-                                        if (parentMinZ == null || l.z() < parentMinZ) {
-                                            parentMinZ = l.z();
-                                        }
-                                    }
-                                    final int parentSizeX = (parentMaxX - parentMinX) + 1;
-                                    final int parentSizeZ = (parentMaxZ - parentMinZ) + 1;
-                                    final int[][][] parentPolygonalBox = new int[parentSizeX][][];
-                                    for (final BlockVec l : parentBlockList) {
-                                        if (parentPolygonalBox[l.x() - parentMinX] == null) {
-                                            parentPolygonalBox[l.x() - parentMinX] = new int[parentSizeZ][];
-                                        }
-                                        if (parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ] == null) {
-                                            parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ] = new int[2];
-                                            parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][0] = l.y();
-                                            parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][1] = l.y();
-                                        } else {
-                                            final int parentMinY = parentPolygonalBox[l.x() - parentMinX][l.z() -
-                                                                                                          parentMinZ][0];
-                                            final int parentMaxY = parentPolygonalBox[l.x() - parentMinX][l.z() -
-                                                                                                          parentMinZ][1];
-
-                                            if (l.y() < parentMinY) {
-                                                parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][0] = l.y();
-                                            }
-                                            if (l.y() > parentMaxY) {
-                                                parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][1] = l.y();
-                                            }
-                                        }
-                                    }
-                                    craft.setHitBox(parentPolygonalBox);
-                                }
-                            }
-                        }
-                        if (!failed) {
-                            c.setBlockList(data.getBlockList());
-                            c.setOrigBlockCount(data.getBlockList().length);
-                            c.setHitBox(data.getHitBox());
-                            c.setMinX(data.getMinX());
-                            c.setMinZ(data.getMinZ());
-                            c.setNotificationPlayer(notifyP);
-
-                            if (notifyP != null) {
-                                notifyP.sendMessage(this.i18n.get("Detection - Successfully piloted craft") +
-                                                    " Size: " +
-                                                    c.getBlockList().length);
-                                this.plugin.getLogger().log(Level.INFO,
-                                                            String.format(this.i18n.get("Detection - Success - Log Output"),
-                                                                     notifyP.getName(), c.getType().getCraftName(),
-                                                                     c.getBlockList().length, c.getMinX(),
-                                                                     c.getMinZ()));
-                            } else {
-                                this.plugin.getLogger().log(Level.INFO,
-                                                            String.format(this.i18n.get("Detection - Success - Log Output"),
-                                                                     "NULL PLAYER", c.getType().getCraftName(),
-                                                                     c.getBlockList().length, c.getMinX(),
-                                                                     c.getMinZ()));
+        if (pCraft != null && p != null) {
+            //Player is already controlling a craft
+            notifyP.sendMessage(this.i18n.get("Detection - Failed - Already commanding a craft"));
+        } else {
+            if (data.failed()) {
+                if (notifyP != null) notifyP.sendMessage(data.getFailMessage());
+                else this.plugin.getLogger()
+                                .log(Level.INFO, "NULL Player Craft Detection failed:" + data.getFailMessage());
+            } else {
+                this.detectionCache.put(c.getWorld(), task.getStartLocation(), c.getType(),
+                                        p == null ? null : p.getUniqueId(),
+                                        new DetectionCache.Result(data.getBlockList(), data.getWaterContact(),
+                                                                  task.getCoveredSections(), data.getSpecialBlocks()));
+                final Set<Craft> craftsInWorld = this.craftManager.getCraftsInWorld(c.getWorld());
+                final PackedBlockSet detectedBlocks = PackedBlockSet.of(data.getBlockList());
+                boolean failed = false;
+
+                for (final Craft craft : craftsInWorld) {
+
+                    if (craft.getBlocks().intersects(detectedBlocks) &&
+                        (c.getType().getCruiseOnPilot() || p != null)) {  // changed from p!=null
+                        if (craft.getType() == c.getType() ||
+                            craft.getBlocks().size() <= detectedBlocks.size()) {
+                            notifyP.sendMessage(this.i18n
+                                                        .get("Detection - Failed Craft is already being controlled"));
+                            failed = true;
+                        } else { // if this is a different type than the overlapping craft, and is
+                            // smaller, this must be a child craft, like a fighter on a carrier
+                            if (!craft.isNotProcessing()) {
+                                failed = true;
+                                notifyP.sendMessage(this.i18n.get("Parent Craft is busy"));
                             }
-                            this.craftManager.addCraft(c, p);
+
+                            // remove the new craft from the parent craft
+                            final CraftState parentState = craft.getState();
+                            final PackedBlockSet parentBlocks =
+                                    PackedBlockSet.difference(parentState.getBlocks(), detectedBlocks);
+                            final SpecialBlockIndex parentIndex = parentState.getIndexedSpecialBlocks();
+                            craft.setBlocks(parentBlocks, null, parentIndex == null ? null :
+                                    parentIndex.difference(parentState.getBlocks(), detectedBlocks));
+                            this.craftManager.updateCraftIndex(craft);
+                            craft.setOrigBlockCount(craft.getOrigBlockCount() - detectedBlocks.size());
                         }
                     }
                 }
-            } else if (poll instanceof TranslationTask) {
-                //Process translation task
+                if (!failed) {
+                    c.setBlocks(detectedBlocks, task.getWaterline(), data.getSpecialBlocks());
+                    c.setOrigBlockCount(detectedBlocks.size());
+                    c.setNotificationPlayer(notifyP);
+
+                    if (notifyP != null) {
+                        notifyP.sendMessage(this.i18n.get("Detection - Successfully piloted craft") +
+                                            " Size: " +
+                                            c.getBlocks().size());
+                        this.plugin.getLogger().log(Level.INFO,
+                                                    String.format(this.i18n.get("Detection - Success - Log Output"),
+                                                             notifyP.getName(), c.getType().getCraftName(),
+                                                             c.getBlocks().size(), c.getMinX(),
+                                                             c.getMinZ()));
+                    } else {
+                        this.plugin.getLogger().log(Level.INFO,
+                                                    String.format(this.i18n.get("Detection - Success - Log Output"),
+                                                             "NULL PLAYER", c.getType().getCraftName(),
+                                                             c.getBlocks().size(), c.getMinX(),
+                                                             c.getMinZ()));
+                    }
+                    this.craftManager.addCraft(c, p);
+                }
+            }
+        }
+
+        return false;
+    }
 
-                final TranslationTask task = (TranslationTask) poll;
-                final Player p = this.craftManager.getPlayerFromCraft(c);
-                final Player notifyP = c.getNotificationPlayer();
+    private boolean applyTranslation(final TranslationTask task, final Craft c) {
+        boolean sentMapUpdate = false;
+        final Player p = this.craftManager.getPlayerFromCraft(c);
+        final Player notifyP = c.getNotificationPlayer();
 
-                // Check that the craft hasn't been sneakily unpiloted
-                //		if ( p != null ) {     cruiseOnPilot crafts don't have player pilots
+        // Check that the craft hasn't been sneakily unpiloted
+        //		if ( p != null ) {     cruiseOnPilot crafts don't have player pilots
 
-                if (task.getData().failed()) {
-                    //The craft translation failed
-                    if (notifyP != null && !c.getSinking()) notifyP.sendMessage(task.getData().getFailMessage());
+        if (c.getState() != task.getState()) {
+            // the craft changed while the task was running, its result no longer applies
+            if (notifyP != null && !c.getSinking()) notifyP.sendMessage(this.i18n.get("Craft - State changed"));
+        } else if (task.needsFuel() && !task.burnFuel()) {
+            if (notifyP != null && !c.getSinking()) {
+                notifyP.sendMessage(this.i18n.get("Translation - Failed Craft out of fuel"));
+            }
+        } else if (task.getData().failed()) {
+            //The craft translation failed
+            if (notifyP != null && !c.getSinking()) notifyP.sendMessage(task.getData().getFailMessage());
 
-                    if (task.getData().collisionExplosion()) {
-                        final MapUpdateCommand.MoveBlock[] updates = task.getData().getUpdates();
-                        c.setBlockList(task.getData().getBlockList());
-                        final boolean failed = this.mapUpdateManager.addWorldUpdate(c.getWorld(), updates, null, null);
+            if (task.getData().collisionExplosion()) {
+                final MapUpdateCommand.MoveBlock[] updates = task.getData().getUpdates();
+                this.commitState(c, task, task.getData().getBlockList());
+                final boolean failed = this.mapUpdateManager.addWorldUpdate(c.getWorld(), updates, null, null);
 
-                        if (failed) {
-                            this.plugin.getLogger().log(Level.SEVERE, this.i18n.get("Translation - Craft collision"));
-                        } else {
-                            sentMapUpdate = true;
-                        }
-                    }
+                if (failed) {
+                    this.plugin.getLogger().log(Level.SEVERE, this.i18n.get("Translation - Craft collision"));
                 } else {
-                    //The craft is clear to move, perform the block updates
-
-                    final MapUpdateCommand.MoveBlock[] updates = task.getData().getUpdates();
-                    final MapUpdateCommand.MoveEntity[] eUpdates = task.getData().getEntityUpdates();
-                    final MapUpdateCommand.DropItem[] iUpdates = task.getData().getItemDropUpdateCommands();
-                    //get list of cannons before sending map updates, to avoid conflicts
-                    Iterable<Cannon> shipCannons = null;
-                    if (this.plugin.getCannonsPlugin() != null && c.getNotificationPlayer() != null) {
-                        // convert blocklist to location list
-                        final List<Location> shipLocations = new ArrayList<>();
-                        for (final BlockVec loc : c.getBlockList()) {
-                            final Location tloc = loc.toBukkitLocation(c.getWorld());
-                            shipLocations.add(tloc);
-                        }
-                        shipCannons = this.plugin.getCannonsPlugin().getCannonsAPI()
-                                                 .getCannons(shipLocations, c.getNotificationPlayer().getUniqueId(), true);
+                    sentMapUpdate = true;
+                }
+            } else {
+                // keep the fuel burnt before the move failed
+                this.commitState(c, task, null);
+            }
+        } else {
+            //The craft is clear to move, perform the block updates
+            task.captureYield();
+            final MapUpdateCommand.MoveBlock[] updates = task.getData().getUpdates();
+            final MapUpdateCommand.MoveEntity[] eUpdates = task.getData().getEntityUpdates();
+            final MapUpdateCommand.DropItem[] iUpdates = task.getData().getItemDropUpdateCommands();
+            //get list of cannons before sending map updates, to avoid conflicts
+            Iterable<Cannon> shipCannons = null;
+            if (this.plugin.getCannonsPlugin() != null && c.getNotificationPlayer() != null) {
+                // convert blocklist to location list
+                final BlockSet blocks = c.getBlocks();
+                final List<Location> shipLocations = new ArrayList<>(blocks.size());
+                for (int j = 0; j < blocks.size(); j++) {
+                    shipLocations.add(blocks.get(j).toBukkitLocation(c.getWorld()));
+                }
+                shipCannons = this.plugin.getCannonsPlugin().getCannonsAPI()
+                                         .getCannons(shipLocations, c.getNotificationPlayer().getUniqueId(), true);
+            }
+            final boolean failed = this.mapUpdateManager
+                    .addWorldUpdate(c.getWorld(), updates, eUpdates, iUpdates);
+
+            if (failed) {
+                this.plugin.getLogger().log(Level.SEVERE, this.i18n.get("Translation - Craft collision"));
+            } else {
+                sentMapUpdate = true;
+                task.recordMovedPlayers();
+                task.updatePilotLock();
+                if (task.getData().isRigidTranslation()) {
+                    this.commitTranslation(c, task, task.getData().getDx(), task.getData().getDy(),
+                                           task.getData().getDz());
+                } else {
+                    this.commitState(c, task, task.getData().getBlockList());
+                }
+
+                // move any cannons that were present
+                if (this.plugin.getCannonsPlugin() != null && shipCannons != null) {
+                    for (final Cannon can : shipCannons) {
+                        can.move(new Vector(task.getData().getDx(), task.getData().getDy(),
+                                            task.getData().getDz()));
                     }
-                    final boolean failed = this.mapUpdateManager
-                            .addWorldUpdate(c.getWorld(), updates, eUpdates, iUpdates);
+                }
+            }
+        }
 
-                    if (failed) {
-                        this.plugin.getLogger().log(Level.SEVERE, this.i18n.get("Translation - Craft collision"));
-                    } else {
-                        sentMapUpdate = true;
-                        c.setBlockList(task.getData().getBlockList());
-                        c.setMinX(task.getData().getMinX());
-                        c.setMinZ(task.getData().getMinZ());
-                        c.setHitBox(task.getData().getHitbox());
-
-                        // move any cannons that were present
-                        if (this.plugin.getCannonsPlugin() != null && shipCannons != null) {
-                            for (final Cannon can : shipCannons) {
-                                can.move(new Vector(task.getData().getDx(), task.getData().getDy(),
-                                                    task.getData().getDz()));
-                            }
-                        }
+        return sentMapUpdate;
+    }
+
+    private boolean applyRotation(final RotationTask task, final Craft c) {
+        boolean sentMapUpdate = false;
+        final Player p = this.craftManager.getPlayerFromCraft(c);
+        final Player notifyP = c.getNotificationPlayer();
+
+        // Check that the craft hasn't been sneakily unpiloted
+        if (notifyP != null || task.getIsSubCraft()) {
+
+            if (c.getState() != task.getState()) {
+                // the craft changed while the task was running, its result no longer applies
+                if (notifyP != null) notifyP.sendMessage(this.i18n.get("Craft - State changed"));
+            } else if (task.needsFuel() && !task.burnFuel()) {
+                if (notifyP != null) notifyP.sendMessage(this.i18n.get("Translation - Failed Craft out of fuel"));
+                else this.plugin.getLogger().log(Level.INFO, "NULL Player Rotation Failed: out of fuel");
+            } else if (task.isFailed()) {
+                //The craft translation failed, don't try to notify them if there is no pilot
+                if (notifyP != null) notifyP.sendMessage(task.getFailMessage());
+                else this.plugin.getLogger().log(Level.INFO, "NULL Player Rotation Failed: " + task.getFailMessage());
+                this.commitState(c, task, null);
+            } else {
+                final MapUpdateCommand.MoveBlock[] updates = task.getUpdates();
+                final MapUpdateCommand.MoveEntity[] eUpdates = task.getEntityUpdates();
+
+                //get list of cannons before sending map updates, to avoid conflicts
+                Iterable<Cannon> shipCannons = null;
+                if (this.plugin.getCannonsPlugin() != null && c.getNotificationPlayer() != null) {
+                    // convert blocklist to location list
+                    final BlockSet blocks = c.getBlocks();
+                    final List<Location> shipLocations = new ArrayList<>(blocks.size());
+                    for (int j = 0; j < blocks.size(); j++) {
+                        shipLocations.add(blocks.get(j).toBukkitLocation(c.getWorld()));
                     }
+                    shipCannons = this.plugin.getCannonsPlugin().getCannonsAPI()
+                                             .getCannons(shipLocations, c.getNotificationPlayer().getUniqueId(),
+                                                    true);
                 }
-            } else if (poll instanceof RotationTask) {
-                // Process rotation task
-                final RotationTask task = (RotationTask) poll;
-                final Player p = this.craftManager.getPlayerFromCraft(c);
-                final Player notifyP = c.getNotificationPlayer();
-
-                // Check that the craft hasn't been sneakily unpiloted
-                if (notifyP != null || task.getIsSubCraft()) {
-
-                    if (task.isFailed()) {
-                        //The craft translation failed, don't try to notify them if there is no pilot
-                        if (notifyP != null) notifyP.sendMessage(task.getFailMessage());
-                        else this.plugin.getLogger().log(Level.INFO, "NULL Player Rotation Failed: " + task.getFailMessage());
-                    } else {
-                        final MapUpdateCommand.MoveBlock[] updates = task.getUpdates();
-                        final MapUpdateCommand.MoveEntity[] eUpdates = task.getEntityUpdates();
-
-                        //get list of cannons before sending map updates, to avoid conflicts
-                        Iterable<Cannon> shipCannons = null;
-                        if (this.plugin.getCannonsPlugin() != null && c.getNotificationPlayer() != null) {
-                            // convert blocklist to location list
-                            final List<Location> shipLocations = new ArrayList<>();
-                            for (final BlockVec loc : c.getBlockList()) {
-                                final Location tloc = loc.toBukkitLocation(c.getWorld());
-                                shipLocations.add(tloc);
-                            }
-                            shipCannons = this.plugin.getCannonsPlugin().getCannonsAPI()
-                                                     .getCannons(shipLocations, c.getNotificationPlayer().getUniqueId(),
-                                                            true);
-                        }
 
-                        final boolean failed = this.mapUpdateManager
-                                .addWorldUpdate(c.getWorld(), updates, eUpdates, null);
+                final boolean failed = this.mapUpdateManager
+                        .addWorldUpdate(c.getWorld(), updates, eUpdates, null);
 
-                        if (failed) {
-                            this.plugin.getLogger().log(Level.SEVERE, this.i18n.get("Rotation - Craft Collision"));
-                        } else {
-                            sentMapUpdate = true;
-
-                            c.setBlockList(task.getBlockList());
-                            c.setMinX(task.getMinX());
-                            c.setMinZ(task.getMinZ());
-                            c.setHitBox(task.getHitbox());
-
-                            // rotate any cannons that were present
-                            if (this.plugin.getCannonsPlugin() != null && shipCannons != null) {
-                                final Location tloc = task.getOriginPoint().toBukkitLocation(task.getCraft().getWorld());
-                                for (final Cannon can : shipCannons) {
-                                    if (task.getRotation().equals(RotationXZ.cw())) can.rotateRight(tloc.toVector());
-                                    if (task.getRotation().equals(RotationXZ.ccw())) can.rotateLeft(tloc.toVector());
-                                }
-                            }
+                if (failed) {
+                    this.plugin.getLogger().log(Level.SEVERE, this.i18n.get("Rotation - Craft Collision"));
+                } else {
+                    sentMapUpdate = true;
+                    task.updatePilotLock();
+
+                    if (task.getRotatedState() != null) {
+                        this.commitRotation(c, task, task.getRotatedState());
+                    } else {
+                        this.commitState(c, task, task.getBlockList());
+                    }
+                    if (!task.commitParentStates()) {
+                        this.plugin.getLogger().log(Level.WARNING, "Parent craft changed during subcraft rotation");
+                    }
+
+                    // rotate any cannons that were present
+                    if (this.plugin.getCannonsPlugin() != null && shipCannons != null) {
+                        final Location tloc = task.getOriginPoint().toBukkitLocation(task.getCraft().getWorld());
+                        for (final Cannon can : shipCannons) {
+                            if (task.getRotation().equals(RotationXZ.cw())) can.rotateRight(tloc.toVector());
+                            if (task.getRotation().equals(RotationXZ.ccw())) can.rotateLeft(tloc.toVector());
                         }
                     }
                 }
             }
+        }
 
-            this.ownershipMap.remove(poll);
+        return sentMapUpdate;
+    }
 
-            // only mark the craft as having finished updating if you didn't send any updates to the map updater.
-            // Otherwise the map updater will mark the crafts once it is done with them.
-            if (!sentMapUpdate) {
-                this.clear(c);
-            }
+    /**
+     * Installs the blocks, fuel and waterline computed by {@code task}, or keeps the blocks if
+     * {@code blockList} is null. The special blocks of a new block list are indexed from the
+     * task's snapshot. Does nothing if the craft moved on from the version the task was submitted
+     * against.
+     */
+    private void commitState(final Craft craft, final AsyncTask task, @Nullable final BlockVec[] blockList) {
+        CraftState next = task.getState().withBurningFuel(task.getBurningFuel());
+        if (blockList != null) {
+            final PackedBlockSet blocks = PackedBlockSet.of(blockList);
+            next = next.withBlocks(blocks, task.indexSpecialBlocks(blocks));
+        }
+        this.installState(craft, task, next.withWaterline(task.getWaterline()));
+    }
+
+    /**
+     * Moves the blocks of the craft by {@code dx, dy, dz} and installs the fuel and waterline
+     * computed by {@code task}. The block set is shared with the previous state rather than rebuilt.
+     */
+    private void commitTranslation(final Craft craft, final AsyncTask task, final int dx, final int dy, final int dz) {
+        this.installState(craft, task, task.getState().withBurningFuel(task.getBurningFuel()).translate(dx, dy, dz)
+                                           .withWaterline(task.getWaterline()));
+    }
+
+    /**
+     * Installs {@code rotated}, the craft turned as a whole by {@code task}, with the fuel and
+     * waterline computed by the task.
+     */
+    private void commitRotation(final Craft craft, final AsyncTask task, final CraftState rotated) {
+        this.installState(craft, task, rotated.withBurningFuel(task.getBurningFuel()).withWaterline(task.getWaterline()));
+    }
+
+    private void installState(final Craft craft, final AsyncTask task, final CraftState next) {
+        if (craft.compareAndSetState(task.getState(), next)) {
+            this.craftManager.updateCraftIndex(craft);
+        } else {
+            this.plugin.getLogger().log(Level.WARNING, "Craft changed while applying task " + task.getClass().getSimpleName());
         }
     }
 
@@ -547,8 +749,7 @@ public final class AsyncManager extends BukkitRunnable {
 
                             final Player p = this.craftManager.getPlayerFromCraft(pcraft);
                             if (p != null) if (MathUtils
-                                    .playerIsWithinBoundingPolygon(pcraft.getHitBox(), pcraft.getMinX(),
-                                                                   pcraft.getMinZ(), BlockVec.from(p.getLocation()))) {
+                                    .playerIsWithinBoundingPolygon(pcraft.getHitBox(), BlockVec.from(p.getLocation()))) {
                                 final double movedX = p.getLocation().getX() - pcraft.getPilotLockedX();
                                 final double movedZ = p.getLocation().getZ() - pcraft.getPilotLockedZ();
                                 int dX = 0;
@@ -629,20 +830,21 @@ public final class AsyncManager extends BukkitRunnable {
                         if (ticksElapsed > this.settings.SinkCheckTicks) {
                             int totalNonAirBlocks = 0;
                             int totalNonAirWaterBlocks = 0;
-                            final Map<MaterialDataPredicate, Integer> foundFlyBlocks = new HashMap<>();
+                            final FlyBlockTable flyBlocks = pcraft.getType().getFlyBlockTable();
+                            final int[] foundFlyBlocks = flyBlocks.newCounts();
                             boolean regionPVPBlocked = false;
                             boolean sinkingForbiddenByFlag = false;
                             // go through each block in the blocklist, and if its in the FlyBlocks, total up the
                             // number of them
-                            for (final BlockVec l : pcraft.getBlockList()) {
+                            final BlockSet blocks = pcraft.getBlocks();
+                            for (int i = 0; i < blocks.size(); i++) {
+                                final BlockVec l = blocks.get(i);
                                 if (this.isRegionBlockedPVP(l, w)) regionPVPBlocked = true;
                                 if (!this.isRegionFlagSinkAllowed(l, w)) sinkingForbiddenByFlag = true;
-                                final Integer blockID = w.getBlockAt(l.x(), l.y(), l.z()).getTypeId();
-                                for (final MaterialDataPredicate flyBlockDef : pcraft.getType().getFlyBlocks().keySet()) {
-                                    if (flyBlockDef.checkBlock(w.getBlockAt(l.x(), l.y(), l.z()))) {
-                                        foundFlyBlocks.merge(flyBlockDef, 1, (a, b) -> a + b);
-                                    }
-                                }
+                                final Block block = w.getBlockAt(l.x(), l.y(), l.z());
+                                final int blockID = block.getTypeId();
+                                final byte blockData = block.getData();
+                                flyBlocks.count(foundFlyBlocks, blockID, blockData);
 
                                 if (blockID != 0) {
                                     totalNonAirBlocks++;
@@ -655,14 +857,11 @@ public final class AsyncManager extends BukkitRunnable {
                             // now see if any of the resulting percentages are below the threshold specified in
                             // SinkPercent
                             boolean isSinking = false;
-                            for (final Map.Entry<MaterialDataPredicate, List<CraftType.Constraint>> entry : pcraft
-                                    .getType().getFlyBlocks().entrySet()) {
-                                final MaterialDataPredicate predicate = entry.getKey();
-                                final List<CraftType.Constraint> constraints = entry.getValue();
-                                final int count = Optional.fromNullable(foundFlyBlocks.get(predicate)).or(0);
+                            for (int slot = 0; slot < flyBlocks.size(); slot++) {
+                                final int count = foundFlyBlocks[slot];
 
                                 final double percent = count / (double) totalNonAirBlocks;
-                                for (final CraftType.Constraint constraint : constraints) {
+                                for (final CraftType.Constraint constraint : flyBlocks.getConstraints(slot)) {
                                     if (constraint.isUpper) continue;
 
                                     final double flyPercent = constraint.bound.asRatio(totalNonAirBlocks);
@@ -740,7 +939,7 @@ public final class AsyncManager extends BukkitRunnable {
             // sink all the sinking ships
             for (final Craft pcraft : this.craftManager.getCraftsInWorld(w)) {
                 if (pcraft != null && pcraft.getSinking()) {
-                    if (pcraft.getBlockList().length == 0) {
+                    if (pcraft.getBlocks().isEmpty()) {
                         this.craftManager.removeCraft(pcraft);
                     }
                     if (pcraft.getMinY() < -1) {
@@ -970,6 +1169,7 @@ public final class AsyncManager extends BukkitRunnable {
     }
 
     @Override public void run() {
+        this.worldSnapshots.invalidate();
         this.clearAll();
         this.processCruise();
         this.processSinking();
@@ -978,6 +1178,20 @@ public final class AsyncManager extends BukkitRunnable {
         this.processTNTContactExplosives();
         this.processFadingBlocks();
         this.processAlgorithmQueue();
+        this.reportTimings();
+    }
+
+    private void reportTimings() {
+        if (!this.settings.Debug) return;
+        if (System.currentTimeMillis() - this.lastTimingsReport < 60000) return;
+        for (final String line : this.timings.summary()) {
+            this.plugin.getLogger().log(Level.INFO, "Task timings: " + line);
+        }
+        this.plugin.getLogger().log(Level.INFO, String.format("Detection cache: %d hits, %d misses since enabled",
+                                                              this.detectionCache.getHits(),
+                                                              this.detectionCache.getMisses()));
+        this.timings.reset();
+        this.lastTimingsReport = System.currentTimeMillis();
     }
 
     private void clear(final Craft c) {
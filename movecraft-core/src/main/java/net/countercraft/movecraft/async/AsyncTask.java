@@ -17,23 +17,208 @@
 
 package net.countercraft.movecraft.async;
 
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.google.common.collect.ImmutableList;
+import net.countercraft.movecraft.craft.BlockSet;
 import net.countercraft.movecraft.craft.Craft;
+import net.countercraft.movecraft.craft.CraftState;
+import net.countercraft.movecraft.craft.SpecialBlockIndex;
+import net.countercraft.movecraft.craft.Waterline;
+import net.countercraft.movecraft.detail.EntitySnapshot;
+import net.countercraft.movecraft.detail.WorldSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import javax.annotation.Nullable;
+
+/**
+ * A task run in three stages: its inputs are gathered on the main thread when it is created,
+ * {@link #execute()} computes its result on a worker thread, and {@link #applyWith(TaskApplier)}
+ * installs the result back on the main thread.
+ */
 public abstract class AsyncTask extends BukkitRunnable {
     private final Craft craft;
+    private final CraftState state;
+    private final WorldSnapshot snapshot;
+    private final ImmutableList<EntitySnapshot> entities;
+    private double burningFuel;
+    private boolean needsFuel;
+    @Nullable private Location pilotLockedLocation;
+    @Nullable private Waterline waterline;
+    private long gatherNanos;
+    private long computeNanos;
 
-    protected AsyncTask(Craft c) {
+    protected AsyncTask(Craft c, final WorldSnapshot snapshot) {
+        this(c, snapshot, ImmutableList.of());
+    }
+
+    protected AsyncTask(Craft c, final WorldSnapshot snapshot, final ImmutableList<EntitySnapshot> entities) {
         this.craft = c;
+        this.state = c.getState();
+        this.snapshot = snapshot;
+        this.entities = entities;
+        this.burningFuel = this.state.getBurningFuel();
+        this.waterline = this.state.getWaterline();
     }
 
     @Override public void run() {
-        this.execute();
+        final long start = System.nanoTime();
+        try {
+            this.execute();
+        } finally {
+            this.computeNanos = System.nanoTime() - start;
+        }
     }
 
+    /**
+     * Computes the result of the task. Runs off the main thread, so it reads the world only through
+     * the snapshot and entities gathered when the task was created. Changes to inventories and to
+     * where the pilot is locked are left to the main thread when the result is applied.
+     */
     protected abstract void execute();
 
+    /**
+     * Applies the result of the task through the matching method of {@code applier}.
+     */
+    protected abstract boolean applyWith(TaskApplier applier);
+
+    long getGatherNanos() {
+        return this.gatherNanos;
+    }
+
+    void setGatherNanos(final long gatherNanos) {
+        this.gatherNanos = gatherNanos;
+    }
+
+    long getComputeNanos() {
+        return this.computeNanos;
+    }
+
     protected Craft getCraft() {
         return this.craft;
     }
+
+    /**
+     * Returns the version of the craft this task was submitted against. Results of the task
+     * must only be applied while the craft is still at this version.
+     */
+    public CraftState getState() {
+        return this.state;
+    }
+
+    /**
+     * Returns the blocks around the craft, copied on the main thread when the task was submitted.
+     */
+    public WorldSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Returns the entities on and around the craft, captured on the main thread when the task was submitted.
+     */
+    public ImmutableList<EntitySnapshot> getEntities() {
+        return this.entities;
+    }
+
+    public double getBurningFuel() {
+        return this.burningFuel;
+    }
+
+    protected void setBurningFuel(final double burningFuel) {
+        this.burningFuel = burningFuel;
+    }
+
+    /**
+     * Returns true if the craft has burnt through its fuel, so that more has to be taken from one
+     * of its furnaces before the result of this task can be applied.
+     */
+    public boolean needsFuel() {
+        return this.needsFuel;
+    }
+
+    protected void setNeedsFuel(final boolean needsFuel) {
+        this.needsFuel = needsFuel;
+    }
+
+    /**
+     * Takes a piece of coal or a block of coal from one of the craft's furnaces and adds the fuel
+     * it holds. Returns false if none of the furnaces hold any. This changes inventories, so it
+     * must only be called on the main thread.
+     */
+    public boolean burnFuel() {
+        Inventory fuelHolder = null;
+        for (final BlockVec vec : this.state.getSpecialBlocks(this.snapshot::getTypeId)
+                                            .find(this.state.getBlocks(), Material.FURNACE)) {
+            final Block block = this.craft.getWorld().getBlockAt(vec.x(), vec.y(), vec.z());
+            if (block.getType() == Material.FURNACE) {
+                final Inventory inv = ((InventoryHolder) block.getState()).getInventory();
+                if (inv.contains(Material.COAL) || inv.contains(Material.COAL_BLOCK)) {
+                    fuelHolder = inv;
+                }
+            }
+        }
+        if (fuelHolder == null) return false;
+
+        final boolean coal = fuelHolder.contains(Material.COAL);
+        final ItemStack iStack = fuelHolder.getItem(fuelHolder.first(coal ? Material.COAL : Material.COAL_BLOCK));
+        final int amount = iStack.getAmount();
+        if (amount == 1) {
+            fuelHolder.remove(iStack);
+        } else {
+            iStack.setAmount(amount - 1);
+        }
+        this.burningFuel += coal ? 7.0 : 79.0;
+        return true;
+    }
+
+    /**
+     * Returns the position the block at {@code block} in the result of this task was at before
+     * the task moved it.
+     */
+    protected BlockVec getSourcePosition(final BlockVec block) {
+        return block;
+    }
+
+    /**
+     * Indexes the special blocks of {@code blocks}, the blocks of the craft once the result of
+     * this task is applied. The type of every block is read from the snapshot at the position it
+     * was moved from, as the world doesn't hold the moved blocks yet.
+     */
+    public SpecialBlockIndex indexSpecialBlocks(final BlockSet blocks) {
+        return SpecialBlockIndex.of(blocks, (x, y, z) -> {
+            final BlockVec source = this.getSourcePosition(new BlockVec(x, y, z));
+            return this.snapshot.getTypeId(source.x(), source.y(), source.z());
+        });
+    }
+
+    protected void setPilotLockedLocation(@Nullable final Location location) {
+        this.pilotLockedLocation = location;
+    }
+
+    /**
+     * Moves the locked position of the craft's pilot to where this task carried them. This changes
+     * the craft, so it must only be called on the main thread.
+     */
+    public void updatePilotLock() {
+        if (this.pilotLockedLocation == null) return;
+        this.craft.setPilotLockedX(this.pilotLockedLocation.getX());
+        this.craft.setPilotLockedY(this.pilotLockedLocation.getY());
+        this.craft.setPilotLockedZ(this.pilotLockedLocation.getZ());
+    }
+
+    /**
+     * Returns the waterline of the craft once the result of this task is applied.
+     */
+    @Nullable public Waterline getWaterline() {
+        return this.waterline;
+    }
+
+    protected void setWaterline(@Nullable final Waterline waterline) {
+        this.waterline = waterline;
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.async;
+
+import net.countercraft.movecraft.async.detection.DetectionTask;
+import net.countercraft.movecraft.async.rotation.RotationTask;
+import net.countercraft.movecraft.async.translation.TranslationTask;
+import net.countercraft.movecraft.craft.Craft;
+
+/**
+ * Applies the results of finished tasks to their crafts. Only called from the main thread.
+ * Every method returns true if it sent updates to the map updater, which then releases the craft.
+ */
+public interface TaskApplier {
+    boolean applyDetection(DetectionTask task, Craft craft);
+
+    boolean applyTranslation(TranslationTask task, Craft craft);
+
+    boolean applyRotation(RotationTask task, Craft craft);
+}
@@ -0,0 +1,31 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.async;
+
+/**
+ * The stages every {@link AsyncTask} goes through.
+ */
+public enum TaskStage {
+    /** Capturing the blocks and entities the task reads, on the main thread. */
+    GATHER,
+    /** Running the task on a worker thread, from the captured inputs only. */
+    COMPUTE,
+    /** Installing the result of the task, on the main thread. */
+    APPLY
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.async;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time spent in each {@link TaskStage} per kind of task. Must only be used from the main thread.
+ */
+public final class TaskTimings {
+    static final class Stat {
+        long count;
+        long totalNanos;
+        long maxNanos;
+
+        void add(final long nanos) {
+            this.count++;
+            this.totalNanos += nanos;
+            this.maxNanos = Math.max(this.maxNanos, nanos);
+        }
+    }
+
+    private final Map<String, Map<TaskStage, Stat>> stats = new LinkedHashMap<>();
+
+    public void record(final String task, final TaskStage stage, final long nanos) {
+        this.stats.computeIfAbsent(task, t -> new EnumMap<>(TaskStage.class))
+                  .computeIfAbsent(stage, s -> new Stat())
+                  .add(nanos);
+    }
+
+    public long getCount(final String task, final TaskStage stage) {
+        final Stat stat = this.get(task, stage);
+        return stat == null ? 0 : stat.count;
+    }
+
+    public long getTotalNanos(final String task, final TaskStage stage) {
+        final Stat stat = this.get(task, stage);
+        return stat == null ? 0 : stat.totalNanos;
+    }
+
+    public long getMaxNanos(final String task, final TaskStage stage) {
+        final Stat stat = this.get(task, stage);
+        return stat == null ? 0 : stat.maxNanos;
+    }
+
+    private Stat get(final String task, final TaskStage stage) {
+        final Map<TaskStage, Stat> stages = this.stats.get(task);
+        return stages == null ? null : stages.get(stage);
+    }
+
+    /**
+     * Returns one line per kind of task and stage with the number of runs and their mean and
+     * longest times in milliseconds.
+     */
+    public List<String> summary() {
+        final List<String> lines = new ArrayList<>();
+        for (final Map.Entry<String, Map<TaskStage, Stat>> task : this.stats.entrySet()) {
+            for (final Map.Entry<TaskStage, Stat> stage : task.getValue().entrySet()) {
+                final Stat stat = stage.getValue();
+                lines.add(String.format("%s %s: %d runs, mean %.2f ms, max %.2f ms", task.getKey(),
+                                        stage.getKey(), stat.count, stat.totalNanos / 1e6 / stat.count,
+                                        stat.maxNanos / 1e6));
+            }
+        }
+        return lines;
+    }
+
+    public void reset() {
+        this.stats.clear();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.async.detection;
+
+import net.countercraft.movecraft.utils.PackedBlockPos;
+import net.countercraft.movecraft.utils.SparseBlockBitSet;
+
+import java.util.Arrays;
+
+/**
+ * Depth-first flood fill over the 14 neighbours used by craft detection: the four horizontal
+ * neighbours and the blocks diagonally above and below them, plus the blocks straight above and
+ * below. Pending positions are kept as packed longs and visited ones in a sparse bitset, so the
+ * fill allocates nothing per block.
+ */
+final class BlockFloodFill {
+    @FunctionalInterface
+    interface Visitor {
+        /**
+         * Called once for every position reached. Returns true to continue the fill from it.
+         */
+        boolean visit(int x, int y, int z);
+    }
+
+    // x, y, z offsets of the neighbours, in the order they are visited
+    static final int[] NEIGHBOURS = {
+            -1, -1, 0, -1, 0, 0, -1, 1, 0,
+            1, -1, 0, 1, 0, 0, 1, 1, 0,
+            0, -1, -1, 0, 0, -1, 0, 1, -1,
+            0, -1, 1, 0, 0, 1, 0, 1, 1,
+            0, -1, 0, 0, 1, 0
+    };
+
+    private final SparseBlockBitSet visited = new SparseBlockBitSet();
+    private long[] stack = new long[256];
+    private int stackSize;
+
+    /**
+     * Fills outwards from {@code x, y, z}. The start position itself is not visited unless it is
+     * reached again from one of its neighbours.
+     */
+    void run(final int x, final int y, final int z, final Visitor visitor) {
+        this.push(PackedBlockPos.pack(x, y, z));
+        while (this.stackSize > 0) {
+            final long packed = this.stack[--this.stackSize];
+            this.visitNeighbours(PackedBlockPos.unpackX(packed), PackedBlockPos.unpackY(packed),
+                                 PackedBlockPos.unpackZ(packed), visitor);
+        }
+    }
+
+    private void visitNeighbours(final int x, final int y, final int z, final Visitor visitor) {
+        for (int i = 0; i < NEIGHBOURS.length; i += 3) {
+            this.visit(x + NEIGHBOURS[i], y + NEIGHBOURS[i + 1], z + NEIGHBOURS[i + 2], visitor);
+        }
+    }
+
+    private void visit(final int x, final int y, final int z, final Visitor visitor) {
+        if (this.visited.add(x, y, z) && visitor.visit(x, y, z)) {
+            this.push(PackedBlockPos.pack(x, y, z));
+        }
+    }
+
+    private void push(final long packed) {
+        if (this.stackSize == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+        }
+        this.stack[this.stackSize++] = packed;
+    }
+}
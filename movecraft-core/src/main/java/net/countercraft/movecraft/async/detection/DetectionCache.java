@@ -0,0 +1,259 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.async.detection;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.google.common.base.Preconditions;
+import net.countercraft.movecraft.craft.CraftType;
+import net.countercraft.movecraft.craft.SpecialBlockIndex;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+import org.bukkit.World;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Recent successful detections, so that re-piloting a craft that hasn't changed skips the flood
+ * fill. Every result is tagged with the chunk sections its blocks and their neighbours lie in, and
+ * is dropped as soon as a block in one of those sections changes or it grows older than its time
+ * to live. Must only be used from the main thread.
+ */
+public final class DetectionCache {
+    /**
+     * Blocks found by a detection, in the order they were finalised.
+     */
+    @Immutable
+    public static final class Result {
+        private final BlockVec[] blocks;
+        private final boolean waterContact;
+        private final long[] sections;
+        @Nullable private final SpecialBlockIndex specialBlocks;
+
+        public Result(final BlockVec[] blocks, final boolean waterContact, final long[] sections) {
+            this(blocks, waterContact, sections, null);
+        }
+
+        public Result(final BlockVec[] blocks, final boolean waterContact, final long[] sections,
+                      @Nullable final SpecialBlockIndex specialBlocks) {
+            this.blocks = blocks;
+            this.waterContact = waterContact;
+            this.sections = sections;
+            this.specialBlocks = specialBlocks;
+        }
+
+        public BlockVec[] getBlocks() {
+            return this.blocks.clone();
+        }
+
+        public boolean getWaterContact() {
+            return this.waterContact;
+        }
+
+        /**
+         * Returns the packed coordinates of every chunk section a change in which could change
+         * the result.
+         */
+        public long[] getSections() {
+            return this.sections;
+        }
+
+        /**
+         * Returns the special blocks of the blocks, or null if they weren't indexed.
+         */
+        @Nullable public SpecialBlockIndex getSpecialBlocks() {
+            return this.specialBlocks;
+        }
+    }
+
+    private static final class Key {
+        private final World world;
+        private final BlockVec start;
+        private final CraftType type;
+        @Nullable private final UUID player;
+
+        Key(final World world, final BlockVec start, final CraftType type, @Nullable final UUID player) {
+            this.world = world;
+            this.start = start;
+            this.type = type;
+            this.player = player;
+        }
+
+        @Override public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return this.world.equals(key.world) && this.start.equals(key.start) && this.type == key.type &&
+                   Objects.equals(this.player, key.player);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hash(this.world, this.start, System.identityHashCode(this.type), this.player);
+        }
+    }
+
+    private static final class Entry {
+        private final Result result;
+        private final long expiresAt;
+
+        Entry(final Result result, final long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int capacity;
+    private final long timeToLive;
+    // least recently used first
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // world -> packed section coordinates -> keys of the entries covering that section
+    private final Map<World, Map<Long, Set<Key>>> sectionIndex = new HashMap<>();
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity   the number of results to keep, zero disables the cache
+     * @param timeToLive milliseconds a result is kept for
+     */
+    public DetectionCache(final int capacity, final long timeToLive) {
+        Preconditions.checkArgument(capacity >= 0);
+        Preconditions.checkArgument(timeToLive >= 0);
+        this.capacity = capacity;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Returns the packed coordinates of every section holding one of {@code blocks}, one of their
+     * neighbours or a neighbour of {@code start}, sorted.
+     */
+    public static long[] coveredSections(final BlockVec[] blocks, final BlockVec start) {
+        final Set<Long> sections = new HashSet<>();
+        addSections(sections, start.x(), start.y(), start.z());
+        for (final BlockVec block : blocks) {
+            if (block != null) addSections(sections, block.x(), block.y(), block.z());
+        }
+        final long[] result = new long[sections.size()];
+        int i = 0;
+        for (final long section : sections) result[i++] = section;
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static void addSections(final Set<Long> sections, final int x, final int y, final int z) {
+        // neighbours only reach into the next section from the faces of this one
+        final int fromX = (x - 1) >> 4, toX = (x + 1) >> 4;
+        final int fromY = (y - 1) >> 4, toY = (y + 1) >> 4;
+        final int fromZ = (z - 1) >> 4, toZ = (z + 1) >> 4;
+        for (int sectionX = fromX; sectionX <= toX; sectionX++) {
+            for (int sectionY = fromY; sectionY <= toY; sectionY++) {
+                for (int sectionZ = fromZ; sectionZ <= toZ; sectionZ++) {
+                    sections.add(PackedBlockPos.pack(sectionX, sectionY, sectionZ));
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * Returns the result of the last detection of a craft of {@code type} from {@code start} for
+     * {@code player}, or null if there is none or the craft may have changed since.
+     */
+    @Nullable public Result get(final World world, final BlockVec start, final CraftType type,
+                                @Nullable final UUID player)
+    {
+        if (this.capacity == 0) return null;
+        final Key key = new Key(world, start, type, player);
+        final Entry entry = this.entries.get(key);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            this.remove(key);
+        } else if (entry != null) {
+            this.hits++;
+            return entry.result;
+        }
+        this.misses++;
+        return null;
+    }
+
+    public void put(final World world, final BlockVec start, final CraftType type, @Nullable final UUID player,
+                    final Result result)
+    {
+        if (this.capacity == 0) return;
+        final Key key = new Key(world, start, type, player);
+        this.remove(key);
+        this.entries.put(key, new Entry(result, System.currentTimeMillis() + this.timeToLive));
+        final Map<Long, Set<Key>> index = this.sectionIndex.computeIfAbsent(world, w -> new HashMap<>());
+        for (final long section : result.getSections()) {
+            index.computeIfAbsent(section, s -> new HashSet<>()).add(key);
+        }
+
+        if (this.entries.size() > this.capacity) {
+            final Iterator<Key> eldest = this.entries.keySet().iterator();
+            this.remove(eldest.next());
+        }
+    }
+
+    private void remove(final Key key) {
+        final Entry entry = this.entries.remove(key);
+        if (entry == null) return;
+        final Map<Long, Set<Key>> index = this.sectionIndex.get(key.world);
+        for (final long section : entry.result.getSections()) {
+            final Set<Key> keys = index.get(section);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) index.remove(section);
+        }
+        if (index.isEmpty()) this.sectionIndex.remove(key.world);
+    }
+
+    /**
+     * Drops every result covering the section that holds {@code x, y, z}.
+     */
+    public void invalidate(final World world, final int x, final int y, final int z) {
+        final Map<Long, Set<Key>> index = this.sectionIndex.get(world);
+        if (index == null) return;
+        final Set<Key> keys = index.get(PackedBlockPos.pack(x >> 4, y >> 4, z >> 4));
+        if (keys == null) return;
+        for (final Key key : keys.toArray(new Key[keys.size()])) {
+            this.remove(key);
+        }
+    }
+
+    public void clear() {
+        this.entries.clear();
+        this.sectionIndex.clear();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+}
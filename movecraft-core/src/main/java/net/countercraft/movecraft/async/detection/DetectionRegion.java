@@ -0,0 +1,123 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.async.detection;
+
+import com.alexknvl.shipcraft.math.AABB;
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+/**
+ * The box around its start point a craft is detected in. A craft that reaches past some faces of
+ * the box is detected again in a box grown past those faces only, until the box reaches the
+ * largest distance allowed from the start point or would copy too many chunk sections.
+ */
+@Immutable
+public final class DetectionRegion {
+    /**
+     * Blocks copied around the box, so that the neighbours of every block in it can be read.
+     */
+    public static final int MARGIN = 1;
+
+    // faces of the box, combined into a mask
+    public static final int MIN_X = 1, MAX_X = 1 << 1, MIN_Y = 1 << 2, MAX_Y = 1 << 3, MIN_Z = 1 << 4, MAX_Z = 1 << 5;
+    private static final int FACES = 6;
+
+    private final BlockVec start;
+    // distance from the start point to each face, in the order of the face bits
+    private final int[] extents;
+    private final int maxRadius;
+    private final int maxSections;
+
+    private DetectionRegion(final BlockVec start, final int[] extents, final int maxRadius, final int maxSections) {
+        this.start = start;
+        this.extents = extents;
+        this.maxRadius = maxRadius;
+        this.maxSections = maxSections;
+    }
+
+    /**
+     * Returns the cube of {@code radius} around {@code start}. It can grow up to {@code maxRadius}
+     * from the start point, as long as a snapshot of it holds at most {@code maxSections} sections.
+     */
+    public static DetectionRegion around(final BlockVec start, final int radius, final int maxRadius,
+                                         final int maxSections) {
+        Preconditions.checkArgument(radius >= 0 && radius <= maxRadius, "radius %s is not within 0..%s", radius,
+                                    maxRadius);
+        final int[] extents = new int[FACES];
+        Arrays.fill(extents, radius);
+        return new DetectionRegion(start, extents, maxRadius, maxSections);
+    }
+
+    public AABB getBounds() {
+        return new AABB(this.start.x() - this.extents[0], this.start.y() - this.extents[2],
+                        this.start.z() - this.extents[4], this.start.x() + this.extents[1],
+                        this.start.y() + this.extents[3], this.start.z() + this.extents[5]);
+    }
+
+    /**
+     * Returns the faces of the box {@code x, y, z} lies past, or zero if it lies within. Nothing
+     * lies past the box above or below the world.
+     */
+    public int facesPast(final int x, final int y, final int z) {
+        if (y < 0 || y > 255) return 0;
+        int faces = 0;
+        if (x < this.start.x() - this.extents[0]) faces |= MIN_X;
+        if (x > this.start.x() + this.extents[1]) faces |= MAX_X;
+        if (y < this.start.y() - this.extents[2]) faces |= MIN_Y;
+        if (y > this.start.y() + this.extents[3]) faces |= MAX_Y;
+        if (z < this.start.z() - this.extents[4]) faces |= MIN_Z;
+        if (z > this.start.z() + this.extents[5]) faces |= MAX_Z;
+        return faces;
+    }
+
+    /**
+     * Returns the number of chunk sections a snapshot of the box grown by {@link #MARGIN} holds.
+     */
+    public long getSectionCount() {
+        final AABB bounds = this.getBounds();
+        final long chunksX = ((bounds.maxX() + MARGIN) >> 4) - ((bounds.minX() - MARGIN) >> 4) + 1;
+        final long chunksZ = ((bounds.maxZ() + MARGIN) >> 4) - ((bounds.minZ() - MARGIN) >> 4) + 1;
+        final int minSection = Math.max(bounds.minY() - MARGIN, 0) >> 4;
+        final int maxSection = Math.min(bounds.maxY() + MARGIN, 255) >> 4;
+        return chunksX * chunksZ * Math.max(maxSection - minSection + 1, 0);
+    }
+
+    /**
+     * Returns the box to detect the craft in again once it reached past {@code faces}. Each of
+     * those faces moves twice as far from the start point, but no further than the largest
+     * distance. Returns null if none of them can move, or if the grown box would copy too many
+     * sections.
+     */
+    @Nullable public DetectionRegion grow(final int faces) {
+        final int[] grown = this.extents.clone();
+        boolean moved = false;
+        for (int face = 0; face < FACES; face++) {
+            if ((faces & (1 << face)) == 0) continue;
+            grown[face] = Math.min(Math.max(this.extents[face] * 2, 1), this.maxRadius);
+            if (grown[face] > this.extents[face]) moved = true;
+        }
+        if (!moved) return null;
+
+        final DetectionRegion next = new DetectionRegion(this.start, grown, this.maxRadius, this.maxSections);
+        return next.getSectionCount() <= this.maxSections ? next : null;
+    }
+}
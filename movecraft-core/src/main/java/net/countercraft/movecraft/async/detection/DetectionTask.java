@@ -19,261 +19,362 @@ package net.countercraft.movecraft.async.detection;
 
 import com.alexknvl.shipcraft.math.BlockVec;
 import com.google.common.base.Joiner;
-import com.google.common.collect.Sets;
 import com.sk89q.worldguard.LocalPlayer;
 import net.countercraft.movecraft.Movecraft;
 import com.alexknvl.shipcraft.math.IntRange;
 import com.alexknvl.shipcraft.MaterialDataPredicate;
 import net.countercraft.movecraft.async.AsyncTask;
+import net.countercraft.movecraft.async.TaskApplier;
 import net.countercraft.movecraft.config.Settings;
 import net.countercraft.movecraft.craft.Craft;
+import net.countercraft.movecraft.craft.CraftGeometry;
 import net.countercraft.movecraft.craft.CraftType;
+import net.countercraft.movecraft.craft.FlyBlockTable;
+import net.countercraft.movecraft.craft.PackedBlockSet;
+import net.countercraft.movecraft.craft.SpecialBlockIndex;
+import net.countercraft.movecraft.craft.Waterline;
+import net.countercraft.movecraft.detail.WorldSnapshot;
 import net.countercraft.movecraft.localisation.I18nSupport;
 import net.countercraft.movecraft.utils.BlockNames;
-import net.countercraft.movecraft.utils.BoundingBoxUtils;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+import net.countercraft.movecraft.utils.RadixSort;
 import net.countercraft.movecraft.utils.WGCustomFlagsUtils;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
 import org.bukkit.material.MaterialData;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Optional;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
+@SuppressWarnings("deprecation")
 public class DetectionTask extends AsyncTask {
+    private static final int WATER_ID = Material.WATER.getId();
+    private static final int STATIONARY_WATER_ID = Material.STATIONARY_WATER.getId();
+    private static final int WALL_SIGN_ID = Material.WALL_SIGN.getId();
+    private static final int SIGN_POST_ID = Material.SIGN_POST.getId();
+    private static final int CHEST_ID = Material.CHEST.getId();
+    private static final int TRAPPED_CHEST_ID = Material.TRAPPED_CHEST.getId();
+
     private final Movecraft plugin;
     private final Settings settings;
     private final I18nSupport i18n;
     private final BlockVec startLocation;
     private final IntRange sizeRange;
-    private Integer maxX;
-    private Integer maxY;
-    private Integer maxZ;
-    private Integer minY;
-    private final Stack<BlockVec> blockStack = new Stack<>();
-    private final Set<BlockVec> blockList = new HashSet<>();
-    private final Set<BlockVec> visited = new HashSet<>();
-    private final Map<MaterialDataPredicate, Integer> blockTypeCount = new HashMap<>();
-    private Map<MaterialDataPredicate, List<CraftType.Constraint>> dFlyBlocks;
+    private final DetectionRegion region;
+    @Nullable private final ForkJoinPool pool;
+    @Nullable private final DetectionCache.Result cached;
+    private long[] coveredSections;
+    private int facesReached;
+    private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+    private PackedBlockSet blockList;
+    private final PackedBlockSet signs = new PackedBlockSet();
+    private final AtomicInteger blockCount = new AtomicInteger();
+    private FlyBlockTable flyBlocks;
+    private int[] flyBlockCounts;
     private final DetectionTaskData data;
 
+    /**
+     * Blocks, fly block counts and bounds found by the part of the fill one visitor covers.
+     */
+    private final class Scan implements BlockFloodFill.Visitor {
+        private final PackedBlockSet blocks = new PackedBlockSet();
+        private final PackedBlockSet signs = new PackedBlockSet();
+        private final int[] flyBlockCounts = DetectionTask.this.flyBlocks.newCounts();
+        private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        private boolean waterContact;
+        private int facesReached;
+        private String failMessage;
+
+        @Override public boolean visit(final int x, final int y, final int z) {
+            return DetectionTask.this.detectBlock(this, x, y, z);
+        }
+
+        private void add(final int x, final int y, final int z) {
+            this.blocks.add(x, y, z);
+            if (x > this.maxX) this.maxX = x;
+            if (y > this.maxY) this.maxY = y;
+            if (z > this.maxZ) this.maxZ = z;
+            if (x < this.minX) this.minX = x;
+            if (y < this.minY) this.minY = y;
+            if (z < this.minZ) this.minZ = z;
+        }
+
+        private void fail(final String message) {
+            this.failMessage = message;
+        }
+    }
+
     public DetectionTask(final Craft craft, final BlockVec startLocation, final IntRange sizeRange, final MaterialDataPredicate allowedBlocks,
                          final MaterialDataPredicate forbiddenBlocks, final Player player, final Player notificationPlayer, final World w,
-                         final Movecraft plugin, final Settings settings, final I18nSupport i18n)
+                         final Movecraft plugin, final Settings settings, final I18nSupport i18n,
+                         final WorldSnapshot snapshot, final DetectionRegion region, @Nullable final ForkJoinPool pool,
+                         @Nullable final DetectionCache.Result cached)
     {
-        super(craft);
+        super(craft, snapshot);
+        this.pool = pool;
+        this.cached = cached;
         this.startLocation = startLocation;
         this.sizeRange = sizeRange;
+        this.region = region;
         this.plugin = plugin;
         this.settings = settings;
         this.i18n = i18n;
         this.data = new DetectionTaskData(w, player, notificationPlayer, allowedBlocks, forbiddenBlocks);
     }
 
-    @Override public void execute() {
-        final Map<MaterialDataPredicate, List<CraftType.Constraint>> flyBlocks = this.getCraft().getType().getFlyBlocks();
-        this.dFlyBlocks = flyBlocks;
-
-        this.blockStack.push(this.startLocation);
+    @Override protected boolean applyWith(final TaskApplier applier) {
+        return applier.applyDetection(this, this.getCraft());
+    }
 
-        do {
-            this.detectSurrounding(this.blockStack.pop());
-        } while (!this.blockStack.isEmpty());
+    @Override public void execute() {
+        if (this.cached != null) {
+            // the blocks haven't changed since this craft was last detected
+            this.data.setBlockList(this.cached.getBlocks());
+            this.data.setWaterContact(this.cached.getWaterContact());
+            this.data.setSpecialBlocks(this.cached.getSpecialBlocks());
+            this.coveredSections = this.cached.getSections();
+            return;
+        }
 
+        this.flyBlocks = this.getCraft().getType().getFlyBlockTable();
+        final List<Scan> scans = new ArrayList<>();
+        if (this.pool == null) {
+            final Scan scan = new Scan();
+            scans.add(scan);
+            new BlockFloodFill().run(this.startLocation.x(), this.startLocation.y(), this.startLocation.z(), scan);
+        } else {
+            new ParallelBlockFloodFill(this.pool).run(
+                    this.startLocation.x(), this.startLocation.y(), this.startLocation.z(), () -> {
+                        final Scan scan = new Scan();
+                        scans.add(scan);
+                        return scan;
+                    });
+        }
+        this.merge(scans);
+
+        if (this.facesReached != 0) {
+            if (this.data.failed()) {
+                // the craft fails for another reason however far it reaches
+                this.facesReached = 0;
+            } else {
+                // it only is too large if the region can't grow past the faces it reached
+                this.fail(String.format(this.i18n.get("Detection - Craft too large"), this.sizeRange.max()));
+            }
+            return;
+        }
         if (this.data.failed()) {
             return;
         }
 
-        if (this.isWithinLimit(this.blockList.size(), this.sizeRange, false)) {
+        if (this.isWithinLimit(this.blockList.size(), this.sizeRange)) {
 
             this.data.setBlockList(this.finaliseBlockList(this.blockList));
 
-            if (this.confirmStructureRequirements(flyBlocks, this.blockTypeCount, this.data.getBlockList().length)) {
-                this.data.setHitBox(BoundingBoxUtils
-                                       .formBoundingBox(this.data.getBlockList(), this.data.getMinX(), this.maxX, this.data.getMinZ(),
-                                                        this.maxZ));
+            this.confirmStructureRequirements(this.flyBlocks, this.flyBlockCounts, this.data.getBlockList().length);
+        }
+        if (!this.data.failed()) {
+            this.coveredSections = DetectionCache.coveredSections(this.data.getBlockList(), this.startLocation);
+            this.data.setSpecialBlocks(SpecialBlockIndex.of(this.data.getBlockList(), this.getSnapshot()::getTypeId));
+
+            // find the air a water craft carries in its hull now rather than on its first move
+            if (!this.getCraft().getType().blockedByWater()) {
+                final CraftGeometry geometry = CraftGeometry.of(this.blockList);
+                if (Waterline.canScan(this.getSnapshot(), geometry)) {
+                    this.setWaterline(Waterline.scan(this.getSnapshot(), geometry,
+                                                     this.getCraft().getType().getStaticWaterLevel()));
+                }
             }
         }
     }
 
-    private void detectBlock(final BlockVec vec) {
-
-        if (this.notVisited(vec, this.visited)) {
-            final Block testBlock;
-            final Material testMaterial;
-            final MaterialData materialData;
-            try {
-                testBlock = this.data.getWorld().getBlockAt(vec.x(), vec.y(), vec.z());
-                materialData = testBlock.getState().getData();
-                testMaterial = materialData.getItemType();
-            } catch (final Exception e) {
-                this.fail(String.format(this.i18n.get("Detection - Craft too large"), this.sizeRange.max()));
-                return;
-            }
+    public BlockVec getStartLocation() {
+        return this.startLocation;
+    }
+
+    /**
+     * Returns the region around the start location this task detects the craft in.
+     */
+    public DetectionRegion getRegion() {
+        return this.region;
+    }
+
+    /**
+     * Returns the faces of the region the craft reaches past, or zero if the craft lies within the
+     * region or failed for another reason. Such a craft has to be detected again in a region grown
+     * past those faces.
+     */
+    public int getFacesReached() {
+        return this.facesReached;
+    }
+
+    /**
+     * Returns the sections a change in which could change the result of a successful detection.
+     */
+    public long[] getCoveredSections() {
+        return this.coveredSections;
+    }
 
-            if ((testMaterial == Material.WATER) || (testMaterial == Material.STATIONARY_WATER)) {
-                this.data.setWaterContact(true);
+    private void merge(final List<Scan> scans) {
+        if (scans.size() == 1) {
+            this.blockList = scans.get(0).blocks;
+        } else {
+            this.blockList = new PackedBlockSet(this.blockCount.get());
+            for (final Scan scan : scans) {
+                for (int i = 0; i < scan.blocks.size(); i++) this.blockList.addPacked(scan.blocks.getPacked(i));
             }
-            if (testMaterial == Material.WALL_SIGN || testMaterial == Material.SIGN_POST) {
-                final BlockState state = testBlock.getState();
-                if (state instanceof Sign) {
-                    final Sign s = (Sign) state;
-                    if (s.getLine(0).equalsIgnoreCase("Pilot:") && this.data.getPlayer() != null) {
-                        final String playerName = this.data.getPlayer().getName();
-                        boolean foundPilot = false;
-                        if (s.getLine(1).equalsIgnoreCase(playerName) || s.getLine(2).equalsIgnoreCase(playerName) ||
-                            s.getLine(3).equalsIgnoreCase(playerName)) {
-                            foundPilot = true;
-                        }
-                        if (!foundPilot && (!this.data.getPlayer().hasPermission("movecraft.bypasslock"))) {
-                            this.fail(this.i18n.get("Not one of the registered pilots on this craft"));
-                        }
-                    }
-                }
+        }
+        this.flyBlockCounts = this.flyBlocks.newCounts();
+        for (final Scan scan : scans) {
+            for (int slot = 0; slot < this.flyBlockCounts.length; slot++) {
+                this.flyBlockCounts[slot] += scan.flyBlockCounts[slot];
             }
+            this.minX = Math.min(this.minX, scan.minX);
+            this.minY = Math.min(this.minY, scan.minY);
+            this.minZ = Math.min(this.minZ, scan.minZ);
+            this.maxX = Math.max(this.maxX, scan.maxX);
+            this.maxY = Math.max(this.maxY, scan.maxY);
+            this.maxZ = Math.max(this.maxZ, scan.maxZ);
+            for (int i = 0; i < scan.signs.size(); i++) this.signs.addPacked(scan.signs.getPacked(i));
+            if (scan.waterContact) this.data.setWaterContact(true);
+            this.facesReached |= scan.facesReached;
+            // the serial fill keeps the last failure, so the last scan to fail wins here too
+            if (scan.failMessage != null) this.fail(scan.failMessage);
+        }
+    }
 
-            if (this.isForbiddenBlock(materialData)) {
-                this.fail(this.i18n.get("Detection - Forbidden block found") +
-                          String.format("\nInvalid Block: %s at (%d, %d, %d)", BlockNames.itemName(materialData),
-                                        vec.x(), vec.y(), vec.z()));
-            } else if (this.isAllowedBlock(materialData)) {
-                // Check for double chests.
-                final Set<Material> chestTypes = Sets.immutableEnumSet(Material.CHEST, Material.TRAPPED_CHEST);
-                if (chestTypes.contains(testMaterial)) {
-                    final World w = this.data.getWorld();
-                    final boolean foundDoubleChest =
-                            (w.getBlockAt(vec.x() - 1, vec.y(), vec.z()).getType() == testMaterial) ||
-                            (w.getBlockAt(vec.x() + 1, vec.y(), vec.z()).getType() == testMaterial) ||
-                            (w.getBlockAt(vec.x(), vec.y(), vec.z() - 1).getType() == testMaterial) ||
-                            (w.getBlockAt(vec.x(), vec.y(), vec.z() + 1).getType() == testMaterial);
-                    if (foundDoubleChest) {
-                        this.fail(this.i18n.get("Detection - ERROR: Double chest found"));
-                    }
-                }
+    /**
+     * Checks the block at {@code x, y, z} and adds it to the craft if it is allowed. Returns true
+     * if detection should continue from this block.
+     */
+    private boolean detectBlock(final Scan scan, final int x, final int y, final int z) {
+        final int faces = this.region.facesPast(x, y, z);
+        if (faces != 0) {
+            scan.facesReached |= faces;
+            return false;
+        }
+        if (!this.getSnapshot().contains(x, y, z)) {
+            // the region holds the block, but its chunk wasn't loaded when the region was copied
+            scan.fail(String.format(this.i18n.get("Detection - Chunk not loaded"), x, z));
+            return false;
+        }
+        final int block = this.getSnapshot().getBlock(x, y, z);
+        final int typeId = block >>> 4;
+        final byte blockData = (byte) (block & 15);
 
-                final Location loc = vec.toBukkitLocation(this.data.getWorld());
-                final Player p;
-                if (this.data.getPlayer() == null) {
-                    p = this.data.getNotificationPlayer();
-                } else {
-                    p = this.data.getPlayer();
-                }
-                if (p != null) {
-                    if (this.plugin.getWorldGuardPlugin() != null && this.plugin.getWGCustomFlagsPlugin() != null && this.settings.WGCustomFlagsUsePilotFlag) {
-                        final LocalPlayer lp = this.plugin.getWorldGuardPlugin().wrapPlayer(p);
-                        if (!WGCustomFlagsUtils
-                                .validateFlag(this.plugin.getWorldGuardPlugin(), loc, this.plugin.FLAG_PILOT, lp)) {
-                            this.fail(String.format(this.i18n.get("WGCustomFlags - Detection Failed") + " @ %d,%d,%d", vec.x(), vec.y(), vec.z()));
-                        }
-                    }
-                }
+        if (typeId == WATER_ID || typeId == STATIONARY_WATER_ID) {
+            scan.waterContact = true;
+        }
+        // signs are the only blocks whose state detection needs, and that can't be read off the main thread
+        if ((typeId == WALL_SIGN_ID || typeId == SIGN_POST_ID) && this.data.getPlayer() != null) {
+            scan.signs.add(x, y, z);
+        }
 
-                this.addToBlockList(vec);
-                for (final MaterialDataPredicate flyBlockDef : this.dFlyBlocks.keySet()) {
-                    if (flyBlockDef.checkBlock(testBlock)) {
-                        this.addToBlockCount(flyBlockDef);
-                    } else {
-                        this.addToBlockCount(null);
-                    }
+        if (this.isForbiddenBlock(typeId, blockData)) {
+            scan.fail(this.i18n.get("Detection - Forbidden block found") +
+                      String.format("\nInvalid Block: %s at (%d, %d, %d)",
+                                    BlockNames.itemName(new MaterialData(typeId, blockData)), x, y, z));
+        } else if (this.isAllowedBlock(typeId, blockData)) {
+            // Check for double chests.
+            if (typeId == CHEST_ID || typeId == TRAPPED_CHEST_ID) {
+                final boolean foundDoubleChest =
+                        this.hasType(x - 1, y, z, typeId) || this.hasType(x + 1, y, z, typeId) ||
+                        this.hasType(x, y, z - 1, typeId) || this.hasType(x, y, z + 1, typeId);
+                if (foundDoubleChest) {
+                    scan.fail(this.i18n.get("Detection - ERROR: Double chest found"));
                 }
+            }
 
-                if (this.isWithinLimit(this.blockList.size(), new IntRange(0, this.sizeRange.max()), true)) {
-                    this.addToDetectionStack(vec);
-                    this.calculateBounds(vec);
+            final Player p;
+            if (this.data.getPlayer() == null) {
+                p = this.data.getNotificationPlayer();
+            } else {
+                p = this.data.getPlayer();
+            }
+            if (p != null) {
+                if (this.plugin.getWorldGuardPlugin() != null && this.plugin.getWGCustomFlagsPlugin() != null && this.settings.WGCustomFlagsUsePilotFlag) {
+                    final Location loc = new Location(this.data.getWorld(), x, y, z);
+                    final LocalPlayer lp = this.plugin.getWorldGuardPlugin().wrapPlayer(p);
+                    if (!WGCustomFlagsUtils
+                            .validateFlag(this.plugin.getWorldGuardPlugin(), loc, this.plugin.FLAG_PILOT, lp)) {
+                        scan.fail(String.format(this.i18n.get("WGCustomFlags - Detection Failed") + " @ %d,%d,%d", x, y, z));
+                    }
                 }
             }
-        }
-    }
-
-    private boolean isAllowedBlock(final MaterialData test) {
-        return this.data.getAllowedBlocks().check(test);
-    }
 
-    private boolean isForbiddenBlock(final MaterialData test) {
-        return this.data.getForbiddenBlocks().check(test);
-    }
-
-    public DetectionTaskData getData() {
-        return this.data;
-    }
+            scan.add(x, y, z);
+            this.flyBlocks.count(scan.flyBlockCounts, typeId, blockData);
 
-    private boolean notVisited(final BlockVec vec, final Set<BlockVec> locations) {
-        if (locations.contains(vec)) {
-            return false;
-        } else {
-            locations.add(vec);
+            // keep going a little past the limit so the error can tell how large the craft is
+            final int count = this.blockCount.incrementAndGet();
+            if (count > this.sizeRange.max() + 1000) {
+                scan.fail(String.format(this.i18n.get("Detection - Craft too large"), this.sizeRange.max()) +
+                          String.format("\nBlocks found: %d", count));
+                return false;
+            }
             return true;
         }
+        return false;
     }
 
-    private void addToBlockList(final BlockVec l) {
-        this.blockList.add(l);
+    /**
+     * Fails detection if a pilot sign the fill came across doesn't name the player. This reads the
+     * signs from the world, so it has to be called on the main thread after the task has executed.
+     */
+    public void checkPilotSigns() {
+        final Player player = this.data.getPlayer();
+        if (player == null || this.data.failed()) return;
+        for (int i = 0; i < this.signs.size(); i++) {
+            final BlockVec vec = this.signs.get(i);
+            final BlockState state = this.data.getWorld().getBlockAt(vec.x(), vec.y(), vec.z()).getState();
+            if (state instanceof Sign) {
+                final Sign s = (Sign) state;
+                if (s.getLine(0).equalsIgnoreCase("Pilot:")) {
+                    final String playerName = player.getName();
+                    boolean foundPilot = false;
+                    if (s.getLine(1).equalsIgnoreCase(playerName) || s.getLine(2).equalsIgnoreCase(playerName) ||
+                        s.getLine(3).equalsIgnoreCase(playerName)) {
+                        foundPilot = true;
+                    }
+                    if (!foundPilot && (!player.hasPermission("movecraft.bypasslock"))) {
+                        this.fail(this.i18n.get("Not one of the registered pilots on this craft"));
+                        return;
+                    }
+                }
+            }
+        }
     }
 
-    private void addToDetectionStack(final BlockVec l) {
-        this.blockStack.push(l);
+    private boolean hasType(final int x, final int y, final int z, final int typeId) {
+        return this.getSnapshot().contains(x, y, z) && this.getSnapshot().getTypeId(x, y, z) == typeId;
     }
 
-    private void addToBlockCount(final MaterialDataPredicate id) {
-        final int count = Optional.ofNullable(this.blockTypeCount.get(id)).orElse(0);
-        this.blockTypeCount.put(id, count + 1);
+    private boolean isAllowedBlock(final int typeId, final byte data) {
+        return this.data.getAllowedBlocks().check(typeId, data);
     }
 
-    private void detectSurrounding(final BlockVec l) {
-        for (int xMod = -1; xMod < 2; xMod += 2) {
-            for (int yMod = -1; yMod < 2; yMod++) {
-                this.detectBlock(l.translate(xMod, yMod, 0));
-            }
-        }
-
-        for (int zMod = -1; zMod < 2; zMod += 2) {
-            for (int yMod = -1; yMod < 2; yMod++) {
-                this.detectBlock(l.translate(0, yMod, zMod));
-            }
-        }
-
-        for (int yMod = -1; yMod < 2; yMod += 2) {
-            this.detectBlock(l.translate(0, yMod, 0));
-        }
+    private boolean isForbiddenBlock(final int typeId, final byte data) {
+        return this.data.getForbiddenBlocks().check(typeId, data);
     }
 
-    private void calculateBounds(final BlockVec l) {
-        if (this.maxX == null || l.x() > this.maxX) {
-            this.maxX = l.x();
-        }
-        if (this.maxY == null || l.y() > this.maxY) {
-            this.maxY = l.y();
-        }
-        if (this.maxZ == null || l.z() > this.maxZ) {
-            this.maxZ = l.z();
-        }
-        if (this.data.getMinX() == null || l.x() < this.data.getMinX()) {
-            this.data.setMinX(l.x());
-        }
-        if (this.minY == null || l.y() < this.minY) {
-            this.minY = l.y();
-        }
-        if (this.data.getMinZ() == null || l.z() < this.data.getMinZ()) {
-            this.data.setMinZ(l.z());
-        }
+    public DetectionTaskData getData() {
+        return this.data;
     }
 
-    private boolean isWithinLimit(final int size, final IntRange sizeRange, final boolean continueOver) {
+    private boolean isWithinLimit(final int size, final IntRange sizeRange) {
         if (size < sizeRange.min()) {
             this.fail(String.format(this.i18n.get("Detection - Craft too small"), sizeRange.min()) +
                       String.format("\nBlocks found: %d", size));
             return false;
-        } else if ((!continueOver && size > sizeRange.max()) || (continueOver && size > (sizeRange.max() + 1000))) {
+        } else if (size > sizeRange.max()) {
             this.fail(String.format(this.i18n.get("Detection - Craft too large"), sizeRange.max()) +
                       String.format("\nBlocks found: %d", size));
             return false;
@@ -282,25 +383,33 @@ public class DetectionTask extends AsyncTask {
         }
     }
 
-    private BlockVec[] finaliseBlockList(final Set<BlockVec> blockSet) {
-        //BlockVec[] finalList=blockSet.toArray( new BlockVec[1] );
-        final ArrayList<BlockVec> finalList = new ArrayList<>();
-
-        // Sort the blocks from the bottom up to minimize lower altitude block updates
-        for (int posx = this.data.getMinX(); posx <= this.maxX; posx++) {
-            for (int posz = this.data.getMinZ(); posz <= this.maxZ; posz++) {
-                for (int posy = this.minY; posy <= this.maxY; posy++) {
-                    final BlockVec test = new BlockVec(posx, posy, posz);
-                    if (blockSet.contains(test)) finalList.add(test);
-                }
-            }
+    private BlockVec[] finaliseBlockList(final PackedBlockSet blockSet) {
+        // Sort the blocks by x, then z, then from the bottom up to minimize lower altitude block updates
+        final int size = blockSet.size();
+        if (size == 0) return new BlockVec[0];
+        final int bitsY = RadixSort.bitsFor(this.maxY - this.minY);
+        final int bitsZ = RadixSort.bitsFor(this.maxZ - this.minZ);
+        final int bitsX = RadixSort.bitsFor(this.maxX - this.minX);
+        final long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            final long packed = blockSet.getPacked(i);
+            keys[i] = ((long) (PackedBlockPos.unpackX(packed) - this.minX) << (bitsZ + bitsY)) |
+                      ((long) (PackedBlockPos.unpackZ(packed) - this.minZ) << bitsY) |
+                      (PackedBlockPos.unpackY(packed) - this.minY);
+        }
+        RadixSort.sort(keys, size, bitsX + bitsZ + bitsY);
+
+        final BlockVec[] finalList = new BlockVec[size];
+        for (int i = 0; i < size; i++) {
+            final long key = keys[i];
+            finalList[i] = new BlockVec(this.minX + (int) (key >>> (bitsZ + bitsY)),
+                                        this.minY + (int) (key & ((1L << bitsY) - 1)),
+                                        this.minZ + (int) ((key >>> bitsY) & ((1L << bitsZ) - 1)));
         }
-        return finalList.toArray(new BlockVec[1]);
+        return finalList;
     }
 
-    private boolean confirmStructureRequirements(final Map<MaterialDataPredicate, List<CraftType.Constraint>> flyBlocks,
-                                                 final Map<MaterialDataPredicate, Integer> countData, final int total)
-    {
+    private boolean confirmStructureRequirements(final FlyBlockTable flyBlocks, final int[] countData, final int total) {
         if (this.getCraft().getType().getRequireWaterContact()) {
             if (!this.data.getWaterContact()) {
                 this.fail(this.i18n.get("Detection - Failed - Water contact required but not found"));
@@ -308,14 +417,11 @@ public class DetectionTask extends AsyncTask {
             }
         }
 
-        for (final Map.Entry<MaterialDataPredicate, List<CraftType.Constraint>> entry : flyBlocks.entrySet()) {
-            final MaterialDataPredicate predicate = entry.getKey();
-            final List<CraftType.Constraint> constraints = entry.getValue();
-
-            final int count = Optional.ofNullable(countData.get(predicate)).orElse(0);
-            final String name = BlockNames.materialDataPredicateNames(entry.getKey()).mkString(", ");
+        for (int slot = 0; slot < flyBlocks.size(); slot++) {
+            final int count = countData[slot];
+            final String name = BlockNames.materialDataPredicateNames(flyBlocks.getPredicate(slot)).mkString(", ");
 
-            for (final CraftType.Constraint constraint : constraints) {
+            for (final CraftType.Constraint constraint : flyBlocks.getConstraints(slot)) {
                 if (constraint.bound.isExact()) {
                     final int exactBound = constraint.bound.asExact(total);
 
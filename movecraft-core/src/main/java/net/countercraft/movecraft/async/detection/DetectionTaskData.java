@@ -19,19 +19,21 @@ package net.countercraft.movecraft.async.detection;
 
 import com.alexknvl.shipcraft.math.BlockVec;
 import com.alexknvl.shipcraft.MaterialDataPredicate;
+import net.countercraft.movecraft.craft.SpecialBlockIndex;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
+import javax.annotation.Nullable;
+
 public class DetectionTaskData {
     private World world;
     private boolean failed;
     private boolean waterContact;
     private String failMessage;
     private BlockVec[] blockList;
+    @Nullable private SpecialBlockIndex specialBlocks;
     private Player player;
     private Player notificationPlayer;
-    private int[][][] hitBox;
-    private Integer minX, minZ;
     private final MaterialDataPredicate allowedBlocks;
     private final MaterialDataPredicate forbiddenBlocks;
 
@@ -86,36 +88,23 @@ public class DetectionTaskData {
         this.blockList = blockList;
     }
 
-    public Player getPlayer() {
-        return this.player;
-    }
-
-    public Player getNotificationPlayer() {
-        return this.notificationPlayer;
-    }
-
-    public int[][][] getHitBox() {
-        return this.hitBox;
+    /**
+     * Returns the special blocks of the block list, or null if they weren't indexed during detection.
+     */
+    @Nullable public SpecialBlockIndex getSpecialBlocks() {
+        return this.specialBlocks;
     }
 
-    void setHitBox(final int[][][] hitBox) {
-        this.hitBox = hitBox;
+    void setSpecialBlocks(@Nullable final SpecialBlockIndex specialBlocks) {
+        this.specialBlocks = specialBlocks;
     }
 
-    public Integer getMinX() {
-        return this.minX;
-    }
-
-    void setMinX(final Integer minX) {
-        this.minX = minX;
-    }
-
-    public Integer getMinZ() {
-        return this.minZ;
+    public Player getPlayer() {
+        return this.player;
     }
 
-    void setMinZ(final Integer minZ) {
-        this.minZ = minZ;
+    public Player getNotificationPlayer() {
+        return this.notificationPlayer;
     }
 
     void setFailed(final boolean failed) {
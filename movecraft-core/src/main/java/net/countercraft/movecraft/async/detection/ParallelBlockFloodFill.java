@@ -0,0 +1,175 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.async.detection;
+
+import net.countercraft.movecraft.craft.PackedBlockSet;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * {@link BlockFloodFill} split by chunk section across a {@link ForkJoinPool}. The fill runs in
+ * rounds: every section with pending positions is filled by its own task for as long as the fill
+ * stays inside that section, and the positions that cross into other sections are merged into the
+ * pending positions of the next round. A section is only filled by one task at a time, so the
+ * visited bits need no synchronisation, and every position is still visited exactly once.
+ */
+final class ParallelBlockFloodFill {
+    @FunctionalInterface
+    interface VisitorFactory {
+        /**
+         * Called on the thread running the fill, once for every section filled in a round, before
+         * the round starts. Sections are filled in ascending order of their packed coordinates.
+         * The visitor returned is only called from the task filling that section.
+         */
+        BlockFloodFill.Visitor create();
+    }
+
+    private static final int PAGE_WORDS = 4096 / 64;
+
+    private final ForkJoinPool pool;
+    // packed section coordinates -> visited bits of the section
+    private final Map<Long, long[]> visited = new HashMap<>();
+
+    ParallelBlockFloodFill(final ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    private static long sectionOf(final int x, final int y, final int z) {
+        return PackedBlockPos.pack(x >> 4, y >> 4, z >> 4);
+    }
+
+    private static int bitIndex(final int x, final int y, final int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Fills outwards from {@code x, y, z}, visiting the same positions as {@link BlockFloodFill#run}.
+     */
+    void run(final int x, final int y, final int z, final VisitorFactory factory) {
+        Map<Long, PackedBlockSet> pending = new HashMap<>();
+        final int[] neighbours = BlockFloodFill.NEIGHBOURS;
+        for (int i = 0; i < neighbours.length; i += 3) {
+            this.addPending(pending, x + neighbours[i], y + neighbours[i + 1], z + neighbours[i + 2]);
+        }
+
+        while (!pending.isEmpty()) {
+            final long[] sections = new long[pending.size()];
+            int sectionCount = 0;
+            for (final long section : pending.keySet()) sections[sectionCount++] = section;
+            Arrays.sort(sections);
+
+            final List<SectionFill> fills = new ArrayList<>(sections.length);
+            for (final long section : sections) {
+                final long[] page = this.visited.computeIfAbsent(section, s -> new long[PAGE_WORDS]);
+                fills.add(new SectionFill(section, page, pending.get(section), factory.create()));
+            }
+            this.pool.invoke(new RecursiveAction() {
+                @Override protected void compute() {
+                    invokeAll(fills);
+                }
+            });
+
+            pending = new HashMap<>();
+            for (final SectionFill fill : fills) {
+                for (int i = 0; i < fill.outgoingSize; i++) {
+                    final long packed = fill.outgoing[i];
+                    this.addPending(pending, PackedBlockPos.unpackX(packed), PackedBlockPos.unpackY(packed),
+                                    PackedBlockPos.unpackZ(packed));
+                }
+            }
+        }
+    }
+
+    private void addPending(final Map<Long, PackedBlockSet> pending, final int x, final int y, final int z) {
+        final long section = sectionOf(x, y, z);
+        final long[] page = this.visited.get(section);
+        final int bit = bitIndex(x, y, z);
+        if (page != null && (page[bit >>> 6] & (1L << bit)) != 0) return;
+        pending.computeIfAbsent(section, s -> new PackedBlockSet()).add(x, y, z);
+    }
+
+    private static final class SectionFill extends RecursiveAction {
+        private final long section;
+        private final long[] page;
+        private final PackedBlockSet incoming;
+        private final BlockFloodFill.Visitor visitor;
+        private long[] stack = new long[64];
+        private int stackSize;
+        private long[] outgoing = new long[64];
+        private int outgoingSize;
+
+        SectionFill(final long section, final long[] page, final PackedBlockSet incoming,
+                    final BlockFloodFill.Visitor visitor)
+        {
+            this.section = section;
+            this.page = page;
+            this.incoming = incoming;
+            this.visitor = visitor;
+        }
+
+        @Override protected void compute() {
+            for (int i = 0; i < this.incoming.size(); i++) {
+                final long packed = this.incoming.getPacked(i);
+                this.visit(PackedBlockPos.unpackX(packed), PackedBlockPos.unpackY(packed),
+                           PackedBlockPos.unpackZ(packed));
+            }
+
+            final int[] neighbours = BlockFloodFill.NEIGHBOURS;
+            while (this.stackSize > 0) {
+                final long packed = this.stack[--this.stackSize];
+                final int x = PackedBlockPos.unpackX(packed);
+                final int y = PackedBlockPos.unpackY(packed);
+                final int z = PackedBlockPos.unpackZ(packed);
+                for (int i = 0; i < neighbours.length; i += 3) {
+                    final int nx = x + neighbours[i];
+                    final int ny = y + neighbours[i + 1];
+                    final int nz = z + neighbours[i + 2];
+                    if (sectionOf(nx, ny, nz) == this.section) {
+                        this.visit(nx, ny, nz);
+                    } else {
+                        if (this.outgoingSize == this.outgoing.length) {
+                            this.outgoing = Arrays.copyOf(this.outgoing, this.outgoing.length * 2);
+                        }
+                        this.outgoing[this.outgoingSize++] = PackedBlockPos.pack(nx, ny, nz);
+                    }
+                }
+            }
+        }
+
+        private void visit(final int x, final int y, final int z) {
+            final int bit = bitIndex(x, y, z);
+            final long word = this.page[bit >>> 6];
+            final long mask = 1L << bit;
+            if ((word & mask) != 0) return;
+            this.page[bit >>> 6] = word | mask;
+            if (this.visitor.visit(x, y, z)) {
+                if (this.stackSize == this.stack.length) {
+                    this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+                }
+                this.stack[this.stackSize++] = PackedBlockPos.pack(x, y, z);
+            }
+        }
+    }
+}
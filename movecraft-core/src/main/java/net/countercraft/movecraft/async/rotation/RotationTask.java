@@ -19,30 +19,36 @@ package net.countercraft.movecraft.async.rotation;
 
 import com.alexknvl.shipcraft.math.BlockVec;
 import com.alexknvl.shipcraft.math.RotationXZ;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableList;
 import com.sk89q.worldguard.LocalPlayer;
 import net.countercraft.movecraft.Movecraft;
 import net.countercraft.movecraft.async.AsyncTask;
+import net.countercraft.movecraft.async.TaskApplier;
 import net.countercraft.movecraft.config.Settings;
+import net.countercraft.movecraft.craft.BlockSet;
 import net.countercraft.movecraft.craft.Craft;
+import net.countercraft.movecraft.craft.CraftGeometry;
 import net.countercraft.movecraft.craft.CraftManager;
+import net.countercraft.movecraft.craft.CraftState;
+import net.countercraft.movecraft.craft.PackedBlockSet;
+import net.countercraft.movecraft.craft.Waterline;
 import net.countercraft.movecraft.localisation.I18nSupport;
 import net.countercraft.movecraft.utils.BlockUtils;
+import net.countercraft.movecraft.detail.EntitySnapshot;
 import net.countercraft.movecraft.detail.MapUpdateCommand;
+import net.countercraft.movecraft.detail.WorldSnapshot;
 import net.countercraft.movecraft.utils.MathUtils;
 import net.countercraft.movecraft.utils.WGCustomFlagsUtils;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.InventoryHolder;
-import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.MaterialData;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -59,190 +65,138 @@ public class RotationTask extends AsyncTask {
     private BlockVec[] blockList;    // used to be final, not sure why. Changed by Mark / Loraxe42
     private MapUpdateCommand.MoveBlock[] updates;
     private MapUpdateCommand.MoveEntity[] entityUpdates;
-    private int[][][] hitbox;
-    private Integer minX, minZ;
+    private final CraftGeometry geometry;
     private final RotationXZ rotation;
     private final World world;
     private final boolean isSubCraft;
+    private final List<ParentUpdate> parentUpdates = new ArrayList<>();
+    @Nullable private CraftState rotatedState;
+
+    private static final class ParentUpdate {
+        final Craft craft;
+        final CraftState expected;
+        final PackedBlockSet blocks;
+
+        ParentUpdate(final Craft craft, final CraftState expected, final PackedBlockSet blocks) {
+            this.craft = craft;
+            this.expected = expected;
+            this.blocks = blocks;
+        }
+    }
 
     public RotationTask(final Craft c, final Movecraft plugin, final Settings settings, final I18nSupport i18n, final CraftManager craftManager,
-                        final BlockVec originPoint, final BlockVec[] blockList, final RotationXZ rotation, final World world)
+                        final BlockVec originPoint, final BlockVec[] blockList, final CraftGeometry geometry,
+                        final RotationXZ rotation, final World world, final WorldSnapshot snapshot,
+                        final ImmutableList<EntitySnapshot> entities)
     {
-        super(c);
+        super(c, snapshot, entities);
         this.plugin = plugin;
         this.settings = settings;
         this.i18n = i18n;
         this.craftManager = craftManager;
         this.originPoint = originPoint;
         this.blockList = blockList;
+        this.geometry = geometry;
         this.rotation = rotation;
         this.world = world;
         this.isSubCraft = false;
     }
 
     public RotationTask(final Craft c, final Movecraft plugin, final Settings settings, final I18nSupport i18n, final CraftManager craftManager,
-                        final BlockVec originPoint, final BlockVec[] blockList, final RotationXZ rotation, final World world,
-                        final boolean isSubCraft)
+                        final BlockVec originPoint, final BlockVec[] blockList, final CraftGeometry geometry,
+                        final RotationXZ rotation, final World world, final boolean isSubCraft,
+                        final WorldSnapshot snapshot, final ImmutableList<EntitySnapshot> entities)
     {
-        super(c);
+        super(c, snapshot, entities);
         this.plugin = plugin;
         this.settings = settings;
         this.i18n = i18n;
         this.craftManager = craftManager;
         this.originPoint = originPoint;
         this.blockList = blockList;
+        this.geometry = geometry;
         this.rotation = rotation;
         this.world = world;
         this.isSubCraft = isSubCraft;
     }
 
-    @Override public void execute() {
-        final int[][][] hb = this.getCraft().getHitBox();
-        if (hb == null) return;
-
-        // Determine craft borders
-        int minY = 65535;
-        int maxY = -65535;
-        for (final int[][] i1 : hb) {
-            for (final int[] i2 : i1) {
-                if (i2 != null) {
-                    if (i2[0] < minY) {
-                        minY = i2[0];
-                    }
-                    if (i2[1] > maxY) {
-                        maxY = i2[1];
-                    }
-                }
-            }
-        }
+    @Override protected boolean applyWith(final TaskApplier applier) {
+        return applier.applyRotation(this, this.getCraft());
+    }
 
-        // safe because if the first x array doesn't have a z array, then it wouldn't
-        // be the first x array
-        Integer maxX = this.getCraft().getMinX() + hb.length;
-        Integer maxZ = this.getCraft().getMinZ() + hb[0].length;
+    @Override public void execute() {
+        if (this.geometry.isEmpty()) return;
 
-        this.minX = this.getCraft().getMinX();
-        this.minZ = this.getCraft().getMinZ();
+        // Craft borders, maxX and maxZ are exclusive
+        final int minY = this.geometry.getMinY();
+        final int maxY = this.geometry.getMaxY();
+        final int minX = this.geometry.getMinX();
+        final int minZ = this.geometry.getMinZ();
+        final int maxX = this.geometry.getMaxX() + 1;
+        final int maxZ = this.geometry.getMaxZ() + 1;
 
         final Player craftPilot = this.craftManager.getPlayerFromCraft(this.getCraft());
 
         // blockedByWater=false means an ocean-going vessel
         final boolean waterCraft = !this.getCraft().getType().blockedByWater();
 
+        // the waterline found before holds unless the water around the craft changed
         int waterLine = 0;
+        Waterline waterline = null;
         if (waterCraft) {
-            // next figure out the water level by examining blocks next to the outer boundaries of the craft
-            for (int posY = maxY; (posY >= minY) && (waterLine == 0); posY--) {
-                int posX;
-                int posZ = this.getCraft().getMinZ() - 1;
-                for (posX = this.getCraft().getMinX() - 1; (posX <= maxX + 1) && (waterLine == 0); posX++) {
-                    if (this.world.getBlockAt(posX, posY, posZ).getType() == Material.STATIONARY_WATER) {
-                        waterLine = posY;
-                    }
-                }
-                posZ = maxZ + 1;
-                for (posX = this.getCraft().getMinX() - 1; (posX <= maxX + 1) && (waterLine == 0); posX++) {
-                    if (this.world.getBlockAt(posX, posY, posZ).getType() == Material.STATIONARY_WATER) {
-                        waterLine = posY;
-                    }
-                }
-                posX = this.getCraft().getMinX() - 1;
-                for (posZ = this.getCraft().getMinZ(); (posZ <= maxZ) && (waterLine == 0); posZ++) {
-                    if (this.world.getBlockAt(posX, posY, posZ).getType() == Material.STATIONARY_WATER) {
-                        waterLine = posY;
-                    }
-                }
-                posX = maxX + 1;
-                for (posZ = this.getCraft().getMinZ(); (posZ <= maxZ) && (waterLine == 0); posZ++) {
-                    if (this.world.getBlockAt(posX, posY, posZ).getType() == Material.STATIONARY_WATER) {
-                        waterLine = posY;
-                    }
-                }
+            final int staticWaterLevel = this.getCraft().getType().getStaticWaterLevel();
+            waterline = this.getWaterline();
+            if (waterline == null || !waterline.isCurrent(this.getSnapshot(), this.geometry, staticWaterLevel)) {
+                waterline = Waterline.scan(this.getSnapshot(), this.geometry, staticWaterLevel);
             }
-
-            // now add all the air blocks found within the crafts borders below the waterline to the craft blocks so
-            // they will be rotated
-            final HashSet<BlockVec> newHSBlockList = new HashSet<>(Arrays.asList(this.blockList));
-            for (int posY = waterLine; posY >= minY; posY--) {
-                for (int posX = this.getCraft().getMinX(); posX <= maxX; posX++) {
-                    for (int posZ = this.getCraft().getMinZ(); posZ <= maxZ; posZ++) {
-                        if (this.world.getBlockAt(posX, posY, posZ).getType() == Material.AIR) {
-                            final BlockVec l = new BlockVec(posX, posY, posZ);
-                            newHSBlockList.add(l);
-                        }
-                    }
+            waterLine = waterline.getLevel();
+
+            // now add the air inside the hull to the craft blocks so it will be rotated. Cells that aren't part of
+            // the craft yet may have been filled since the waterline was found, so they are read again.
+            final BlockSet craftBlocks = this.getState().getBlocks();
+            final BlockSet interiorAir = waterline.getInteriorAir();
+            final List<BlockVec> extendedBlockList = new ArrayList<>(Arrays.asList(this.blockList));
+            for (int i = 0; i < interiorAir.size(); i++) {
+                final BlockVec l = interiorAir.get(i);
+                if (!craftBlocks.contains(l) && this.getSnapshot().getType(l.x(), l.y(), l.z()) == Material.AIR) {
+                    extendedBlockList.add(l);
                 }
             }
-            this.blockList = newHSBlockList.toArray(new BlockVec[newHSBlockList.size()]);
+            this.blockList = extendedBlockList.toArray(new BlockVec[extendedBlockList.size()]);
         }
+        this.setWaterline(waterline);
 
-        // Check for fuel, burn some from a furnace if needed.
-        // Blocks of coal are supported, in addition to coal and charcoal.
+        // Burn fuel, or mark that some has to be taken from a furnace
         final double fuelBurnRate = this.getCraft().getType().getFuelBurnRate();
         if (fuelBurnRate != 0.0 && !this.getCraft().getSinking()) {
-            if (this.getCraft().getBurningFuel() < fuelBurnRate) {
-                Block fuelHolder = null;
-                for (final BlockVec bTest : this.blockList) {
-                    final Block b = this.getCraft().getWorld().getBlockAt(bTest.x(), bTest.y(), bTest.z());
-                    if (b.getType() == Material.FURNACE) {
-                        final InventoryHolder inventoryHolder = (InventoryHolder) b.getState();
-                        final Inventory inv = inventoryHolder.getInventory();
-                        if (inv.contains(Material.COAL) || inv.contains(Material.COAL_BLOCK)) {
-                            fuelHolder = b;
-                        }
-                    }
-                }
-                if (fuelHolder == null) {
-                    this.failed = true;
-                    this.failMessage = this.i18n.get("Translation - Failed Craft out of fuel");
-                } else {
-                    final InventoryHolder inventoryHolder = (InventoryHolder) fuelHolder.getState();
-                    final Inventory inv = inventoryHolder.getInventory();
-                    if (inv.contains(Material.COAL)) {
-                        final ItemStack iStack = inv.getItem(inv.first(Material.COAL));
-                        final int amount = iStack.getAmount();
-                        if (amount == 1) {
-                            inv.remove(iStack);
-                        } else {
-                            iStack.setAmount(amount - 1);
-                        }
-                        this.getCraft().setBurningFuel(this.getCraft().getBurningFuel() + 7.0);
-                    } else {
-                        final ItemStack iStack = inv.getItem(inv.first(Material.COAL_BLOCK));
-                        final int amount = iStack.getAmount();
-                        if (amount == 1) {
-                            inv.remove(iStack);
-                        } else {
-                            iStack.setAmount(amount - 1);
-                        }
-                        this.getCraft().setBurningFuel(this.getCraft().getBurningFuel() + 79.0);
-                    }
-                }
+            if (this.getBurningFuel() < fuelBurnRate) {
+                // fuel is taken from a furnace on the main thread when the result is applied
+                this.setNeedsFuel(true);
             } else {
-                this.getCraft().setBurningFuel(this.getCraft().getBurningFuel() - fuelBurnRate);
+                this.setBurningFuel(this.getBurningFuel() - fuelBurnRate);
             }
         }
 
-        // Rotate the block set.
-        final BlockVec[] centeredBlockList = new BlockVec[this.blockList.length];
+        // Rotate the block set. Unless air from the hull was added, the craft's own rotated layout
+        // gives the new positions and is installed as is once the rotation succeeds.
+        if (this.blockList.length == this.getState().getBlocks().size()) {
+            this.rotatedState = this.getState().rotate(this.originPoint, this.rotation);
+        }
         final BlockVec[] originalBlockList = this.blockList.clone();
-        final Set<BlockVec> existingBlockSet = Sets.newHashSet(originalBlockList);
+        // the craft's own block set answers membership unless hull air was added to the list
+        final BlockSet existingBlockSet = this.rotatedState != null ? this.getState().getBlocks() :
+                                          PackedBlockSet.of(originalBlockList);
         final Set<MapUpdateCommand.MoveBlock> mapUpdates = new HashSet<>();
         final HashSet<MapUpdateCommand.MoveEntity> entityUpdateSet = new HashSet<>();
 
-        // Make the centered block list, and check for a cruise control sign to reset to off.
         for (int i = 0; i < this.blockList.length; i++) {
-            centeredBlockList[i] = this.blockList[i].subtract(this.originPoint);
-        }
+            this.blockList[i] = this.rotatedState != null ? this.rotatedState.getBlocks().get(i) :
+                                this.blockList[i].subtract(this.originPoint).rotate(this.rotation).add(this.originPoint);
+            final Material typeID =
+                    this.getSnapshot().getType(this.blockList[i].x(), this.blockList[i].y(), this.blockList[i].z());
 
-        for (int i = 0; i < this.blockList.length; i++) {
-            this.blockList[i] = centeredBlockList[i].rotate(this.rotation).add(this.originPoint);
-            final Material typeID = this.world
-                    .getBlockAt(this.blockList[i].x(), this.blockList[i].y(), this.blockList[i].z()).getType();
-
-            final MaterialData testMaterialData = this.world
-                    .getBlockAt(originalBlockList[i].x(), originalBlockList[i].y(), originalBlockList[i].z())
-                    .getState().getData();
+            final MaterialData testMaterialData = this.getSnapshot().getMaterialData(
+                    originalBlockList[i].x(), originalBlockList[i].y(), originalBlockList[i].z());
             final Material testMaterial = testMaterialData.getItemType();
 
             if (testMaterial == Material.CHEST || testMaterial == Material.TRAPPED_CHEST) {
@@ -316,27 +270,17 @@ public class RotationTask extends AsyncTask {
             final Location tOP = new Location(this.getCraft().getWorld(), this.originPoint.x(), this.originPoint.y(),
                                               this.originPoint.z());
 
-            List<Entity> eList = null;
-            int numTries = 0;
-
-            while ((eList == null) && (numTries < 100)) {
-                try {
-                    eList = this.getCraft().getWorld().getEntities();
-                } catch (final java.util.ConcurrentModificationException e) {
-                    numTries++;
-                }
-            }
-            for (final Entity pTest : this.getCraft().getWorld().getEntities()) {
-                if (MathUtils.playerIsWithinBoundingPolygon(this.getCraft().getHitBox(), this.getCraft().getMinX(),
-                                                            this.getCraft().getMinZ(),
-                                                            BlockVec.from(pTest.getLocation()))) {
+            for (final EntitySnapshot captured : this.getEntities()) {
+                final Entity pTest = captured.getEntity();
+                final Location capturedLoc = captured.getLocation();
+                if (MathUtils.playerIsWithinBoundingPolygon(this.geometry.getHitBox(), BlockVec.from(capturedLoc))) {
                     if (pTest.getType() == EntityType.DROPPED_ITEM) {
                         //	pTest.remove();   removed to test cleaner fragile item removal
                     } else {
                         // Player is onboard this craft
                         tOP.setX(tOP.getBlockX() + 0.5);
                         tOP.setZ(tOP.getBlockZ() + 0.5);
-                        final Location playerLoc = pTest.getLocation();
+                        final Location playerLoc = capturedLoc.clone();
                         if (this.getCraft().getPilotLocked() && pTest == this.craftManager.getPlayerFromCraft(this.getCraft())) {
                             playerLoc.setX(this.getCraft().getPilotLockedX());
                             playerLoc.setY(this.getCraft().getPilotLockedY());
@@ -366,17 +310,10 @@ public class RotationTask extends AsyncTask {
                         }
                         newPLoc.setYaw(newYaw);
 
-                        if (this.getCraft().getPilotLocked() && pTest == this.craftManager.getPlayerFromCraft(this.getCraft())) {
-                            this.getCraft().setPilotLockedX(newPLoc.getX());
-                            this.getCraft().setPilotLockedY(newPLoc.getY());
-                            this.getCraft().setPilotLockedZ(newPLoc.getZ());
-                        }
-                        final MapUpdateCommand.MoveEntity eUp = new MapUpdateCommand.MoveEntity(pTest.getLocation().clone(), newPLoc, pTest);
+                        final MapUpdateCommand.MoveEntity eUp = new MapUpdateCommand.MoveEntity(capturedLoc, newPLoc, pTest);
                         entityUpdateSet.add(eUp);
                         if (this.getCraft().getPilotLocked() && pTest == this.craftManager.getPlayerFromCraft(this.getCraft())) {
-                            this.getCraft().setPilotLockedX(newPLoc.getX());
-                            this.getCraft().setPilotLockedY(newPLoc.getY());
-                            this.getCraft().setPilotLockedZ(newPLoc.getZ());
+                            this.setPilotLockedLocation(newPLoc);
                         }
                     }
                 }
@@ -385,8 +322,7 @@ public class RotationTask extends AsyncTask {
 /*			//update player spawn locations if they spawned where the ship used to be
             for(Player p : plugin.getServer().getOnlinePlayers()) {
 				if(p.getBedSpawnLocation()!=null) {
-					if( MathUtils.playerIsWithinBoundingPolygon( getCraft().getHitBox(), getCraft().getMinX(),
-					getCraft().getMinZ(), MathUtils.bukkit2MovecraftLoc( p.getBedSpawnLocation() ) ) ) {
+					if( MathUtils.playerIsWithinBoundingPolygon( getCraft().getHitBox(), MathUtils.bukkit2MovecraftLoc( p.getBedSpawnLocation() ) ) ) {
 						Location spawnLoc = p.getBedSpawnLocation();
 						Location adjustedPLoc = spawnLoc.subtract( tOP ); 
 
@@ -402,11 +338,12 @@ public class RotationTask extends AsyncTask {
 			}*/
 
             // Calculate air changes
-            final Set<BlockVec> airLocation = Sets.difference(
-                    Sets.newHashSet(originalBlockList),
-                    Sets.newHashSet(this.blockList));
+            final PackedBlockSet airLocation = PackedBlockSet.difference(
+                    existingBlockSet,
+                    this.rotatedState != null ? this.rotatedState.getBlocks() : PackedBlockSet.of(this.blockList));
 
-            for (final BlockVec l1 : airLocation) {
+            for (int j = 0; j < airLocation.size(); j++) {
+                final BlockVec l1 = airLocation.get(j);
                 if (waterCraft) {
                     // if its below the waterline, fill in with water. Otherwise fill in with air.
                     if (l1.y() <= waterLine) {
@@ -422,57 +359,6 @@ public class RotationTask extends AsyncTask {
             this.updates = mapUpdates.toArray(new MapUpdateCommand.MoveBlock[mapUpdates.size()]);
             this.entityUpdates = entityUpdateSet.toArray(new MapUpdateCommand.MoveEntity[entityUpdateSet.size()]);
 
-            maxX = null;
-            maxZ = null;
-            this.minX = null;
-            this.minZ = null;
-
-            for (final BlockVec l : this.blockList) {
-                if (maxX == null || l.x() > maxX) {
-                    maxX = l.x();
-                }
-                if (maxZ == null || l.z() > maxZ) {
-                    maxZ = l.z();
-                }
-                if (this.minX == null || l.x() < this.minX) {
-                    this.minX = l.x();
-                }
-                if (this.minZ == null || l.z() < this.minZ) {
-                    this.minZ = l.z();
-                }
-            }
-
-            // Rerun the polygonal bounding formula for the newly formed craft
-            final int sizeX = (maxX - this.minX) + 1;
-            final int sizeZ = (maxZ - this.minZ) + 1;
-
-            final int[][][] polygonalBox = new int[sizeX][][];
-
-            for (final BlockVec l : this.blockList) {
-                if (polygonalBox[l.x() - this.minX] == null) {
-                    polygonalBox[l.x() - this.minX] = new int[sizeZ][];
-                }
-
-                if (polygonalBox[l.x() - this.minX][l.z() - this.minZ] == null) {
-
-                    polygonalBox[l.x() - this.minX][l.z() - this.minZ] = new int[2];
-                    polygonalBox[l.x() - this.minX][l.z() - this.minZ][0] = l.y();
-                    polygonalBox[l.x() - this.minX][l.z() - this.minZ][1] = l.y();
-                } else {
-                    minY = polygonalBox[l.x() - this.minX][l.z() - this.minZ][0];
-                    maxY = polygonalBox[l.x() - this.minX][l.z() - this.minZ][1];
-
-                    if (l.y() < minY) {
-                        polygonalBox[l.x() - this.minX][l.z() - this.minZ][0] = l.y();
-                    }
-                    if (l.y() > maxY) {
-                        polygonalBox[l.x() - this.minX][l.z() - this.minZ][1] = l.y();
-                    }
-                }
-            }
-
-            this.hitbox = polygonalBox;
-
             // if you rotated a subcraft, update the parent with the new blocks
             if (this.isSubCraft) {
                 // also find the furthest extent from center and notify the player of the new direction
@@ -504,8 +390,8 @@ public class RotationTask extends AsyncTask {
 
                 final Set<Craft> craftsInWorld = this.craftManager.getCraftsInWorld(this.getCraft().getWorld());
                 for (final Craft craft : craftsInWorld) {
-                    if (BlockUtils.arrayContainsOverlap(craft.getBlockList(), originalBlockList) &&
-                        craft != this.getCraft()) {
+                    final CraftState parentState = craft.getState();
+                    if (craft != this.getCraft() && parentState.getBlocks().intersects(existingBlockSet)) {
                         // found a parent craft
                         if (!craft.isNotProcessing()) {
                             this.failed = true;
@@ -513,58 +399,16 @@ public class RotationTask extends AsyncTask {
                             return;
                         }
 
-                        final Set<BlockVec> parentBlockList = Sets.difference(
-                                Sets.newHashSet(craft.getBlockList()),
-                                Sets.newHashSet(originalBlockList));
-                        parentBlockList.addAll(Arrays.asList(this.blockList));
-                        craft.setBlockList(parentBlockList.toArray(new BlockVec[1]));
-
-                        // Rerun the polygonal bounding formula for the parent craft
-                        Integer parentMaxX = null;
-                        Integer parentMaxZ = null;
-                        Integer parentMinX = null;
-                        Integer parentMinZ = null;
-                        for (final BlockVec l : parentBlockList) {
-                            if (parentMaxX == null || l.x() > parentMaxX) {
-                                parentMaxX = l.x();
-                            }
-                            if (parentMaxZ == null || l.z() > parentMaxZ) {
-                                parentMaxZ = l.z();
-                            }
-                            if (parentMinX == null || l.x() < parentMinX) {
-                                parentMinX = l.x();
-                            }
-                            if (parentMinZ == null || l.z() < parentMinZ) {
-                                parentMinZ = l.z();
-                            }
-                        }
-                        final int parentSizeX = (parentMaxX - parentMinX) + 1;
-                        final int parentSizeZ = (parentMaxZ - parentMinZ) + 1;
-                        final int[][][] parentPolygonalBox = new int[parentSizeX][][];
-                        for (final BlockVec l : parentBlockList) {
-                            if (parentPolygonalBox[l.x() - parentMinX] == null) {
-                                parentPolygonalBox[l.x() - parentMinX] = new int[parentSizeZ][];
-                            }
-                            if (parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ] == null) {
-                                parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ] = new int[2];
-                                parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][0] = l.y();
-                                parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][1] = l.y();
-                            } else {
-                                final int parentMinY = parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][0];
-                                final int parentMaxY = parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][1];
-
-                                if (l.y() < parentMinY) {
-                                    parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][0] = l.y();
-                                }
-                                if (l.y() > parentMaxY) {
-                                    parentPolygonalBox[l.x() - parentMinX][l.z() - parentMinZ][1] = l.y();
-                                }
-                            }
+                        final PackedBlockSet parentBlocks = PackedBlockSet.difference(parentState.getBlocks(), existingBlockSet);
+                        for (final BlockVec l : this.blockList) {
+                            parentBlocks.add(l);
                         }
-                        craft.setHitBox(parentPolygonalBox);
+                        this.parentUpdates.add(new ParentUpdate(craft, parentState, parentBlocks));
                     }
                 }
             }
+            // the air in the hull turned along with the craft, at the same height
+            if (waterline != null) this.setWaterline(waterline.rotate(this.originPoint, this.rotation));
         }
     }
 
@@ -584,6 +428,14 @@ public class RotationTask extends AsyncTask {
         return this.blockList;
     }
 
+    /**
+     * Returns the state of the craft turned as a whole, or null if the rotation changes its
+     * blocks and the craft has to be rebuilt from {@link #getBlockList()}.
+     */
+    @Nullable public CraftState getRotatedState() {
+        return this.rotatedState;
+    }
+
     public MapUpdateCommand.MoveBlock[] getUpdates() {
         return this.updates;
     }
@@ -592,29 +444,40 @@ public class RotationTask extends AsyncTask {
         return this.entityUpdates;
     }
 
-    public int[][][] getHitbox() {
-        return this.hitbox;
-    }
-
-    public int getMinX() {
-        return this.minX;
-    }
-
-    public int getMinZ() {
-        return this.minZ;
-    }
-
     public RotationXZ getRotation() {
         return this.rotation;
     }
 
+    @Override protected BlockVec getSourcePosition(final BlockVec block) {
+        final RotationXZ inverse = this.rotation.equals(RotationXZ.cw()) ? RotationXZ.ccw() :
+                                   this.rotation.equals(RotationXZ.ccw()) ? RotationXZ.cw() : this.rotation;
+        return block.subtract(this.originPoint).rotate(inverse).add(this.originPoint);
+    }
+
     public boolean getIsSubCraft() {
         return this.isSubCraft;
     }
 
-    private boolean checkChests(final Material mBlock, final BlockVec newLoc, final Set<BlockVec> existingBlockSet) {
+    /**
+     * Installs the block sets computed for the parent crafts of this subcraft. Must be called
+     * from the main thread once the rotation is applied, returns false if a parent craft
+     * changed after the rotation was computed.
+     */
+    public boolean commitParentStates() {
+        boolean committed = true;
+        for (final ParentUpdate update : this.parentUpdates) {
+            if (update.craft.compareAndSetState(update.expected, update.expected.withBlocks(update.blocks))) {
+                this.craftManager.updateCraftIndex(update.craft);
+            } else {
+                committed = false;
+            }
+        }
+        return committed;
+    }
+
+    private boolean checkChests(final Material mBlock, final BlockVec newLoc, final BlockSet existingBlockSet) {
         BlockVec aroundNewLoc = newLoc.translate(1, 0, 0);
-        Material testMaterial = this.getCraft().getWorld().getBlockAt(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z()).getType();
+        Material testMaterial = this.getSnapshot().getType(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z());
         if (testMaterial == mBlock) {
             if (!existingBlockSet.contains(aroundNewLoc)) {
                 return false;
@@ -622,7 +485,7 @@ public class RotationTask extends AsyncTask {
         }
 
         aroundNewLoc = newLoc.translate(-1, 0, 0);
-        testMaterial = this.getCraft().getWorld().getBlockAt(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z()).getType();
+        testMaterial = this.getSnapshot().getType(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z());
         if (testMaterial == mBlock) {
             if (!existingBlockSet.contains(aroundNewLoc)) {
                 return false;
@@ -630,7 +493,7 @@ public class RotationTask extends AsyncTask {
         }
 
         aroundNewLoc = newLoc.translate(0, 0, 1);
-        testMaterial = this.getCraft().getWorld().getBlockAt(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z()).getType();
+        testMaterial = this.getSnapshot().getType(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z());
         if (testMaterial == mBlock) {
             if (!existingBlockSet.contains(aroundNewLoc)) {
                 return false;
@@ -638,7 +501,7 @@ public class RotationTask extends AsyncTask {
         }
 
         aroundNewLoc = newLoc.translate(0, 0, -1);
-        testMaterial = this.getCraft().getWorld().getBlockAt(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z()).getType();
+        testMaterial = this.getSnapshot().getType(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z());
         if (testMaterial == mBlock) {
             if (!existingBlockSet.contains(aroundNewLoc)) {
                 return false;
@@ -18,18 +18,26 @@
 package net.countercraft.movecraft.async.translation;
 
 import com.alexknvl.shipcraft.math.BlockVec;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.sk89q.worldguard.LocalPlayer;
 import net.countercraft.movecraft.Movecraft;
 import com.alexknvl.shipcraft.MaterialDataPredicate;
 import net.countercraft.movecraft.async.AsyncTask;
+import net.countercraft.movecraft.async.TaskApplier;
 import net.countercraft.movecraft.config.Settings;
 import net.countercraft.movecraft.craft.Craft;
+import net.countercraft.movecraft.craft.CraftGeometry;
+import net.countercraft.movecraft.craft.BlockSet;
 import net.countercraft.movecraft.craft.CraftManager;
+import net.countercraft.movecraft.craft.LeadingFace;
+import net.countercraft.movecraft.craft.Waterline;
 import net.countercraft.movecraft.localisation.I18nSupport;
-import net.countercraft.movecraft.utils.BoundingBoxUtils;
+import net.countercraft.movecraft.detail.EntitySnapshot;
 import net.countercraft.movecraft.detail.MapUpdateCommand;
+import net.countercraft.movecraft.detail.WorldSnapshot;
+import net.countercraft.movecraft.utils.ColumnHitBox;
 import net.countercraft.movecraft.utils.MathUtils;
 import net.countercraft.movecraft.utils.WGCustomFlagsUtils;
 import org.bukkit.Location;
@@ -60,11 +68,15 @@ public class TranslationTask extends AsyncTask {
     private final I18nSupport i18n;
     private final CraftManager craftManager;
     private final TranslationTaskData data;
+    private final List<Player> movedPlayers = new ArrayList<>();
+    private List<BlockVec> harvestedBlocks = ImmutableList.of();
+    private List<BlockVec> droppedBlocks = ImmutableList.of();
 
     public TranslationTask(final Craft craft, final Movecraft plugin, final Settings settings, final I18nSupport i18n,
-                           final CraftManager craftManager, final TranslationTaskData data)
+                           final CraftManager craftManager, final TranslationTaskData data, final WorldSnapshot snapshot,
+                           final ImmutableList<EntitySnapshot> entities)
     {
-        super(craft);
+        super(craft, snapshot, entities);
         this.plugin = plugin;
         this.settings = settings;
         this.i18n = i18n;
@@ -82,8 +94,13 @@ public class TranslationTask extends AsyncTask {
             Material.DIODE_BLOCK_ON, Material.WATER_LILY, Material.CARROT, Material.POTATO, Material.WOOD_BUTTON,
             Material.CARPET), Material.class);
 
+    @Override protected boolean applyWith(final TaskApplier applier) {
+        return applier.applyTranslation(this, this.getCraft());
+    }
+
     @Override public void execute() {
         BlockVec[] blocksList = this.data.getBlockList();
+        final int originalBlockCount = blocksList.length;
 
         // blockedByWater=false means an ocean-going vessel
         boolean waterCraft = !this.getCraft().getType().blockedByWater();
@@ -95,30 +112,17 @@ public class TranslationTask extends AsyncTask {
 
         final Player craftPilot = this.craftManager.getPlayerFromCraft(this.getCraft());
 
-        final int[][][] hb = this.getCraft().getHitBox();
-        if (hb == null) return;
-
-        // start by finding the crafts borders
-        int minY = 65535;
-        int maxY = -65535;
-        for (final int[][] i1 : hb) {
-            for (final int[] i2 : i1) {
-                if (i2 != null) {
-                    if (i2[0] < minY) {
-                        minY = i2[0];
-                    }
-                    if (i2[1] > maxY) {
-                        maxY = i2[1];
-                    }
-                }
-            }
-        }
-        // Safe because if the first x array doesn't have a z array,
-        // then it wouldn't be the first x array.
-        final int maxX = this.getCraft().getMinX() + hb.length;
-        final int maxZ = this.getCraft().getMinZ() + hb[0].length;
-        final int minX = this.getCraft().getMinX();
-        final int minZ = this.getCraft().getMinZ();
+        final CraftGeometry geometry = this.data.getGeometry();
+        if (geometry.isEmpty()) return;
+        final ColumnHitBox hb = geometry.getHitBox();
+
+        // the craft's borders, maxX and maxZ are exclusive
+        final int minY = geometry.getMinY();
+        final int maxY = geometry.getMaxY();
+        final int maxX = geometry.getMaxX() + 1;
+        final int maxZ = geometry.getMaxZ() + 1;
+        final int minX = geometry.getMinX();
+        final int minZ = geometry.getMinZ();
 
 		// Load any chunks that you are moving into that are not loaded
         /*for (int posX=minX+data.getDx();posX<=maxX+data.getDx();posX++) {
@@ -138,15 +142,17 @@ public class TranslationTask extends AsyncTask {
 
         // check the maxheightaboveground limitation, move 1 down if that limit is exceeded
         if (this.getCraft().getType().getMaxHeightAboveGround() > 0 && this.data.getDy() >= 0) {
-            final int x = (this.getCraft().getMaxX() + this.getCraft().getMinX()) / 2;
-            final int y = this.getCraft().getMaxY();
-            final int z = (this.getCraft().getMaxZ() + this.getCraft().getMinZ()) / 2;
+            final int x = (maxX + minX) / 2;
+            final int y = maxY;
+            final int z = (maxZ + minZ) / 2;
 
-            int cy = this.getCraft().getMinY();
+            int cy = minY;
             boolean done = false;
             while (!done) {
                 cy = cy - 1;
-                if (this.getCraft().getWorld().getBlockAt(x, cy, z).getType() != Material.AIR) done = true;
+                // anything further down is already over the limit
+                if (y - cy > this.getCraft().getType().getMaxHeightAboveGround()) break;
+                if (this.getSnapshot().getType(x, cy, z) != Material.AIR) done = true;
                 if (cy <= 1) done = true;
             }
             if (y - cy > this.getCraft().getType().getMaxHeightAboveGround()) {
@@ -154,128 +160,47 @@ public class TranslationTask extends AsyncTask {
             }
         }
 
-        // Find the waterline from the surrounding terrain or from the static level in the craft type
+        // Find the waterline from the surrounding terrain or from the static level in the craft type, unless the
+        // one found before still holds
         int waterLine = 0;
+        Waterline waterline = null;
         if (waterCraft) {
-            if (this.getCraft().getType().getStaticWaterLevel() == 0) {
-                // figure out the water level by examining blocks next to the outer boundaries of the craft
-                for (int posY = maxY + 1; (posY >= minY - 1) && (waterLine == 0); posY--) {
-                    int numWater = 0;
-                    int numAir = 0;
-                    int posZ = minZ - 1;
-                    int posX;
-                    for (posX = minX - 1; (posX <= maxX + 1) && (waterLine == 0); posX++) {
-                        final Material typeID = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
-                        if (typeID == Material.STATIONARY_WATER) numWater++;
-                        if (typeID == Material.AIR) numAir++;
-                    }
-                    posZ = maxZ + 1;
-                    for (posX = minX - 1; (posX <= maxX + 1) && (waterLine == 0); posX++) {
-                        final Material typeID = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
-                        if (typeID == Material.STATIONARY_WATER) numWater++;
-                        if (typeID == Material.AIR) numAir++;
-                    }
-                    posX = minX - 1;
-                    for (posZ = minZ; (posZ <= maxZ) && (waterLine == 0); posZ++) {
-                        final Material typeID = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
-                        if (typeID == Material.STATIONARY_WATER) numWater++;
-                        if (typeID == Material.AIR) numAir++;
-                    }
-                    posX = maxX + 1;
-                    for (posZ = minZ; (posZ <= maxZ) && (waterLine == 0); posZ++) {
-                        final Material typeID = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
-                        if (typeID == Material.STATIONARY_WATER) numWater++;
-                        if (typeID == Material.AIR) numAir++;
-                    }
-                    if (numWater > numAir) {
-                        waterLine = posY;
-                    }
-                }
-            } else {
-                if (waterLine <= maxY + 1) {
-                    waterLine = this.getCraft().getType().getStaticWaterLevel();
-                }
+            final int staticWaterLevel = this.getCraft().getType().getStaticWaterLevel();
+            waterline = this.getWaterline();
+            if (waterline == null || !waterline.isCurrent(this.getSnapshot(), geometry, staticWaterLevel)) {
+                waterline = Waterline.scan(this.getSnapshot(), geometry, staticWaterLevel);
             }
-
-            // now add all the air blocks found within the craft's hitbox immediately above the waterline and below
-            // to the craft blocks so they will be translated
-            final HashSet<BlockVec> newHSBlockList = Sets.newHashSet(blocksList);
-            int posY = waterLine + 1;
-            for (int posX = minX; posX < maxX; posX++) {
-                for (int posZ = minZ; posZ < maxZ; posZ++) {
-                    if (hb[posX - minX] != null) {
-                        if (hb[posX - minX][posZ - minZ] != null) {
-                            if (this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType() == Material.AIR &&
-                                posY > hb[posX - minX][posZ - minZ][0] && posY < hb[posX - minX][posZ - minZ][1]) {
-                                final BlockVec l = new BlockVec(posX, posY, posZ);
-                                newHSBlockList.add(l);
-                            }
-                        }
-                    }
+            waterLine = waterline.getLevel();
+
+            // now add the air inside the hull to the craft blocks so it will be translated, after the craft's own
+            // blocks to keep their indices. Cells that aren't part of the craft yet may have been filled since the
+            // waterline was found, so they are read again.
+            final BlockSet craftBlocks = this.getState().getBlocks();
+            final BlockSet interiorAir = waterline.getInteriorAir();
+            final List<BlockVec> extendedBlockList = new ArrayList<>(Arrays.asList(blocksList));
+            for (int i = 0; i < interiorAir.size(); i++) {
+                final BlockVec l = interiorAir.get(i);
+                if (!craftBlocks.contains(l) && this.getSnapshot().getType(l.x(), l.y(), l.z()) == Material.AIR) {
+                    extendedBlockList.add(l);
                 }
             }
-            // dont check the hitbox for the underwater portion. Otherwise open-hulled ships would flood.
-            for (posY = waterLine; posY >= minY; posY--) {
-                for (int posX = minX; posX < maxX; posX++) {
-                    for (int posZ = minZ; posZ < maxZ; posZ++) {
-                        if (this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType() == Material.AIR) {
-                            final BlockVec l = new BlockVec(posX, posY, posZ);
-                            newHSBlockList.add(l);
-                        }
-                    }
-                }
+            if (extendedBlockList.size() > blocksList.length) {
+                blocksList = extendedBlockList.toArray(new BlockVec[extendedBlockList.size()]);
             }
-
-            blocksList = newHSBlockList.toArray(new BlockVec[newHSBlockList.size()]);
         }
+        this.setWaterline(waterline);
 
-        // Check for fuel, burn some from a furnace if needed.
-        // Blocks of coal are supported, in addition to coal and charcoal.
+        // Burn fuel, or mark that some has to be taken from a furnace
         double fuelBurnRate = this.getCraft().getType().getFuelBurnRate();
         // Going down doesn't require fuel.
         if (this.data.getDy() == -1 && this.data.getDx() == 0 && this.data.getDz() == 0) fuelBurnRate = 0.0;
 
         if (fuelBurnRate != 0.0 && !this.getCraft().getSinking()) {
-            if (this.getCraft().getBurningFuel() < fuelBurnRate) {
-                Block fuelHolder = null;
-                for (final BlockVec bTest : blocksList) {
-                    final Block block = this.getCraft().getWorld().getBlockAt(bTest.x(), bTest.y(), bTest.z());
-                    if (block.getType() == Material.FURNACE) {
-                        final InventoryHolder inventoryHolder = (InventoryHolder) block.getState();
-                        if (inventoryHolder.getInventory().contains(Material.COAL) ||
-                            inventoryHolder.getInventory().contains(Material.COAL_BLOCK)) {
-                            fuelHolder = block;
-                        }
-                    }
-                }
-                if (fuelHolder == null) {
-                    this.fail(this.i18n.get("Translation - Failed Craft out of fuel"));
-                } else {
-                    final InventoryHolder inventoryHolder = (InventoryHolder) fuelHolder.getState();
-                    if (inventoryHolder.getInventory().contains(Material.COAL)) {
-                        final ItemStack iStack = inventoryHolder.getInventory()
-                                                                .getItem(inventoryHolder.getInventory().first(Material.COAL));
-                        final int amount = iStack.getAmount();
-                        if (amount == 1) {
-                            inventoryHolder.getInventory().remove(iStack);
-                        } else {
-                            iStack.setAmount(amount - 1);
-                        }
-                        this.getCraft().setBurningFuel(this.getCraft().getBurningFuel() + 7.0);
-                    } else {
-                        final ItemStack iStack = inventoryHolder.getInventory()
-                                                                .getItem(inventoryHolder.getInventory().first(Material.COAL_BLOCK));
-                        final int amount = iStack.getAmount();
-                        if (amount == 1) {
-                            inventoryHolder.getInventory().remove(iStack);
-                        } else {
-                            iStack.setAmount(amount - 1);
-                        }
-                        this.getCraft().setBurningFuel(this.getCraft().getBurningFuel() + 79.0);
-                    }
-                }
+            if (this.getBurningFuel() < fuelBurnRate) {
+                // fuel is taken from a furnace on the main thread when the result is applied
+                this.setNeedsFuel(true);
             } else {
-                this.getCraft().setBurningFuel(this.getCraft().getBurningFuel() - fuelBurnRate);
+                this.setBurningFuel(this.getBurningFuel() - fuelBurnRate);
             }
         }
 
@@ -299,10 +224,21 @@ public class TranslationTask extends AsyncTask {
         final boolean canHoverOverWater = this.getCraft().getType().getCanHoverOverWater();
 
         boolean clearNewData = false;
+        boolean airLeftBehind = false;
+
+        // Only the blocks that leave the space of the craft can be obstructed, the faces are indexed like the
+        // craft's blocks, which come first in the list. Air added below the waterline is always checked.
+        final boolean useLeadingFace = originalBlockCount == this.getState().getBlocks().size();
+        LeadingFace leadingFace = null;
+        int leadingFaceDy = 0;
 
         for (int i = 0; i < blocksList.length; i++) {
             final BlockVec oldLoc = blocksList[i];
             final BlockVec newLoc = oldLoc.translate(this.data.getDx(), this.data.getDy(), this.data.getDz());
+            if (useLeadingFace && (leadingFace == null || leadingFaceDy != this.data.getDy())) {
+                leadingFaceDy = this.data.getDy();
+                leadingFace = this.getState().getLeadingFace(this.data.getDx(), leadingFaceDy, this.data.getDz());
+            }
 
             if (newLoc.y() > this.data.heightRange.max() && newLoc.y() > oldLoc.y()) {
                 this.fail(this.i18n.get("Translation - Failed Craft hit height limit"));
@@ -343,30 +279,33 @@ public class TranslationTask extends AsyncTask {
             }
 
             // Check for chests around.
-            Material testMaterial = this.getCraft().getWorld().getBlockAt(oldLoc.x(), oldLoc.y(), oldLoc.z()).getType();
+            Material testMaterial = this.getSnapshot().getType(oldLoc.x(), oldLoc.y(), oldLoc.z());
             if (testMaterial == Material.CHEST || testMaterial == Material.TRAPPED_CHEST) {
                 if (!this.checkChests(testMaterial, newLoc, existingBlockSet)) {
                     // Prevent chests collision.
                     this.fail(String.format(this.i18n.get("Translation - Failed Craft is obstructed") + " @ %d,%d,%d,%s",
                                             newLoc.x(), newLoc.y(), newLoc.z(),
-                                            this.getCraft().getWorld().getBlockAt(newLoc.x(), newLoc.y(), newLoc.z()).getType()
+                                            this.getSnapshot().getType(newLoc.x(), newLoc.y(), newLoc.z())
                                            .toString()));
                     break;
                 }
             }
 
             boolean blockObstructed;
-            if (this.getCraft().getSinking()) {
-                final Material testID = this.getCraft().getWorld().getBlockAt(newLoc.x(), newLoc.y(), newLoc.z()).getType();
+            if (leadingFace != null && !leadingFace.isLeading(i)) {
+                // moves into a block of the craft itself
+                blockObstructed = false;
+            } else if (this.getCraft().getSinking()) {
+                final Material testID = this.getSnapshot().getType(newLoc.x(), newLoc.y(), newLoc.z());
                 blockObstructed = !FALL_THROUGH_BLOCKS.contains(testID) && !existingBlockSet.contains(newLoc);
             } else if (!waterCraft) {
                 // New block is not air or a piston head and is not part of the existing ship
-                testMaterial = this.getCraft().getWorld().getBlockAt(newLoc.x(), newLoc.y(), newLoc.z()).getType();
+                testMaterial = this.getSnapshot().getType(newLoc.x(), newLoc.y(), newLoc.z());
                 blockObstructed = (testMaterial != Material.AIR && testMaterial != Material.PISTON_EXTENSION) &&
                                   !existingBlockSet.contains(newLoc);
             } else {
                 // New block is not air or water or a piston head and is not part of the existing ship
-                testMaterial = this.getCraft().getWorld().getBlockAt(newLoc.x(), newLoc.y(), newLoc.z()).getType();
+                testMaterial = this.getSnapshot().getType(newLoc.x(), newLoc.y(), newLoc.z());
                 blockObstructed = (testMaterial != Material.AIR && testMaterial != Material.STATIONARY_WATER &&
                                    testMaterial != Material.WATER && testMaterial != Material.PISTON_EXTENSION) &&
                                   !existingBlockSet.contains(newLoc);
@@ -374,22 +313,23 @@ public class TranslationTask extends AsyncTask {
 
             boolean ignoreBlock = false;
             // air never obstructs anything
-            if (this.getCraft().getWorld().getBlockAt(oldLoc.x(), oldLoc.y(), oldLoc.z()).getType() == Material.AIR &&
+            if (this.getSnapshot().getType(oldLoc.x(), oldLoc.y(), oldLoc.z()) == Material.AIR &&
                 blockObstructed) {
                 ignoreBlock = true;
                 blockObstructed = false;
+                airLeftBehind = true;
             }
 
-            final Block newLocBlock = this.getCraft().getWorld().getBlockAt(newLoc.x(), newLoc.y(), newLoc.z());
-            final Block oldLocBlock = this.getCraft().getWorld().getBlockAt(oldLoc.x(), oldLoc.y(), oldLoc.z());
-
             boolean bladeOK = true;
             if (blockObstructed) {
                 if (hoverCraft || !harvestBlocks.isTrivial()) {
                     // New block is not harvested block.
-                    if (harvestBlocks.checkBlock(newLocBlock) && !existingBlockSet.contains(newLoc)) {
+                    if (harvestBlocks.check(this.getSnapshot().getTypeId(newLoc.x(), newLoc.y(), newLoc.z()),
+                                            this.getSnapshot().getData(newLoc.x(), newLoc.y(), newLoc.z())) &&
+                        !existingBlockSet.contains(newLoc)) {
                         if (!harvesterBladeBlocks.isTrivial()) {
-                            if (!harvesterBladeBlocks.checkBlock(oldLocBlock)) {
+                            if (!harvesterBladeBlocks.check(this.getSnapshot().getTypeId(oldLoc.x(), oldLoc.y(), oldLoc.z()),
+                                                            this.getSnapshot().getData(oldLoc.x(), oldLoc.y(), oldLoc.z()))) {
                                 bladeOK = false;
                             }
                         }
@@ -473,13 +413,13 @@ public class TranslationTask extends AsyncTask {
                         if (this.getCraft().getType().getExplodeOnCrash() != 0.0F) {
                             final int explosionKey = (int) (0 - (this.getCraft().getType().getExplodeOnCrash() * 100));
 
-                            if (this.getCraft().getWorld().getBlockAt(oldLoc.x(), oldLoc.y(), oldLoc.z()).getType() != Material.AIR) {
+                            if (this.getSnapshot().getType(oldLoc.x(), oldLoc.y(), oldLoc.z()) != Material.AIR) {
                                 explosionSet.add(new MapUpdateCommand.SpawnExplosion(explosionKey, oldLoc));
                                 this.data.setCollisionExplosion(true);
                             }
                         } else {
                             // use the explosion code to clean up the craft, but not with enough force to do anything
-                            if (this.getCraft().getWorld().getBlockAt(oldLoc.x(), oldLoc.y(), oldLoc.z()).getType() != Material.AIR) {
+                            if (this.getSnapshot().getType(oldLoc.x(), oldLoc.y(), oldLoc.z()) != Material.AIR) {
                                 final int explosionKey = 0 - 1;
                                 explosionSet.add(new MapUpdateCommand.SpawnExplosion(explosionKey, oldLoc));
                                 this.data.setCollisionExplosion(true);
@@ -492,13 +432,13 @@ public class TranslationTask extends AsyncTask {
                             this.fail(String.format(
                                     this.i18n.get("Translation - Failed Craft is obstructed") + " @ %d,%d,%d,%s",
                                     oldLoc.x(), oldLoc.y(), oldLoc.z(),
-                                    this.getCraft().getWorld().getBlockAt(newLoc.x(), newLoc.y(), newLoc.z()).getType()
+                                    this.getSnapshot().getType(newLoc.x(), newLoc.y(), newLoc.z())
                                         .toString()));
                             this.getCraft().setCruising(false);
                             break;
                         } else {
                             final int explosionKey = (int) (0 - (this.getCraft().getType().getCollisionExplosion() * 100));
-                            if (this.getCraft().getWorld().getBlockAt(oldLoc.x(), oldLoc.y(), oldLoc.z()).getType() != Material.AIR) {
+                            if (this.getSnapshot().getType(oldLoc.x(), oldLoc.y(), oldLoc.z()) != Material.AIR) {
                                 explosionSet.add(new MapUpdateCommand.SpawnExplosion(explosionKey, oldLoc));
                                 this.data.setCollisionExplosion(true);
                             }
@@ -507,7 +447,7 @@ public class TranslationTask extends AsyncTask {
                 }
             } else {
                 //block not obstructed
-                final MaterialData oldData = this.getCraft().getWorld().getBlockAt(oldLoc.x(), oldLoc.y(), oldLoc.z()).getState().getData();
+                final MaterialData oldData = this.getSnapshot().getMaterialData(oldLoc.x(), oldLoc.y(), oldLoc.z());
                 Material oldID = oldData.getItemType();
                 //byte oldData = getCraft().getWorld().getBlockAt(oldLoc.x, oldLoc.y, oldLoc.z).getData();
                 // remove water from sinking crafts
@@ -534,7 +474,7 @@ public class TranslationTask extends AsyncTask {
                             for (int ii = -1; ii > -hoverLimit - 2 - (canHoverOverWater ? 0 : 1); ii--) {
                                 if (!this.isFreeSpace(this.data.getDx(), hoverOver + ii, this.data.getDz(), blocksList,
                                                       existingBlockSet, waterCraft, hoverCraft, harvestBlocks,
-                                                      canHoverOverWater, checkHover)) {
+                                                      canHoverOverWater, checkHover, useLeadingFace)) {
                                     break;
                                 }
                                 iFreeSpace++;
@@ -552,7 +492,7 @@ public class TranslationTask extends AsyncTask {
                             for (int ii = -1; ii > -hoverLimit - 2; ii--) {
                                 if (!this.isFreeSpace(this.data.getDx(), hoverOver + ii, this.data.getDz(), blocksList,
                                                       existingBlockSet, waterCraft, hoverCraft, harvestBlocks,
-                                                      canHoverOverWater, checkHover)) {
+                                                      canHoverOverWater, checkHover, useLeadingFace)) {
                                     break;
                                 }
                                 iFreeSpace++;
@@ -567,7 +507,7 @@ public class TranslationTask extends AsyncTask {
                                     this.fail(String.format(
                                             this.i18n.get("Translation - Failed Craft is obstructed") + " @ %d,%d,%d,%s",
                                             oldLoc.x(), oldLoc.y(), oldLoc.z(),
-                                            this.getCraft().getWorld().getBlockAt(newLoc.x(), newLoc.y(), newLoc.z()).getType()
+                                            this.getSnapshot().getType(newLoc.x(), newLoc.y(), newLoc.z())
                                                 .toString()));
                                 }
                                 break;
@@ -576,7 +516,7 @@ public class TranslationTask extends AsyncTask {
                             //prevent jump through block
                             for (int ii = 1; ii < hoverOver - 1; ii++) {
                                 if (!this.isFreeSpace(0, ii, 0, blocksList, existingBlockSet, waterCraft, hoverCraft,
-                                                      harvestBlocks, canHoverOverWater, checkHover)) {
+                                                      harvestBlocks, canHoverOverWater, checkHover, useLeadingFace)) {
                                     break;
                                 }
                                 iFreeSpace++;
@@ -593,7 +533,7 @@ public class TranslationTask extends AsyncTask {
                             //prevent jump through block
                             for (int ii = -1; ii > hoverOver + 1; ii--) {
                                 if (!this.isFreeSpace(0, ii, 0, blocksList, existingBlockSet, waterCraft, hoverCraft,
-                                                      harvestBlocks, canHoverOverWater, checkHover)) {
+                                                      harvestBlocks, canHoverOverWater, checkHover, useLeadingFace)) {
                                     break;
                                 }
                                 iFreeSpace++;
@@ -613,7 +553,7 @@ public class TranslationTask extends AsyncTask {
                                 //others hoverOver values we have checked jet
                                 for (int ii = hoverOver - 1; ii > hoverOver - hoverLimit - 2; ii--) {
                                     if (!this.isFreeSpace(0, ii, 0, blocksList, existingBlockSet, waterCraft, hoverCraft,
-                                                          harvestBlocks, canHoverOverWater, checkHover)) {
+                                                          harvestBlocks, canHoverOverWater, checkHover, useLeadingFace)) {
                                         break;
                                     }
                                     iFreeSpace++;
@@ -635,6 +575,7 @@ public class TranslationTask extends AsyncTask {
                 this.data.setCollisionExplosion(false);
                 explosionSet.clear();
                 clearNewData = false;
+                airLeftBehind = false;
             }
         } //END OF: for ( int i = 0; i < blocksList.length; i++ ) {
 
@@ -646,8 +587,7 @@ public class TranslationTask extends AsyncTask {
                 if (existingBlockSet.contains(m.newBlockLocation)) {
                     existingBlockSet.remove(m.newBlockLocation);
                     if (this.settings.FadeWrecksAfter > 0) {
-                        final Material typeID = this.getCraft().getWorld().getBlockAt(m.newBlockLocation.x(), m.newBlockLocation.y(),
-                                                                                      m.newBlockLocation.z()).getType();
+                        final Material typeID = this.getSnapshot().getType(m.newBlockLocation.x(), m.newBlockLocation.y(), m.newBlockLocation.z());
                         if (typeID != Material.AIR && typeID != Material.STATIONARY_WATER) {
                             this.plugin.blockFadeTimeMap.put(m.newBlockLocation, System.currentTimeMillis());
                             this.plugin.blockFadeTypeMap.put(m.newBlockLocation, typeID);
@@ -666,16 +606,14 @@ public class TranslationTask extends AsyncTask {
                 if (this.getCraft().getSinking() &&
                     (this.getCraft().getType().getExplodeOnCrash() == 0.0)) {
                     int posy = m.newBlockLocation.y() + 1;
-                    Material testID = this.getCraft().getWorld()
-                                          .getBlockAt(m.newBlockLocation.x(), posy, m.newBlockLocation.z())
-                                          .getType();
+                    Material testID = this.getSnapshot().getType(m.newBlockLocation.x(), posy, m.newBlockLocation.z());
 
                     while (posy <= maxY && !FALL_THROUGH_BLOCKS.contains(testID)) {
                         final BlockVec testLoc = new BlockVec(m.newBlockLocation.x(), posy, m.newBlockLocation.z());
                         if (existingBlockSet.contains(testLoc)) {
                             existingBlockSet.remove(testLoc);
                             if (this.settings.FadeWrecksAfter > 0) {
-                                final Material typeID = this.getCraft().getWorld().getBlockAt(testLoc.x(), testLoc.y(), testLoc.z()).getType();
+                                final Material typeID = this.getSnapshot().getType(testLoc.x(), testLoc.y(), testLoc.z());
                                 if (typeID != Material.AIR && typeID != Material.STATIONARY_WATER) {
                                     this.plugin.blockFadeTimeMap.put(testLoc, System.currentTimeMillis());
                                     this.plugin.blockFadeTypeMap.put(testLoc, typeID);
@@ -689,9 +627,7 @@ public class TranslationTask extends AsyncTask {
                             }
                         }
                         posy = posy + 1;
-                        testID = this.getCraft().getWorld()
-                                     .getBlockAt(m.newBlockLocation.x(), posy, m.newBlockLocation.z())
-                                     .getType();
+                        testID = this.getSnapshot().getType(m.newBlockLocation.x(), posy, m.newBlockLocation.z());
                     }
                 }
             }
@@ -713,31 +649,26 @@ public class TranslationTask extends AsyncTask {
         if (!this.data.failed()) {
             final BlockVec[] newBlockList = tempBlockList.toArray(new BlockVec[tempBlockList.size()]);
             this.data.setBlockList(newBlockList);
+            // every block moved and none were added, so the craft can apply the move as an offset
+            this.data.setRigidTranslation(blocksList.length == originalBlockCount &&
+                                          newBlockList.length == blocksList.length);
+            // the air in the hull moved along unless some was left behind, the waterline holds while the height does
+            this.setWaterline(waterline == null || airLeftBehind || this.data.getDy() != 0 ? null :
+                              waterline.translate(this.data.getDx(), 0, this.data.getDz()));
 
             //prevents torpedo and rocket pilots :)
             if (this.getCraft().getType().getMoveEntities() && !this.getCraft().getSinking()) {
                 // Move entities within the craft
-                List<Entity> eList = null;
-                int numTries = 0;
-                while ((eList == null) && (numTries < 100)) {
-                    try {
-                        eList = this.getCraft().getWorld().getEntities();
-                    } catch (final java.util.ConcurrentModificationException e) {
-                        numTries++;
-                    }
-                }
-
-                for (final Entity pTest : eList) {
-                    if (MathUtils.playerIsWithinBoundingPolygon(this.getCraft().getHitBox(), this.getCraft().getMinX(),
-                                                                this.getCraft().getMinZ(),
-                                                                BlockVec.from(pTest.getLocation()))) {
+                for (final EntitySnapshot captured : this.getEntities()) {
+                    final Entity pTest = captured.getEntity();
+                    final Location pLoc = captured.getLocation();
+                    if (MathUtils.playerIsWithinBoundingPolygon(hb, BlockVec.from(pLoc))) {
                         if (pTest.getType() == EntityType.PLAYER) {
-                            final Player player = (Player) pTest;
-                            this.getCraft().getMovedPlayers().put(player, System.currentTimeMillis());
+                            this.movedPlayers.add((Player) pTest);
                         } // only move players for now, reduce monsters on airships
                         //if(pTest.getType()!=org.bukkit.entity.EntityType.DROPPED_ITEM ) {
                         if (pTest instanceof LivingEntity) {
-                            Location tempLoc = pTest.getLocation();
+                            Location tempLoc = pLoc.clone();
                             if (this.getCraft().getPilotLocked() && pTest == this.craftManager.getPlayerFromCraft(this.getCraft())) {
                                 tempLoc.setX(this.getCraft().getPilotLockedX());
                                 tempLoc.setY(this.getCraft().getPilotLockedY());
@@ -746,15 +677,13 @@ public class TranslationTask extends AsyncTask {
                             tempLoc = tempLoc.add(this.data.getDx(), this.data.getDy(), this.data.getDz());
                             final Location newPLoc = new Location(this.getCraft().getWorld(), tempLoc.getX(), tempLoc.getY(),
                                                                   tempLoc.getZ());
-                            newPLoc.setPitch(pTest.getLocation().getPitch());
-                            newPLoc.setYaw(pTest.getLocation().getYaw());
+                            newPLoc.setPitch(pLoc.getPitch());
+                            newPLoc.setYaw(pLoc.getYaw());
 
-                            final MapUpdateCommand.MoveEntity eUp = new MapUpdateCommand.MoveEntity(pTest.getLocation().clone(), newPLoc, pTest);
+                            final MapUpdateCommand.MoveEntity eUp = new MapUpdateCommand.MoveEntity(pLoc, newPLoc, pTest);
                             entityUpdateSet.add(eUp);
                             if (this.getCraft().getPilotLocked() && pTest == this.craftManager.getPlayerFromCraft(this.getCraft())) {
-                                this.getCraft().setPilotLockedX(tempLoc.getX());
-                                this.getCraft().setPilotLockedY(tempLoc.getY());
-                                this.getCraft().setPilotLockedZ(tempLoc.getZ());
+                                this.setPilotLockedLocation(tempLoc);
                             }
                         }
                     }
@@ -774,7 +703,7 @@ public class TranslationTask extends AsyncTask {
                 if (posY > waterLine) {
                     for (posX = minX - 1; posX <= maxX + 1; posX++) {
                         for (posZ = minZ - 1; posZ <= maxZ + 1; posZ++) {
-                            final Material type = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
+                            final Material type = this.getSnapshot().getType(posX, posY, posZ);
                             if (type == Material.STATIONARY_WATER || type == Material.WATER) {
                                 final BlockVec loc = new BlockVec(posX, posY, posZ);
                                 updateSet.add(new MapUpdateCommand.MoveBlock(loc, Material.AIR, this.getCraft()));
@@ -785,7 +714,7 @@ public class TranslationTask extends AsyncTask {
                 for (posY = maxY + 1; (posY >= minY - 1) && (posY > waterLine); posY--) {
                     posZ = minZ - 1;
                     for (posX = minX - 1; posX <= maxX + 1; posX++) {
-                        final Material type = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
+                        final Material type = this.getSnapshot().getType(posX, posY, posZ);
                         if (type == Material.STATIONARY_WATER || type == Material.WATER) {
                             final BlockVec loc = new BlockVec(posX, posY, posZ);
                             updateSet.add(new MapUpdateCommand.MoveBlock(loc, Material.AIR, this.getCraft()));
@@ -793,7 +722,7 @@ public class TranslationTask extends AsyncTask {
                     }
                     posZ = maxZ + 1;
                     for (posX = minX - 1; posX <= maxX + 1; posX++) {
-                        final Material type = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
+                        final Material type = this.getSnapshot().getType(posX, posY, posZ);
                         if (type == Material.STATIONARY_WATER || type == Material.WATER) {
                             final BlockVec loc = new BlockVec(posX, posY, posZ);
                             updateSet.add(new MapUpdateCommand.MoveBlock(loc, Material.AIR, this.getCraft()));
@@ -801,7 +730,7 @@ public class TranslationTask extends AsyncTask {
                     }
                     posX = minX - 1;
                     for (posZ = minZ - 1; posZ <= maxZ + 1; posZ++) {
-                        final Material type = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
+                        final Material type = this.getSnapshot().getType(posX, posY, posZ);
                         if (type == Material.STATIONARY_WATER || type == Material.WATER) {
                             final BlockVec loc = new BlockVec(posX, posY, posZ);
                             updateSet.add(new MapUpdateCommand.MoveBlock(loc, Material.AIR, this.getCraft()));
@@ -809,7 +738,7 @@ public class TranslationTask extends AsyncTask {
                     }
                     posX = maxX + 1;
                     for (posZ = minZ - 1; posZ <= maxZ + 1; posZ++) {
-                        final Material type = this.getCraft().getWorld().getBlockAt(posX, posY, posZ).getType();
+                        final Material type = this.getSnapshot().getType(posX, posY, posZ);
                         if (type == Material.STATIONARY_WATER || type == Material.WATER) {
                             final BlockVec loc = new BlockVec(posX, posY, posZ);
                             updateSet.add(new MapUpdateCommand.MoveBlock(loc, Material.AIR, this.getCraft()));
@@ -830,7 +759,7 @@ public class TranslationTask extends AsyncTask {
                         while (existingBlockSet.contains(testAir)) {
                             testAir = new BlockVec(l1.x(), testAir.y() - 1, l1.z());
                         }
-                        if (this.getCraft().getWorld().getBlockAt(testAir.x(), testAir.y(), testAir.z()).getType() == Material.AIR) {
+                        if (this.getSnapshot().getType(testAir.x(), testAir.y(), testAir.z()) == Material.AIR) {
                             if (this.getCraft().getSinking()) {
                                 // updateSet.add(new MapUpdateCommand.SpawnSmoke(this.getCraft().getType().getSmokeOnSink(), l1));
                                 updateSet.add(new MapUpdateCommand.MoveBlock(l1, Material.AIR, null));
@@ -864,16 +793,29 @@ public class TranslationTask extends AsyncTask {
             }
             this.data.setUpdates(updateSet.toArray(new MapUpdateCommand.MoveBlock[updateSet.size()]));
             this.data.setEntityUpdates(entityUpdateSet.toArray(new MapUpdateCommand.MoveEntity[1]));
+        }
 
-            if (this.data.getDy() != 0) {
-                this.data.setHitbox(BoundingBoxUtils.translateBoundingBoxVertically(this.data.getHitbox(), this.data.getDy()));
-            }
+        // the yield goes into the craft's chests, so it is collected when the move is applied
+        this.harvestedBlocks = harvestedBlocks;
+        this.droppedBlocks = droppedBlocks;
+    }
 
-            this.data.setMinX(this.data.getMinX() + this.data.getDx());
-            this.data.setMinZ(this.data.getMinZ() + this.data.getDz());
+    /**
+     * Records the players this move carried along on the craft. Must be called on the main thread.
+     */
+    public void recordMovedPlayers() {
+        final long now = System.currentTimeMillis();
+        for (final Player player : this.movedPlayers) {
+            this.getCraft().getMovedPlayers().put(player, now);
         }
+    }
 
-        this.captureYield(blocksList, harvestedBlocks, droppedBlocks);
+    /**
+     * Puts what the craft harvested into its chests and drops what doesn't fit. This reads blocks and
+     * changes inventories, so it must be called on the main thread before the move is applied.
+     */
+    public void captureYield() {
+        this.captureYield(this.harvestedBlocks, this.droppedBlocks);
     }
 
     private void fail(final String message) {
@@ -885,19 +827,30 @@ public class TranslationTask extends AsyncTask {
         return this.data;
     }
 
+    @Override protected BlockVec getSourcePosition(final BlockVec block) {
+        // the blocks of a failed move are left where they were
+        if (this.data.failed()) return block;
+        return block.translate(-this.data.getDx(), -this.data.getDy(), -this.data.getDz());
+    }
+
     private boolean isFreeSpace(final int x, final int y, final int z, final BlockVec[] blocksList, final Set<BlockVec> existingBlockSet,
                                 final boolean waterCraft, final boolean hoverCraft, final MaterialDataPredicate harvestBlocks,
-                                final boolean canHoverOverWater, final boolean checkHover)
+                                final boolean canHoverOverWater, final boolean checkHover,
+                                final boolean useLeadingFace)
     {
         boolean isFree = true;
         // this checking for hovercrafts should be faster with separating horizontal layers and checking only really
         // necessaries,
         // or more better: remember what checked in each translation, but it's beyond my current abilities, I will
         // try to solve it in future
-        for (final BlockVec oldLoc : blocksList) {
+        // over water is checked on every block, otherwise only the blocks leaving the craft need reading
+        final LeadingFace leadingFace = useLeadingFace && canHoverOverWater ? this.getState().getLeadingFace(x, y, z) : null;
+        for (int i = 0; i < blocksList.length; i++) {
+            final BlockVec oldLoc = blocksList[i];
             final BlockVec newLoc = oldLoc.translate(x, y, z);
 
-            final Material testMaterial = this.getCraft().getWorld().getBlockAt(newLoc.x(), newLoc.y(), newLoc.z()).getType();
+            final boolean leading = leadingFace == null || leadingFace.isLeading(i);
+            final Material testMaterial = leading ? this.getSnapshot().getType(newLoc.x(), newLoc.y(), newLoc.z()) : null;
             if (!canHoverOverWater) {
                 if (testMaterial == Material.STATIONARY_WATER || testMaterial == Material.WATER) {
                     this.fail(this.i18n.get("Translation - Failed Craft over water"));
@@ -913,6 +866,7 @@ public class TranslationTask extends AsyncTask {
                 isFree = false;
                 break;
             }
+            if (!leading) continue;
 
             boolean blockObstructed;
             if (waterCraft) {
@@ -942,7 +896,7 @@ public class TranslationTask extends AsyncTask {
     {
 
         BlockVec aroundNewLoc = newLoc.translate(1, 0, 0);
-        Material testMaterial = this.getCraft().getWorld().getBlockAt(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z()).getType();
+        Material testMaterial = this.getSnapshot().getType(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z());
         if (testMaterial == mBlock) {
             if (!existingBlockSet.contains(aroundNewLoc)) {
                 return false;
@@ -950,7 +904,7 @@ public class TranslationTask extends AsyncTask {
         }
 
         aroundNewLoc = newLoc.translate(-1, 0, 0);
-        testMaterial = this.getCraft().getWorld().getBlockAt(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z()).getType();
+        testMaterial = this.getSnapshot().getType(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z());
         if (testMaterial == mBlock) {
             if (!existingBlockSet.contains(aroundNewLoc)) {
                 return false;
@@ -958,7 +912,7 @@ public class TranslationTask extends AsyncTask {
         }
 
         aroundNewLoc = newLoc.translate(0, 0, 1);
-        testMaterial = this.getCraft().getWorld().getBlockAt(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z()).getType();
+        testMaterial = this.getSnapshot().getType(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z());
         if (testMaterial == mBlock) {
             if (!existingBlockSet.contains(aroundNewLoc)) {
                 return false;
@@ -966,7 +920,7 @@ public class TranslationTask extends AsyncTask {
         }
 
         aroundNewLoc = newLoc.translate(0, 0, -1);
-        testMaterial = this.getCraft().getWorld().getBlockAt(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z()).getType();
+        testMaterial = this.getSnapshot().getType(aroundNewLoc.x(), aroundNewLoc.y(), aroundNewLoc.z());
         if (testMaterial == mBlock) {
             if (!existingBlockSet.contains(aroundNewLoc)) {
                 return false;
@@ -975,7 +929,7 @@ public class TranslationTask extends AsyncTask {
         return true;
     }
 
-    private void captureYield(final BlockVec[] blocksList, final List<BlockVec> harvestedBlocks, final List<BlockVec> droppedBlocks)
+    private void captureYield(final List<BlockVec> harvestedBlocks, final List<BlockVec> droppedBlocks)
     {
         if (harvestedBlocks.isEmpty()) {
             return;
@@ -1019,9 +973,12 @@ public class TranslationTask extends AsyncTask {
         }
 
         //find chests
-        for (final BlockVec bTest : blocksList) {
-            final Block b = this.getCraft().getWorld().getBlockAt(bTest.x(), bTest.y(), bTest.z());
-            if (b.getType() == Material.CHEST || b.getType() == Material.TRAPPED_CHEST) {
+        final BlockVec[] chests = this.getState().getSpecialBlocks(this.getSnapshot()::getTypeId)
+                                      .find(this.getState().getBlocks(), Material.CHEST, Material.TRAPPED_CHEST);
+        for (final BlockVec bTest : chests) {
+            final Material bType = this.getSnapshot().getType(bTest.x(), bTest.y(), bTest.z());
+            if (bType == Material.CHEST || bType == Material.TRAPPED_CHEST) {
+                final Block b = this.getCraft().getWorld().getBlockAt(bTest.x(), bTest.y(), bTest.z());
                 final Inventory inv = ((InventoryHolder) b.getState()).getInventory();
                 //get chests with dropped Items
                 for (final Material mat : droppedSet) {
@@ -1171,12 +1128,12 @@ public class TranslationTask extends AsyncTask {
 //            ||                            
 //                mat.equals(Material.BANNER)    // Apparently Material.Banner was removed from the class
                 ) {
-            if (this.getCraft().getWorld().getBlockAt(loc.x(), loc.y() + 1, loc.z()).getType() == mat) {
+            if (this.getSnapshot().getType(loc.x(), loc.y() + 1, loc.z()) == mat) {
                 final BlockVec tmpLoc = loc.translate(0, 1, 0);
                 if (!destroyedBlocks.contains(tmpLoc) && !harvestedBlocks.contains(tmpLoc)) {
                     destroyedBlocks.add(tmpLoc);
                 }
-            } else if (this.getCraft().getWorld().getBlockAt(loc.x(), loc.y() - 1, loc.z()).getType() == mat) {
+            } else if (this.getSnapshot().getType(loc.x(), loc.y() - 1, loc.z()) == mat) {
                 final BlockVec tmpLoc = loc.translate(0, -1, 0);
                 if (!destroyedBlocks.contains(tmpLoc) && !harvestedBlocks.contains(tmpLoc)) {
                     destroyedBlocks.add(tmpLoc);
@@ -1184,7 +1141,7 @@ public class TranslationTask extends AsyncTask {
             }
         } else if (mat == Material.CACTUS || mat == Material.SUGAR_CANE_BLOCK) {
             BlockVec tmpLoc = loc.translate(0, 1, 0);
-            Material tmpType = this.getCraft().getWorld().getBlockAt(tmpLoc.x(), tmpLoc.y(), tmpLoc.z()).getType();
+            Material tmpType = this.getSnapshot().getType(tmpLoc.x(), tmpLoc.y(), tmpLoc.z());
             while (tmpType == mat) {
                 if (!droppedBlocks.contains(tmpLoc) && !harvestedBlocks.contains(tmpLoc)) {
                     droppedBlocks.add(tmpLoc);
@@ -1193,26 +1150,28 @@ public class TranslationTask extends AsyncTask {
                     destroyedBlocks.add(tmpLoc);
                 }
                 tmpLoc = tmpLoc.translate(0, 1, 0);
-                tmpType = this.getCraft().getWorld().getBlockAt(tmpLoc.x(), tmpLoc.y(), tmpLoc.z()).getType();
+                // stacks taller than the snapshot are cut off at its edge
+                tmpType = this.getSnapshot().contains(tmpLoc.x(), tmpLoc.y(), tmpLoc.z())
+                          ? this.getSnapshot().getType(tmpLoc.x(), tmpLoc.y(), tmpLoc.z()) : Material.AIR;
             }
         } else if (mat == Material.BED_BLOCK) {
-            if (this.getCraft().getWorld().getBlockAt(loc.x() + 1, loc.y(), loc.z()).getType() == mat) {
+            if (this.getSnapshot().getType(loc.x() + 1, loc.y(), loc.z()) == mat) {
                 final BlockVec tmpLoc = loc.translate(1, 0, 0);
                 if (!destroyedBlocks.contains(tmpLoc) && !harvestedBlocks.contains(tmpLoc)) {
                     destroyedBlocks.add(tmpLoc);
                 }
-            } else if (this.getCraft().getWorld().getBlockAt(loc.x() - 1, loc.y(), loc.z()).getType() == mat) {
+            } else if (this.getSnapshot().getType(loc.x() - 1, loc.y(), loc.z()) == mat) {
                 final BlockVec tmpLoc = loc.translate(-1, 0, 0);
                 if (!destroyedBlocks.contains(tmpLoc) && !harvestedBlocks.contains(tmpLoc)) {
                     destroyedBlocks.add(tmpLoc);
                 }
             }
-            if (this.getCraft().getWorld().getBlockAt(loc.x(), loc.y(), loc.z() + 1).getType() == mat) {
+            if (this.getSnapshot().getType(loc.x(), loc.y(), loc.z() + 1) == mat) {
                 final BlockVec tmpLoc = loc.translate(0, 0, 1);
                 if (!destroyedBlocks.contains(tmpLoc) && !harvestedBlocks.contains(tmpLoc)) {
                     destroyedBlocks.add(tmpLoc);
                 }
-            } else if (this.getCraft().getWorld().getBlockAt(loc.x(), loc.y(), loc.z() - 1).getType() == mat) {
+            } else if (this.getSnapshot().getType(loc.x(), loc.y(), loc.z() - 1) == mat) {
                 final BlockVec tmpLoc = loc.translate(0, 0, -1);
                 if (!destroyedBlocks.contains(tmpLoc) && !harvestedBlocks.contains(tmpLoc)) {
                     destroyedBlocks.add(tmpLoc);
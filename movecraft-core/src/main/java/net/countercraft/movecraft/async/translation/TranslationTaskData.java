@@ -19,6 +19,7 @@ package net.countercraft.movecraft.async.translation;
 
 import com.alexknvl.shipcraft.math.BlockVec;
 import com.alexknvl.shipcraft.math.IntRange;
+import net.countercraft.movecraft.craft.CraftGeometry;
 import net.countercraft.movecraft.detail.MapUpdateCommand;
 
 public class TranslationTaskData {
@@ -31,22 +32,19 @@ public class TranslationTaskData {
     private MapUpdateCommand.MoveBlock[] updates;
     private MapUpdateCommand.MoveEntity[] entityUpdates;
     private MapUpdateCommand.DropItem[] itemDropUpdates;
-    private int[][][] hitbox;
-    private int minX, minZ;
+    private final CraftGeometry geometry;
     public final IntRange heightRange;
     private boolean collisionExplosion;
+    private boolean rigidTranslation;
 
     public TranslationTaskData(final int dx, final int dz, final int dy, final BlockVec[] blockList,
-                               final int[][][] hitbox, final int minZ, final int minX,
-                               final IntRange heightRange)
+                               final CraftGeometry geometry, final IntRange heightRange)
     {
         this.dx = dx;
         this.dz = dz;
         this.dy = dy;
         this.blockList = blockList;
-        this.hitbox = hitbox;
-        this.minZ = minZ;
-        this.minX = minX;
+        this.geometry = geometry;
         this.heightRange = heightRange;
     }
 
@@ -83,6 +81,17 @@ public class TranslationTaskData {
         this.collisionExplosion = collisionExplosion;
     }
 
+    /**
+     * Returns true if the new block list is exactly the old one moved by {@code dx, dy, dz}.
+     */
+    public boolean isRigidTranslation() {
+        return this.rigidTranslation;
+    }
+
+    public void setRigidTranslation(final boolean rigidTranslation) {
+        this.rigidTranslation = rigidTranslation;
+    }
+
     public String getFailMessage() {
         return this.failMessage;
     }
@@ -115,28 +124,8 @@ public class TranslationTaskData {
         this.entityUpdates = entityUpdates;
     }
 
-    public int[][][] getHitbox() {
-        return this.hitbox;
-    }
-
-    public void setHitbox(final int[][][] hitbox) {
-        this.hitbox = hitbox;
-    }
-
-    public int getMinX() {
-        return this.minX;
-    }
-
-    public void setMinX(final int minX) {
-        this.minX = minX;
-    }
-
-    public int getMinZ() {
-        return this.minZ;
-    }
-
-    public void setMinZ(final int minZ) {
-        this.minZ = minZ;
+    public CraftGeometry getGeometry() {
+        return this.geometry;
     }
 
     public MapUpdateCommand.DropItem[] getItemDropUpdateCommands() {
@@ -37,6 +37,14 @@ public final class Settings {
     public int FireballLifespan = 6;
     public int RepairTicksPerBlock = 0;
     public int BlockQueueChunkSize = 1000;
+    public int DetectionSnapshotRadius = 32;
+    public int DetectionMaxRadius = 256;
+    public int DetectionMaxSnapshotSections = 2048;
+    public int ParallelDetectionThreshold = 0;
+    public int ParallelDetectionThreads = 4;
+    public int TaskApplyMillisPerTick = 5;
+    public int DetectionCacheSize = 64;
+    public int DetectionCacheSeconds = 10;
     public double RepairMoneyPerBlock = 0.0;
     public boolean FireballPenetration = true;
     public boolean AllowCrewSigns = true;
@@ -0,0 +1,144 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Membership index over a {@link BlockSet}, one bit per cell of the set's bounding box.
+ * Lookups are a bounds check and a single bit test. If the bounding box is too large for
+ * a bitmap the index falls back to probing the set itself.
+ */
+@Immutable
+public final class BlockBitmap {
+    // 2^26 bits, 8 MiB of bitmap
+    private static final long MAX_VOLUME = 1L << 26;
+
+    private static final BlockBitmap EMPTY = new BlockBitmap(null, null, 0, 0, 0, -1, -1, -1);
+
+    private final BlockSet fallback;
+    private final long[] bits;
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+    private final int sizeY, sizeZ;
+
+    private BlockBitmap(final BlockSet fallback, final long[] bits, final int minX, final int minY, final int minZ,
+                        final int maxX, final int maxY, final int maxZ)
+    {
+        this.fallback = fallback;
+        this.bits = bits;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.sizeY = maxY - minY + 1;
+        this.sizeZ = maxZ - minZ + 1;
+    }
+
+    public static BlockBitmap of(final BlockSet blocks) {
+        final int size = blocks.size();
+        if (size == 0) return EMPTY;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            final long packed = blocks.getPacked(i);
+            final int x = PackedBlockPos.unpackX(packed);
+            final int y = PackedBlockPos.unpackY(packed);
+            final int z = PackedBlockPos.unpackZ(packed);
+            if (x < minX) minX = x;
+            if (y < minY) minY = y;
+            if (z < minZ) minZ = z;
+            if (x > maxX) maxX = x;
+            if (y > maxY) maxY = y;
+            if (z > maxZ) maxZ = z;
+        }
+
+        final long volume = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        if (volume > MAX_VOLUME) {
+            return new BlockBitmap(blocks, null, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        final BlockBitmap result = new BlockBitmap(null, new long[(int) ((volume + 63) >>> 6)],
+                                                   minX, minY, minZ, maxX, maxY, maxZ);
+        for (int i = 0; i < size; i++) {
+            final long packed = blocks.getPacked(i);
+            final int index = result.indexOf(PackedBlockPos.unpackX(packed), PackedBlockPos.unpackY(packed),
+                                             PackedBlockPos.unpackZ(packed));
+            result.bits[index >>> 6] |= 1L << index;
+        }
+        return result;
+    }
+
+    /**
+     * Returns this index moved by {@code dx, dy, dz}. The bitmap itself is shared with this index.
+     */
+    public BlockBitmap translate(final int dx, final int dy, final int dz) {
+        if (this == EMPTY) return EMPTY;
+        final BlockSet movedFallback = this.fallback == null ? null : OffsetBlockSet.of(this.fallback, dx, dy, dz);
+        return new BlockBitmap(movedFallback, this.bits, this.minX + dx, this.minY + dy, this.minZ + dz,
+                               this.maxX + dx, this.maxY + dy, this.maxZ + dz);
+    }
+
+    private int indexOf(final int x, final int y, final int z) {
+        return ((x - this.minX) * this.sizeZ + (z - this.minZ)) * this.sizeY + (y - this.minY);
+    }
+
+    public boolean contains(final int x, final int y, final int z) {
+        if (x < this.minX || x > this.maxX) return false;
+        if (z < this.minZ || z > this.maxZ) return false;
+        if (y < this.minY || y > this.maxY) return false;
+
+        if (this.bits == null) return this.fallback.contains(x, y, z);
+        final int index = this.indexOf(x, y, z);
+        return (this.bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public boolean contains(final BlockVec vec) {
+        return this.contains(vec.x(), vec.y(), vec.z());
+    }
+
+    public int getMinX() {
+        return this.minX;
+    }
+
+    public int getMinY() {
+        return this.minY;
+    }
+
+    public int getMinZ() {
+        return this.minZ;
+    }
+
+    public int getMaxX() {
+        return this.maxX;
+    }
+
+    public int getMaxY() {
+        return this.maxY;
+    }
+
+    public int getMaxZ() {
+        return this.maxZ;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Read-only view of a set of block positions stored as packed longs
+ * (see {@link PackedBlockPos}). Positions keep their insertion order and can be
+ * walked by index, so none of the accessors below allocate.
+ */
+public interface BlockSet {
+    @FunctionalInterface
+    interface BlockConsumer {
+        void accept(int x, int y, int z);
+    }
+
+    int size();
+
+    long getPacked(int index);
+
+    boolean containsPacked(long packed);
+
+    default boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    default boolean contains(final int x, final int y, final int z) {
+        return this.containsPacked(PackedBlockPos.pack(x, y, z));
+    }
+
+    default boolean contains(final BlockVec vec) {
+        return this.containsPacked(PackedBlockPos.pack(vec));
+    }
+
+    default BlockVec get(final int index) {
+        return PackedBlockPos.unpack(this.getPacked(index));
+    }
+
+    default void forEach(final BlockConsumer consumer) {
+        final int size = this.size();
+        for (int i = 0; i < size; i++) {
+            final long packed = this.getPacked(i);
+            consumer.accept(PackedBlockPos.unpackX(packed), PackedBlockPos.unpackY(packed),
+                            PackedBlockPos.unpackZ(packed));
+        }
+    }
+
+    default void forEachPacked(final LongConsumer consumer) {
+        final int size = this.size();
+        for (int i = 0; i < size; i++) {
+            consumer.accept(this.getPacked(i));
+        }
+    }
+
+    default boolean intersects(final BlockSet other) {
+        final BlockSet smaller = this.size() <= other.size() ? this : other;
+        final BlockSet larger = smaller == this ? other : this;
+        final int size = smaller.size();
+        for (int i = 0; i < size; i++) {
+            if (larger.containsPacked(smaller.getPacked(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adapter for code that still works with arrays; allocates a new array and a
+     * {@link BlockVec} per block on every call.
+     */
+    default BlockVec[] toArray() {
+        final BlockVec[] result = new BlockVec[this.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.get(i);
+        }
+        return result;
+    }
+}
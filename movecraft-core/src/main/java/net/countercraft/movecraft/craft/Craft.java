@@ -20,24 +20,26 @@ package net.countercraft.movecraft.craft;
 import com.alexknvl.shipcraft.math.BlockVec;
 import com.alexknvl.shipcraft.math.Direction;
 import com.google.common.base.Preconditions;
+import net.countercraft.movecraft.utils.ColumnHitBox;
 import org.bukkit.ChatColor;
+import org.bukkit.Material;
 import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Craft implements net.countercraft.movecraft.api.Craft {
-    private int[][][] hitBox;
     @Nonnull public final CraftType type;
-    private BlockVec[] blockList;
+    private final AtomicReference<CraftState> state = new AtomicReference<>(CraftState.INITIAL);
     @Nonnull public final World world;
     private final AtomicBoolean processing = new AtomicBoolean();
-    private int minX;
-    private int minZ;
     private boolean cruising;
     private boolean sinking;
     @Nonnull private Direction cruiseDirection;
@@ -46,19 +48,18 @@ public class Craft implements net.countercraft.movecraft.api.Craft {
     private long lastRightClick;
     private int lastDX, lastDY, lastDZ;
     private boolean keepMoving;
-    private double burningFuel;
     private boolean pilotLocked;
     private double pilotLockedX;
     private double pilotLockedY;
     private int origBlockCount;
     private double pilotLockedZ;
     private Player notificationPlayer;
+    private volatile Player pilot;
     private final Map<Player, Long> movedPlayers = new HashMap<>();
 
     public Craft(final CraftType type, final World world) {
         this.type = type;
         this.world = world;
-        this.blockList = new BlockVec[1];
         this.pilotLocked = false;
         this.pilotLockedX = 0.0;
         this.pilotLockedY = 0.0;
@@ -75,16 +76,82 @@ public class Craft implements net.countercraft.movecraft.api.Craft {
         this.processing.set(processing);
     }
 
+    /**
+     * Returns the current version of the blocks and fuel of this craft. States are never
+     * modified once installed, so they can be safely read from any thread.
+     */
+    public CraftState getState() {
+        return this.state.get();
+    }
+
+    /**
+     * Installs {@code next} if the craft is still at {@code expected}, returns false if another
+     * version was installed in the meantime.
+     */
+    public boolean compareAndSetState(final CraftState expected, final CraftState next) {
+        Preconditions.checkNotNull(next);
+        return this.state.compareAndSet(expected, next);
+    }
+
+    /**
+     * Returns a read-only view of the blocks of this craft. The set backing the view is
+     * never modified once installed, so it can be safely iterated from any thread.
+     */
+    public BlockSet getBlocks() {
+        return this.state.get().getBlocks();
+    }
+
+    /**
+     * Installs a new block set. The craft takes ownership of {@code blocks}, callers must
+     * not modify it afterwards.
+     */
+    public void setBlocks(final PackedBlockSet blocks) {
+        this.setBlocks(blocks, null, null);
+    }
+
+    /**
+     * Installs a new block set along with the waterline and the special block index found for it.
+     */
+    public void setBlocks(final PackedBlockSet blocks, @Nullable final Waterline waterline,
+                          @Nullable final SpecialBlockIndex specialBlocks)
+    {
+        Preconditions.checkNotNull(blocks);
+        CraftState current;
+        do {
+            current = this.state.get();
+        } while (!this.state.compareAndSet(current, current.withBlocks(blocks, specialBlocks).withWaterline(waterline)));
+    }
+
+    /**
+     * Returns the blocks of this craft of any of {@code types}, which must be indexed by
+     * {@link SpecialBlockIndex}. Must be called from the main thread.
+     */
+    @SuppressWarnings("deprecation")
+    public BlockVec[] findSpecialBlocks(final Material... types) {
+        final CraftState current = this.state.get();
+        final SpecialBlockIndex indexed = current.getIndexedSpecialBlocks();
+        // the world may not hold the blocks of this state yet, so an index read from it isn't kept
+        final SpecialBlockIndex index = indexed != null ? indexed :
+                SpecialBlockIndex.of(current.getBlocks(), this.world::getBlockTypeIdAt);
+        return index.find(current.getBlocks(), types);
+    }
+
+    /**
+     * Returns the bounds and column heights of the current block set.
+     */
+    public CraftGeometry getGeometry() {
+        return this.state.get().getGeometry();
+    }
+
+    /**
+     * Array adapter for older callers, prefer {@link #getBlocks()}.
+     */
     public BlockVec[] getBlockList() {
-        synchronized (this.blockList) {
-            return this.blockList.clone();
-        }
+        return this.getBlocks().toArray();
     }
 
     public void setBlockList(final BlockVec[] blockList) {
-        synchronized (this.blockList) {
-            this.blockList = blockList;
-        }
+        this.setBlocks(PackedBlockSet.of(blockList));
     }
 
     public CraftType getType() {
@@ -95,19 +162,16 @@ public class Craft implements net.countercraft.movecraft.api.Craft {
         return this.world;
     }
 
-    public int[][][] getHitBox() {
-        return this.hitBox;
-    }
-
-    public void setHitBox(final int[][][] hitBox) {
-        this.hitBox = hitBox;
+    public ColumnHitBox getHitBox() {
+        return this.getGeometry().getHitBox();
     }
 
     public void resetSigns(final boolean resetCruise, final boolean resetAscend, final boolean resetDescend) {
-        for (final BlockVec location : this.blockList) {
-            final int blockID = this.world.getBlockAt(location.x(), location.y(), location.z()).getTypeId();
+        for (final BlockVec vec : this.findSpecialBlocks(Material.SIGN_POST, Material.WALL_SIGN)) {
+            final Block block = this.world.getBlockAt(vec.x(), vec.y(), vec.z());
+            final int blockID = block.getTypeId();
             if (blockID == 63 || blockID == 68) {
-                final Sign s = (Sign) this.world.getBlockAt(location.x(), location.y(), location.z()).getState();
+                final Sign s = (Sign) block.getState();
                 if (resetCruise) if (ChatColor.stripColor(s.getLine(0)).equals("Cruise: ON")) {
                     s.setLine(0, "Cruise: OFF");
                     s.update(true);
@@ -125,75 +189,35 @@ public class Craft implements net.countercraft.movecraft.api.Craft {
     }
 
     public int getMaxX() {
-        return this.minX + this.hitBox.length;
+        return this.getGeometry().getMaxX() + 1;
     }
 
     public int getMaxZ() {
-        return this.minZ + this.hitBox[0].length;
+        return this.getGeometry().getMaxZ() + 1;
     }
 
     public int getMinY() {
-        int minY = 65535;
-        int maxY = -65535;
-        for (final int[][] i1 : this.hitBox) {
-            if (i1 != null) for (final int[] i2 : i1) {
-                if (i2 != null) {
-                    if (i2[0] < minY) {
-                        minY = i2[0];
-                    }
-                    if (i2[1] > maxY) {
-                        maxY = i2[1];
-                    }
-                }
-            }
-        }
-        return minY;
+        return this.getGeometry().getMinY();
     }
 
     public int getMaxY() {
-        int minY = 65535;
-        int maxY = -65535;
-        for (final int[][] i1 : this.hitBox) {
-            for (final int[] i2 : i1) {
-                if (i2 != null) {
-                    if (i2[0] < minY) {
-                        minY = i2[0];
-                    }
-                    if (i2[1] > maxY) {
-                        maxY = i2[1];
-                    }
-                }
-            }
-        }
-        return maxY;
+        return this.getGeometry().getMaxY();
     }
 
     public int getMinZ() {
-        return this.minZ;
+        return this.getGeometry().getMinZ();
     }
 
     public int getMinX() {
-        return this.minX;
-    }
-
-    public void setMinX(final int minX) {
-        this.minX = minX;
-    }
-
-    public void setMinZ(final int minZ) {
-        this.minZ = minZ;
+        return this.getGeometry().getMinX();
     }
 
     public boolean isCraftBlock(final BlockVec mloc) {
+        return this.state.get().getBlockIndex().contains(mloc);
+    }
 
-        if (mloc.x() < getMinX() || mloc.x() > getMaxX()) return false;
-        if (mloc.z() < getMinZ() || mloc.z() > getMaxZ()) return false;
-        if (mloc.y() < getMinY() || mloc.y() > getMaxY()) return false;
-
-        for (final BlockVec loc : getBlockList()) {
-            if (loc.equals(mloc)) return true;
-        }
-        return false;
+    public boolean isCraftBlock(final int x, final int y, final int z) {
+        return this.state.get().getBlockIndex().contains(x, y, z);
     }
 
     public boolean getCruising() {
@@ -314,11 +338,14 @@ public class Craft implements net.countercraft.movecraft.api.Craft {
     }
 
     public void setBurningFuel(final double burningFuel) {
-        this.burningFuel = burningFuel;
+        CraftState current;
+        do {
+            current = this.state.get();
+        } while (!this.state.compareAndSet(current, current.withBurningFuel(burningFuel)));
     }
 
     public double getBurningFuel() {
-        return this.burningFuel;
+        return this.state.get().getBurningFuel();
     }
 
     public void setOrigBlockCount(final int origBlockCount) {
@@ -336,4 +363,16 @@ public class Craft implements net.countercraft.movecraft.api.Craft {
     public Player getNotificationPlayer() {
         return this.notificationPlayer;
     }
+
+    /**
+     * Returns the player piloting this craft, or null if it has none. The pilot is managed by
+     * {@link CraftManager}.
+     */
+    public Player getPilot() {
+        return this.pilot;
+    }
+
+    void setPilot(final Player pilot) {
+        this.pilot = pilot;
+    }
 }
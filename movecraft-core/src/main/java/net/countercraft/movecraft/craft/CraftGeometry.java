@@ -0,0 +1,214 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.AABB;
+import net.countercraft.movecraft.utils.BoundingBoxUtils;
+import net.countercraft.movecraft.utils.ColumnHitBox;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+/**
+ * Bounds, column heights and occupied chunks of a craft, computed once from its block set
+ * whenever the craft is detected or moved.
+ */
+@Immutable
+public final class CraftGeometry {
+    public static final CraftGeometry EMPTY = new CraftGeometry(0, 0, 0, -1, -1, -1, ColumnHitBox.EMPTY, new long[0], 0);
+
+    private final int minX, minY, minZ;
+    private final int maxX, maxY, maxZ;
+    private final ColumnHitBox hitBox;
+    private final long[] chunks;
+    private final int blockCount;
+
+    private CraftGeometry(final int minX, final int minY, final int minZ, final int maxX, final int maxY,
+                          final int maxZ, final ColumnHitBox hitBox, final long[] chunks, final int blockCount)
+    {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        this.hitBox = hitBox;
+        this.chunks = chunks;
+        this.blockCount = blockCount;
+    }
+
+    public static CraftGeometry of(final BlockSet blocks) {
+        final int size = blocks.size();
+        if (size == 0) return EMPTY;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            final long packed = blocks.getPacked(i);
+            final int x = PackedBlockPos.unpackX(packed);
+            final int y = PackedBlockPos.unpackY(packed);
+            final int z = PackedBlockPos.unpackZ(packed);
+            if (x < minX) minX = x;
+            if (y < minY) minY = y;
+            if (z < minZ) minZ = z;
+            if (x > maxX) maxX = x;
+            if (y > maxY) maxY = y;
+            if (z > maxZ) maxZ = z;
+        }
+
+        final ColumnHitBox hitBox = BoundingBoxUtils.formBoundingBox(blocks, minX, maxX, minZ, maxZ);
+
+        return new CraftGeometry(minX, minY, minZ, maxX, maxY, maxZ, hitBox, occupiedChunks(hitBox), size);
+    }
+
+    /**
+     * Returns this geometry moved by {@code dx, dy, dz}. Only the list of occupied chunks may need
+     * recomputing, and only when the move is horizontal and not a whole number of chunks.
+     */
+    public CraftGeometry translate(final int dx, final int dy, final int dz) {
+        if (this.isEmpty()) return this;
+        final ColumnHitBox movedHitBox = this.hitBox.translate(dx, dy, dz);
+        final long[] movedChunks;
+        if (dx == 0 && dz == 0) {
+            movedChunks = this.chunks;
+        } else if ((dx & 15) == 0 && (dz & 15) == 0) {
+            movedChunks = new long[this.chunks.length];
+            for (int i = 0; i < movedChunks.length; i++) {
+                movedChunks[i] = chunkKey(chunkX(this.chunks[i]) + (dx >> 4), chunkZ(this.chunks[i]) + (dz >> 4));
+            }
+            Arrays.sort(movedChunks);
+        } else {
+            movedChunks = occupiedChunks(movedHitBox);
+        }
+        return new CraftGeometry(this.minX + dx, this.minY + dy, this.minZ + dz, this.maxX + dx, this.maxY + dy,
+                                 this.maxZ + dz, movedHitBox, movedChunks, this.blockCount);
+    }
+
+    // collects the chunks of every occupied column
+    private static long[] occupiedChunks(final ColumnHitBox hitBox) {
+        final int minX = hitBox.getMinX();
+        final int minZ = hitBox.getMinZ();
+        final int maxX = minX + hitBox.getSizeX() - 1;
+        final int maxZ = minZ + hitBox.getSizeZ() - 1;
+        final long[] chunks = new long[((maxX >> 4) - (minX >> 4) + 1) * ((maxZ >> 4) - (minZ >> 4) + 1)];
+        int chunkCount = 0;
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                if (columnsOccupied(hitBox, chunkX, chunkZ)) {
+                    chunks[chunkCount++] = chunkKey(chunkX, chunkZ);
+                }
+            }
+        }
+        final long[] sortedChunks = Arrays.copyOf(chunks, chunkCount);
+        Arrays.sort(sortedChunks);
+        return sortedChunks;
+    }
+
+    private static boolean columnsOccupied(final ColumnHitBox hitBox, final int chunkX, final int chunkZ) {
+        final int fromX = Math.max(chunkX << 4, hitBox.getMinX());
+        final int toX = Math.min((chunkX << 4) + 15, hitBox.getMinX() + hitBox.getSizeX() - 1);
+        final int fromZ = Math.max(chunkZ << 4, hitBox.getMinZ());
+        final int toZ = Math.min((chunkZ << 4) + 15, hitBox.getMinZ() + hitBox.getSizeZ() - 1);
+        for (int x = fromX; x <= toX; x++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                if (hitBox.hasColumn(x, z)) return true;
+            }
+        }
+        return false;
+    }
+
+    public static long chunkKey(final int chunkX, final int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static int chunkX(final long chunkKey) {
+        return (int) (chunkKey >> 32);
+    }
+
+    public static int chunkZ(final long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    public boolean isEmpty() {
+        return this.blockCount == 0;
+    }
+
+    /**
+     * Returns the inclusive bounding box of the craft, or null if the craft has no blocks.
+     */
+    public AABB getBounds() {
+        if (this.isEmpty()) return null;
+        return new AABB(this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ);
+    }
+
+    public int getMinX() {
+        return this.minX;
+    }
+
+    public int getMinY() {
+        return this.minY;
+    }
+
+    public int getMinZ() {
+        return this.minZ;
+    }
+
+    public int getMaxX() {
+        return this.maxX;
+    }
+
+    public int getMaxY() {
+        return this.maxY;
+    }
+
+    public int getMaxZ() {
+        return this.maxZ;
+    }
+
+    public int getSizeX() {
+        return this.maxX - this.minX + 1;
+    }
+
+    public int getSizeZ() {
+        return this.maxZ - this.minZ + 1;
+    }
+
+    /**
+     * Returns the lowest and highest block of every column of the craft.
+     */
+    public ColumnHitBox getHitBox() {
+        return this.hitBox;
+    }
+
+    public int getBlockCount() {
+        return this.blockCount;
+    }
+
+    public int getChunkCount() {
+        return this.chunks.length;
+    }
+
+    public long getChunkKey(final int index) {
+        return this.chunks[index];
+    }
+
+    public boolean containsChunk(final int chunkX, final int chunkZ) {
+        return Arrays.binarySearch(this.chunks, chunkKey(chunkX, chunkZ)) >= 0;
+    }
+}
@@ -18,7 +18,6 @@
 package net.countercraft.movecraft.craft;
 
 import com.alexknvl.shipcraft.math.BlockVec;
-import com.google.common.collect.Sets;
 import net.countercraft.movecraft.config.Settings;
 import net.countercraft.movecraft.localisation.I18nSupport;
 import org.bukkit.ChatColor;
@@ -55,8 +54,13 @@ public final class CraftManager implements net.countercraft.movecraft.api.CraftM
     private CraftType[] craftTypes;
 
     private final Map<World, Set<Craft>> craftList = new ConcurrentHashMap<>();
-    private final Map<Player, Craft> craftPlayerIndex = new HashMap<>();
+    private final Map<Player, Craft> craftPlayerIndex = new ConcurrentHashMap<>();
+    // guards updates of craftPlayerIndex together with Craft.pilot, lookups take no lock
+    private final Object pilotLock = new Object();
     private final Map<Player, BukkitTask> releaseEvents = new HashMap<>();
+    // chunk key -> crafts with at least one column in that chunk, only used from the main thread
+    private final Map<World, Map<Long, List<Craft>>> craftChunkIndex = new HashMap<>();
+    private final Map<Craft, CraftGeometry> indexedGeometry = new HashMap<>();
 
     public CraftManager(final Settings settings, final I18nSupport i18nSupport, final Plugin plugin) {
         this.settings = settings;
@@ -130,7 +134,8 @@ public final class CraftManager implements net.countercraft.movecraft.api.CraftM
 
     public void addCraft(final Craft craft, final Player player) {
         this.craftList.computeIfAbsent(craft.getWorld(), k -> new HashSet<>()).add(craft);
-        this.craftPlayerIndex.put(player, craft);
+        this.updateCraftIndex(craft);
+        this.setPilot(craft, player);
         this.destroySnowOnPilot(player, craft);
     }
 
@@ -139,7 +144,8 @@ public final class CraftManager implements net.countercraft.movecraft.api.CraftM
         // if its sinking, just remove the craft without notifying or checking
         if (craft.getSinking()) {
             this.craftList.get(craft.getWorld()).remove(craft);
-            this.craftPlayerIndex.remove(this.getPlayerFromCraft(craft));
+            this.unindexCraft(craft);
+            this.setPilot(craft, null);
         }
         // don't just release torpedoes, make them sink so they don't clutter up the place
         if (craft.getType().getCruiseOnPilot()) {
@@ -149,22 +155,23 @@ public final class CraftManager implements net.countercraft.movecraft.api.CraftM
             return;
         }
         this.craftList.get(craft.getWorld()).remove(craft);
+        this.unindexCraft(craft);
         final Player pilot = this.getPlayerFromCraft(craft);
         if (pilot != null) {
             pilot.sendMessage(this.i18nSupport.get("Release - Craft has been released message"));
             this.plugin.getLogger().log(Level.INFO,
                                         String.format(this.i18nSupport.get("Release - Player has released a craft console"),
                                                       craft.getNotificationPlayer().getName(), craft.getType().getCraftName(),
-                                                      craft.getBlockList().length, craft.getMinX(), craft.getMinZ()));
+                                                      craft.getBlocks().size(), craft.getMinX(), craft.getMinZ()));
         } else {
             this.plugin.getLogger().log(Level.INFO, String.format(this.i18nSupport
                                                                      .get("NULL Player has released a craft of type " +
                                                                           "%s with size %d at coordinates : %d x , %d" +
                                                                           " z"),
-                                                                  craft.getType().getCraftName(), craft.getBlockList().length,
+                                                                  craft.getType().getCraftName(), craft.getBlocks().size(),
                                                                   craft.getMinX(), craft.getMinZ()));
         }
-        this.craftPlayerIndex.remove(pilot);
+        this.setPilot(craft, null);
 
         this.destroyBindingBlocks(pilot, craft);
     }
@@ -181,9 +188,9 @@ public final class CraftManager implements net.countercraft.movecraft.api.CraftM
     private void destroySnowOnPilot(final Player pilot, final Craft craft) {
         if (pilot == null || !pilot.isOnline()) return;
 
-        final Set<BlockVec> craftBlocks = Sets.newHashSet(craft.getBlockList());
-        for (final BlockVec block : craftBlocks) {
-            final BlockVec test = block.translate(0, 1, 0);
+        final BlockSet craftBlocks = craft.getBlocks();
+        for (int i = 0; i < craftBlocks.size(); i++) {
+            final BlockVec test = craftBlocks.get(i).translate(0, 1, 0);
             if (!craftBlocks.contains(test)) {
                 final Block testBlock = craft.getWorld().getBlockAt(test.x(), test.y(), test.z());
 
@@ -203,9 +210,10 @@ public final class CraftManager implements net.countercraft.movecraft.api.CraftM
             return;
         }
 
-        final Set<BlockVec> craftBlocks = Sets.newHashSet(craft.getBlockList());
+        final BlockSet craftBlocks = craft.getBlocks();
         int blockedBroken = 0;
-        for (final BlockVec block : craftBlocks) {
+        for (int i = 0; i < craftBlocks.size(); i++) {
+            final BlockVec block = craftBlocks.get(i);
             for (int x = -1; x <= 1; x++) {
                 for (int y = -1; y <= 1; y++) {
                     for (int z = -1; z <= 1; z++) {
@@ -254,32 +262,89 @@ public final class CraftManager implements net.countercraft.movecraft.api.CraftM
         return Collections.unmodifiableSet(result);
     }
 
+    /**
+     * Returns the crafts that occupy at least one column of the given chunk. Must be called from
+     * the main thread.
+     */
+    @Nonnull public List<Craft> getCraftsInChunk(final World world, final int chunkX, final int chunkZ) {
+        final Map<Long, List<Craft>> worldIndex = this.craftChunkIndex.get(world);
+        if (worldIndex == null) return Collections.emptyList();
+        final List<Craft> result = worldIndex.get(CraftGeometry.chunkKey(chunkX, chunkZ));
+        if (result == null) return Collections.emptyList();
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Moves a piloted craft to the chunks of its current geometry in the chunk index. Must be
+     * called from the main thread after every change to the blocks of the craft.
+     */
+    public void updateCraftIndex(final Craft craft) {
+        final Set<Craft> crafts = this.craftList.get(craft.getWorld());
+        if (crafts == null || !crafts.contains(craft)) return;
+
+        final CraftGeometry geometry = craft.getGeometry();
+        final CraftGeometry previous = this.indexedGeometry.put(craft, geometry);
+        if (previous == geometry) return;
+
+        final Map<Long, List<Craft>> worldIndex = this.craftChunkIndex.computeIfAbsent(craft.getWorld(), k -> new HashMap<>());
+        if (previous != null) this.removeFromChunks(worldIndex, craft, previous);
+        for (int i = 0; i < geometry.getChunkCount(); i++) {
+            worldIndex.computeIfAbsent(geometry.getChunkKey(i), k -> new ArrayList<>(1)).add(craft);
+        }
+    }
+
+    private void unindexCraft(final Craft craft) {
+        final CraftGeometry previous = this.indexedGeometry.remove(craft);
+        final Map<Long, List<Craft>> worldIndex = this.craftChunkIndex.get(craft.getWorld());
+        if (previous != null && worldIndex != null) this.removeFromChunks(worldIndex, craft, previous);
+    }
+
+    private void removeFromChunks(final Map<Long, List<Craft>> worldIndex, final Craft craft, final CraftGeometry geometry) {
+        for (int i = 0; i < geometry.getChunkCount(); i++) {
+            final Long chunkKey = geometry.getChunkKey(i);
+            final List<Craft> crafts = worldIndex.get(chunkKey);
+            if (crafts == null) continue;
+            crafts.remove(craft);
+            if (crafts.isEmpty()) worldIndex.remove(chunkKey);
+        }
+    }
+
     public Craft getCraftByPlayer(final Player player) {
+        if (player == null) return null;
         return this.craftPlayerIndex.get(player);
     }
 
     public Player getPlayerFromCraft(final Craft craft) {
-        for (final Map.Entry<Player, Craft> playerCraftEntry : this.craftPlayerIndex.entrySet()) {
+        if (craft == null) return null;
+        return craft.getPilot();
+    }
 
-            if (playerCraftEntry.getValue() == craft) {
-                return playerCraftEntry.getKey();
+    /**
+     * Makes {@code pilot} the pilot of {@code craft}, releasing the previous pilot of the craft and
+     * the previous craft of the pilot. A null pilot leaves the craft without one.
+     */
+    private void setPilot(final Craft craft, final Player pilot) {
+        synchronized (this.pilotLock) {
+            final Player previousPilot = craft.getPilot();
+            if (previousPilot != null) this.craftPlayerIndex.remove(previousPilot, craft);
+            if (pilot != null) {
+                final Craft previousCraft = this.craftPlayerIndex.put(pilot, craft);
+                if (previousCraft != null && previousCraft != craft) previousCraft.setPilot(null);
             }
+            craft.setPilot(pilot);
         }
-
-        return null;
     }
 
     public void removePlayerFromCraft(final Craft craft) {
-        if (this.getPlayerFromCraft(craft) != null) {
+        final Player pilot = craft.getPilot();
+        if (pilot != null) {
             this.removeReleaseTask(craft);
-            this.getPlayerFromCraft(craft).sendMessage(this.i18nSupport.get("Release - Craft has been released message"));
+            pilot.sendMessage(this.i18nSupport.get("Release - Craft has been released message"));
             this.plugin.getLogger().log(Level.INFO,
                                         String.format(this.i18nSupport.get("Release - Player has released a craft console"),
                                                       craft.getNotificationPlayer().getName(), craft.getType().getCraftName(),
-                                                      craft.getBlockList().length, craft.getMinX(), craft.getMinZ()));
-            final Player p = this.getPlayerFromCraft(craft);
-            this.craftPlayerIndex.put(null, craft);
-            this.craftPlayerIndex.remove(p);
+                                                      craft.getBlocks().size(), craft.getMinX(), craft.getMinZ()));
+            this.setPilot(craft, null);
         }
     }
 
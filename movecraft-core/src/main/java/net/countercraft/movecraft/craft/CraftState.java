@@ -0,0 +1,198 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.alexknvl.shipcraft.math.RotationXZ;
+import com.google.common.base.Preconditions;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One version of the mutable part of a craft: its blocks, the indexes derived from them and
+ * the fuel left in its furnaces. Blocks are stored as installed and viewed through the offset
+ * the craft has moved since, so a plain translation does not touch the block set. A craft swaps
+ * whole states atomically, so an async task can capture a state when it is submitted, read it
+ * without locking and have its result rejected if the craft moved on to another version in the
+ * meantime.
+ *
+ * The leading faces of the block set are computed on first use and shared by every state
+ * that keeps the same block set, however far it has moved, and so is the index of its special
+ * blocks. The waterline of a water craft is kept across moves that don't change its height.
+ * A rotated state keeps the layouts of its block set in the orientations it has been turned to,
+ * so turning back and forth reuses them until the block set is replaced.
+ */
+@Immutable
+public final class CraftState {
+    static final CraftState INITIAL = new CraftState(0, new PackedBlockSet().readOnly(), BlockBitmap.of(new PackedBlockSet()),
+                                                     CraftGeometry.EMPTY, 0.0, new ConcurrentHashMap<>(),
+                                                     new AtomicReference<>(), null, null);
+    // a craft rarely moves in more directions than this, a move vector past the limit is not cached
+    private static final int MAX_LEADING_FACES = 32;
+
+    private final long version;
+    private final BlockSet blockView;
+    private final BlockBitmap blockIndex;
+    private final CraftGeometry geometry;
+    private final double burningFuel;
+    // packed move vector -> leading face
+    private final ConcurrentMap<Long, LeadingFace> leadingFaces;
+    private final AtomicReference<SpecialBlockIndex> specialBlocks;
+    @Nullable private final Waterline waterline;
+    @Nullable private final RotationTemplates.Placement placement;
+
+    private CraftState(final long version, final BlockSet blockView, final BlockBitmap blockIndex,
+                       final CraftGeometry geometry, final double burningFuel,
+                       final ConcurrentMap<Long, LeadingFace> leadingFaces,
+                       final AtomicReference<SpecialBlockIndex> specialBlocks, @Nullable final Waterline waterline,
+                       @Nullable final RotationTemplates.Placement placement)
+    {
+        this.version = version;
+        this.blockView = blockView;
+        this.blockIndex = blockIndex;
+        this.geometry = geometry;
+        this.burningFuel = burningFuel;
+        this.leadingFaces = leadingFaces;
+        this.specialBlocks = specialBlocks;
+        this.waterline = waterline;
+        this.placement = placement;
+    }
+
+    /**
+     * Returns the next version of this state with {@code blocks} installed. The state takes
+     * ownership of {@code blocks}, callers must not modify it afterwards.
+     */
+    public CraftState withBlocks(final PackedBlockSet blocks) {
+        return this.withBlocks(blocks, null);
+    }
+
+    /**
+     * Returns the next version of this state with {@code blocks} installed, and {@code specialBlocks}
+     * as their index if it was already built.
+     */
+    public CraftState withBlocks(final PackedBlockSet blocks, @Nullable final SpecialBlockIndex specialBlocks) {
+        Preconditions.checkNotNull(blocks);
+        return new CraftState(this.version + 1, blocks.readOnly(), BlockBitmap.of(blocks), CraftGeometry.of(blocks),
+                              this.burningFuel, new ConcurrentHashMap<>(), new AtomicReference<>(specialBlocks), null,
+                              null);
+    }
+
+    /**
+     * Returns the next version of this state with every block moved by {@code dx, dy, dz}. The
+     * block set and bitmap are shared with this state, so the cost does not depend on the size
+     * of the craft.
+     */
+    public CraftState translate(final int dx, final int dy, final int dz) {
+        return new CraftState(this.version + 1, OffsetBlockSet.of(this.blockView, dx, dy, dz),
+                              this.blockIndex.translate(dx, dy, dz), this.geometry.translate(dx, dy, dz),
+                              this.burningFuel, this.leadingFaces, this.specialBlocks,
+                              this.waterline == null || dy != 0 ? null : this.waterline.translate(dx, dy, dz),
+                              this.placement == null ? null : this.placement.translate(dx, dy, dz));
+    }
+
+    /**
+     * Returns the next version of this state with every block turned by {@code rotation} around
+     * {@code pivot}. Blocks keep their index. The layout of each orientation is built once and
+     * reused whenever the craft is turned back to it. The waterline is dropped.
+     */
+    public CraftState rotate(final BlockVec pivot, final RotationXZ rotation) {
+        final RotationTemplates.Placement current = this.placement != null ? this.placement :
+                RotationTemplates.place(this.blockView, this.blockIndex, this.geometry, this.leadingFaces, pivot);
+        final RotationTemplates.Placement next = current.rotate(pivot, rotation);
+        return new CraftState(this.version + 1, next.getBlocks(), next.getBlockIndex(), next.getGeometry(),
+                              this.burningFuel, next.getLeadingFaces(), this.specialBlocks, null, next);
+    }
+
+    public CraftState withBurningFuel(final double burningFuel) {
+        return new CraftState(this.version + 1, this.blockView, this.blockIndex, this.geometry, burningFuel,
+                              this.leadingFaces, this.specialBlocks, this.waterline, this.placement);
+    }
+
+    /**
+     * Returns the next version of this state with {@code waterline} as the craft's waterline.
+     */
+    public CraftState withWaterline(@Nullable final Waterline waterline) {
+        return new CraftState(this.version + 1, this.blockView, this.blockIndex, this.geometry, this.burningFuel,
+                              this.leadingFaces, this.specialBlocks, waterline, this.placement);
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public BlockSet getBlocks() {
+        return this.blockView;
+    }
+
+    public BlockBitmap getBlockIndex() {
+        return this.blockIndex;
+    }
+
+    public CraftGeometry getGeometry() {
+        return this.geometry;
+    }
+
+    public double getBurningFuel() {
+        return this.burningFuel;
+    }
+
+    /**
+     * Returns the waterline found for the craft at its current position, or null if it has to
+     * be looked for again.
+     */
+    @Nullable public Waterline getWaterline() {
+        return this.waterline;
+    }
+
+    /**
+     * Returns the index of the special blocks of this state's block set, or null if it hasn't
+     * been built yet.
+     */
+    @Nullable public SpecialBlockIndex getIndexedSpecialBlocks() {
+        return this.specialBlocks.get();
+    }
+
+    /**
+     * Returns the index of the special blocks of this state's block set. The first call for a
+     * block set builds the index, reading the type of every block through {@code types}.
+     */
+    public SpecialBlockIndex getSpecialBlocks(final SpecialBlockIndex.TypeLookup types) {
+        final SpecialBlockIndex index = this.specialBlocks.get();
+        if (index != null) return index;
+        this.specialBlocks.compareAndSet(null, SpecialBlockIndex.of(this.blockView, types));
+        return this.specialBlocks.get();
+    }
+
+    /**
+     * Returns the blocks that move outside of the craft when it is moved by {@code dx, dy, dz}.
+     */
+    public LeadingFace getLeadingFace(final int dx, final int dy, final int dz) {
+        final Long key = PackedBlockPos.pack(dx, dy, dz);
+        final LeadingFace cached = this.leadingFaces.get(key);
+        if (cached != null) return cached;
+
+        final LeadingFace face = LeadingFace.of(this.blockView, this.blockIndex, dx, dy, dz);
+        if (this.leadingFaces.size() < MAX_LEADING_FACES) this.leadingFaces.putIfAbsent(key, face);
+        return face;
+    }
+}
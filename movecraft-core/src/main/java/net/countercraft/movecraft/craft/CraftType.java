@@ -23,7 +23,6 @@ import com.google.common.collect.ImmutableMap;
 import com.alexknvl.shipcraft.math.IntRange;
 import com.alexknvl.shipcraft.MaterialDataPredicate;
 import org.bukkit.Material;
-import org.bukkit.material.MaterialData;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.File;
@@ -79,6 +78,7 @@ public class CraftType {
     private double collisionExplosion;
     private int tickCooldown;
     private Map<MaterialDataPredicate, List<Constraint>> flyBlocks = new HashMap<>();
+    private FlyBlockTable flyBlockTable;
     private int hoverLimit;
     private MaterialDataPredicate harvestBlocks;
     private MaterialDataPredicate harvesterBladeBlocks;
@@ -428,7 +428,7 @@ public class CraftType {
                 // First read in the list of the blocks that type of flyblock.
                 // It could be a single string (with or without a ":") or integer,
                 // or it could be multiple of them.
-                final MaterialDataPredicate predicate = asMaterialDataPredicate(entry.getKey());
+                final MaterialDataPredicate predicate = asMaterialDataPredicate(entry.getKey()).compile();
 
                 // Then read in the limitation values, low and high.
                 final List<Constraint> list = asConstrantList(entry.getValue());
@@ -476,8 +476,8 @@ public class CraftType {
         final int minSize = asInteger(data.get("minSize"));
         this.sizeRange = new IntRange(minSize, maxSize);
 
-        this.allowedBlocks = asMaterialDataPredicateList(data.get("allowedBlocks"));
-        this.forbiddenBlocks = asMaterialDataPredicateList(data.get("forbiddenBlocks"));
+        this.allowedBlocks = asMaterialDataPredicateList(data.get("allowedBlocks")).compile();
+        this.forbiddenBlocks = asMaterialDataPredicateList(data.get("forbiddenBlocks")).compile();
         this.blockedByWater = getBooleanOr(data, "canFly", getBooleanOr(data, "blockedByWater", true));
         this.requireWaterContact = getBooleanOr(data, "requireWaterContact", false);
         this.tryNudge = getBooleanOr(data, "tryNudge", false);
@@ -490,6 +490,7 @@ public class CraftType {
         }
 
         this.flyBlocks = asRequirementList(data.get("flyblocks"));
+        this.flyBlockTable = FlyBlockTable.of(this.flyBlocks);
         this.canCruise = getBooleanOr(data, "canCruise", false);
         this.canTeleport = getBooleanOr(data, "canTeleport", false);
         this.cruiseOnPilot = getBooleanOr(data, "cruiseOnPilot", false);
@@ -534,13 +535,13 @@ public class CraftType {
         this.hoverLimit = getIntegerOr(data, "hoverLimit", 0);
 
         if (data.containsKey("harvestBlocks")) {
-            this.harvestBlocks = asMaterialDataPredicateList(data.get("harvestBlocks"));
+            this.harvestBlocks = asMaterialDataPredicateList(data.get("harvestBlocks")).compile();
         } else {
             this.harvestBlocks = MaterialDataPredicate.none();
         }
 
         if (data.containsKey("harvesterBladeBlocks")) {
-            this.harvesterBladeBlocks = asMaterialDataPredicateList(data.get("harvesterBladeBlocks"));
+            this.harvesterBladeBlocks = asMaterialDataPredicateList(data.get("harvesterBladeBlocks")).compile();
         } else {
             this.harvesterBladeBlocks = MaterialDataPredicate.none();
         }
@@ -684,6 +685,10 @@ public class CraftType {
         return this.flyBlocks;
     }
 
+    public FlyBlockTable getFlyBlockTable() {
+        return this.flyBlockTable;
+    }
+
     public IntRange getHeightRange() {
         return this.heightRange;
     }
@@ -729,10 +734,10 @@ public class CraftType {
     }
 
     public boolean isAllowedBlock(final int blockId, final byte data) {
-        return this.allowedBlocks.check(new MaterialData(blockId, data));
+        return this.allowedBlocks.check(blockId, data);
     }
 
     public boolean isForbiddenBlock(final int blockId, final byte data) {
-        return this.forbiddenBlocks.check(new MaterialData(blockId, data));
+        return this.forbiddenBlocks.check(blockId, data);
     }
 }
@@ -0,0 +1,122 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.MaterialDataPredicate;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fly block requirements of a craft type, numbered into slots. Every (type id, data) pair is
+ * classified up front into the slots it counts toward, so counting a block is one table lookup
+ * and an increment per matching slot.
+ */
+@Immutable
+public final class FlyBlockTable {
+    // one entry per (typeId << 4 | data) for the 12 bit type ids and 4 bit data values of a chunk section
+    private static final int TABLE_SIZE = 1 << 16;
+
+    private final MaterialDataPredicate[] predicates;
+    private final List<List<CraftType.Constraint>> constraints;
+    // (typeId << 4 | data) -> index into slotSets
+    private final char[] classes;
+    private final int[][] slotSets;
+
+    private FlyBlockTable(final MaterialDataPredicate[] predicates, final List<List<CraftType.Constraint>> constraints,
+                          final char[] classes, final int[][] slotSets)
+    {
+        this.predicates = predicates;
+        this.constraints = constraints;
+        this.classes = classes;
+        this.slotSets = slotSets;
+    }
+
+    public static FlyBlockTable of(final Map<MaterialDataPredicate, List<CraftType.Constraint>> flyBlocks) {
+        final MaterialDataPredicate[] predicates = new MaterialDataPredicate[flyBlocks.size()];
+        final ImmutableList.Builder<List<CraftType.Constraint>> constraints = ImmutableList.builder();
+        int slot = 0;
+        for (final Map.Entry<MaterialDataPredicate, List<CraftType.Constraint>> entry : flyBlocks.entrySet()) {
+            predicates[slot++] = entry.getKey();
+            constraints.add(entry.getValue());
+        }
+
+        final char[] classes = new char[TABLE_SIZE];
+        final List<int[]> slotSets = new ArrayList<>();
+        final Map<List<Integer>, Integer> slotSetIndices = new HashMap<>();
+        slotSets.add(new int[0]);
+        slotSetIndices.put(ImmutableList.of(), 0);
+        final List<Integer> matched = new ArrayList<>();
+        for (int key = 0; key < TABLE_SIZE; key++) {
+            matched.clear();
+            for (int i = 0; i < predicates.length; i++) {
+                if (predicates[i].check(key >>> 4, (byte) (key & 15))) matched.add(i);
+            }
+            Integer index = slotSetIndices.get(matched);
+            if (index == null) {
+                index = slotSets.size();
+                slotSets.add(matched.stream().mapToInt(Integer::intValue).toArray());
+                slotSetIndices.put(ImmutableList.copyOf(matched), index);
+            }
+            classes[key] = (char) index.intValue();
+        }
+
+        return new FlyBlockTable(predicates, constraints.build(), classes, slotSets.toArray(new int[slotSets.size()][]));
+    }
+
+    /**
+     * Returns the number of slots, one per fly block requirement.
+     */
+    public int size() {
+        return this.predicates.length;
+    }
+
+    public MaterialDataPredicate getPredicate(final int slot) {
+        return this.predicates[slot];
+    }
+
+    public List<CraftType.Constraint> getConstraints(final int slot) {
+        return this.constraints.get(slot);
+    }
+
+    /**
+     * Returns a zeroed counter array for {@link #count(int[], int, byte)}.
+     */
+    public int[] newCounts() {
+        return new int[this.predicates.length];
+    }
+
+    /**
+     * Increments the counter of every slot the block counts toward.
+     */
+    public void count(final int[] counts, final int typeId, final byte data) {
+        if ((typeId >>> 12) != 0 || (data & 0xF0) != 0) {
+            for (int i = 0; i < this.predicates.length; i++) {
+                if (this.predicates[i].check(typeId, data)) counts[i]++;
+            }
+            return;
+        }
+        for (final int slot : this.slotSets[this.classes[typeId << 4 | data]]) {
+            counts[slot]++;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The blocks of a craft that end up outside of the craft when it is moved by a given offset,
+ * one bit per index of the craft's {@link BlockSet}. Every other block moves into a cell the
+ * craft already occupies and so can never collide with the world. Since moving the craft does
+ * not change which blocks lead, a face stays valid for as long as the block set is not replaced.
+ */
+@Immutable
+public final class LeadingFace {
+    private final long[] bits;
+    private final int size;
+    private final int count;
+
+    private LeadingFace(final long[] bits, final int size, final int count) {
+        this.bits = bits;
+        this.size = size;
+        this.count = count;
+    }
+
+    static LeadingFace of(final BlockSet blocks, final BlockBitmap index, final int dx, final int dy, final int dz) {
+        final int size = blocks.size();
+        final long[] bits = new long[(size + 63) >>> 6];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            final long packed = blocks.getPacked(i);
+            if (!index.contains(PackedBlockPos.unpackX(packed) + dx, PackedBlockPos.unpackY(packed) + dy,
+                                PackedBlockPos.unpackZ(packed) + dz)) {
+                bits[i >>> 6] |= 1L << i;
+                count++;
+            }
+        }
+        return new LeadingFace(bits, size, count);
+    }
+
+    /**
+     * Returns true if the block at {@code index} may move into a cell outside of the craft.
+     * Indices past the end of the block set are always reported as leading.
+     */
+    public boolean isLeading(final int index) {
+        return index >= this.size || (this.bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the number of blocks of the set that lead.
+     */
+    public int getCount() {
+        return this.count;
+    }
+}
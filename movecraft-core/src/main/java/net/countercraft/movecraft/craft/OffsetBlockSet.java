@@ -0,0 +1,64 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * View of a block set moved by a fixed offset. The positions of the underlying set are kept
+ * as they are and shifted on every access, so moving a set costs the same regardless of its size.
+ */
+@Immutable
+final class OffsetBlockSet implements BlockSet {
+    private final BlockSet base;
+    private final int dx, dy, dz;
+
+    private OffsetBlockSet(final BlockSet base, final int dx, final int dy, final int dz) {
+        this.base = base;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+    }
+
+    /**
+     * Returns {@code blocks} moved by {@code dx, dy, dz}. Offsets of a set that is already moved
+     * are combined rather than stacked.
+     */
+    static BlockSet of(final BlockSet blocks, final int dx, final int dy, final int dz) {
+        if (blocks instanceof OffsetBlockSet) {
+            final OffsetBlockSet offset = (OffsetBlockSet) blocks;
+            return of(offset.base, offset.dx + dx, offset.dy + dy, offset.dz + dz);
+        }
+        if (dx == 0 && dy == 0 && dz == 0) return blocks;
+        return new OffsetBlockSet(blocks, dx, dy, dz);
+    }
+
+    @Override public int size() {
+        return this.base.size();
+    }
+
+    @Override public long getPacked(final int index) {
+        return PackedBlockPos.translate(this.base.getPacked(index), this.dx, this.dy, this.dz);
+    }
+
+    @Override public boolean containsPacked(final long packed) {
+        return this.base.containsPacked(PackedBlockPos.translate(packed, -this.dx, -this.dy, -this.dz));
+    }
+}
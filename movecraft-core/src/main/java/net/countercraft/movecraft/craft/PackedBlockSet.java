@@ -0,0 +1,170 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.google.common.base.Preconditions;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import java.util.Arrays;
+
+/**
+ * Insertion-ordered set of packed block positions. The positions live in a dense
+ * {@code long[]}, and an open-addressing table of indices into that array is used
+ * for membership tests.
+ */
+public final class PackedBlockSet implements BlockSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    // slot -> index into keys plus one, zero marks a free slot
+    private int[] table;
+    private int size;
+    private BlockSet readOnlyView;
+
+    public PackedBlockSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public PackedBlockSet(final int expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0);
+        this.keys = new long[Math.max(expectedSize, MIN_CAPACITY)];
+        this.table = new int[tableSizeFor(this.keys.length)];
+    }
+
+    public static PackedBlockSet of(final BlockVec[] blocks) {
+        final PackedBlockSet result = new PackedBlockSet(blocks.length);
+        for (final BlockVec block : blocks) {
+            if (block != null) result.add(block.x(), block.y(), block.z());
+        }
+        return result;
+    }
+
+    public static PackedBlockSet copyOf(final BlockSet blocks) {
+        final PackedBlockSet result = new PackedBlockSet(blocks.size());
+        final int size = blocks.size();
+        for (int i = 0; i < size; i++) {
+            result.addPacked(blocks.getPacked(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the blocks of {@code blocks} that are not in {@code removed}, in their original order.
+     */
+    public static PackedBlockSet difference(final BlockSet blocks, final BlockSet removed) {
+        final PackedBlockSet result = new PackedBlockSet(blocks.size());
+        final int size = blocks.size();
+        for (int i = 0; i < size; i++) {
+            final long packed = blocks.getPacked(i);
+            if (!removed.containsPacked(packed)) result.addPacked(packed);
+        }
+        return result;
+    }
+
+    private static int tableSizeFor(final int capacity) {
+        // keep the load factor at or below one half
+        int n = MIN_CAPACITY;
+        while (n < capacity * 2) n <<= 1;
+        return n;
+    }
+
+    private static int hash(final long packed) {
+        final long h = packed * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public boolean add(final int x, final int y, final int z) {
+        return this.addPacked(PackedBlockPos.pack(x, y, z));
+    }
+
+    public boolean add(final BlockVec vec) {
+        return this.addPacked(PackedBlockPos.pack(vec));
+    }
+
+    public boolean addPacked(final long packed) {
+        final int mask = this.table.length - 1;
+        int slot = hash(packed) & mask;
+        while (this.table[slot] != 0) {
+            if (this.keys[this.table[slot] - 1] == packed) return false;
+            slot = (slot + 1) & mask;
+        }
+
+        if (this.size == this.keys.length) {
+            this.grow();
+            return this.addPacked(packed);
+        }
+
+        this.keys[this.size] = packed;
+        this.size++;
+        this.table[slot] = this.size;
+        return true;
+    }
+
+    private void grow() {
+        this.keys = Arrays.copyOf(this.keys, this.keys.length * 2);
+        this.table = new int[tableSizeFor(this.keys.length)];
+        final int mask = this.table.length - 1;
+        for (int i = 0; i < this.size; i++) {
+            int slot = hash(this.keys[i]) & mask;
+            while (this.table[slot] != 0) slot = (slot + 1) & mask;
+            this.table[slot] = i + 1;
+        }
+    }
+
+    @Override public int size() {
+        return this.size;
+    }
+
+    @Override public long getPacked(final int index) {
+        Preconditions.checkElementIndex(index, this.size);
+        return this.keys[index];
+    }
+
+    @Override public boolean containsPacked(final long packed) {
+        final int mask = this.table.length - 1;
+        int slot = hash(packed) & mask;
+        while (this.table[slot] != 0) {
+            if (this.keys[this.table[slot] - 1] == packed) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a view that exposes only the {@link BlockSet} operations of this set.
+     */
+    public BlockSet readOnly() {
+        if (this.readOnlyView == null) {
+            this.readOnlyView = new BlockSet() {
+                @Override public int size() {
+                    return PackedBlockSet.this.size;
+                }
+
+                @Override public long getPacked(final int index) {
+                    return PackedBlockSet.this.getPacked(index);
+                }
+
+                @Override public boolean containsPacked(final long packed) {
+                    return PackedBlockSet.this.containsPacked(packed);
+                }
+            };
+        }
+        return this.readOnlyView;
+    }
+}
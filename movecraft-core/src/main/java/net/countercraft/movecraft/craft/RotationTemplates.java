@@ -0,0 +1,205 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.alexknvl.shipcraft.math.RotationXZ;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The layouts of one block set turned to each of its four orientations, relative to an anchor.
+ * A craft that keeps rotating, like a turret, builds each layout once and afterwards only moves
+ * the anchor, instead of rebuilding its blocks, bitmap and hitbox on every turn. Blocks keep
+ * their index in every layout.
+ */
+@ThreadSafe
+final class RotationTemplates {
+    /**
+     * The blocks of one orientation and the indexes derived from them.
+     */
+    @Immutable
+    static final class Layout {
+        private final BlockSet blocks;
+        private final BlockBitmap blockIndex;
+        private final CraftGeometry geometry;
+        private final ConcurrentMap<Long, LeadingFace> leadingFaces;
+
+        private Layout(final BlockSet blocks, final BlockBitmap blockIndex, final CraftGeometry geometry,
+                       final ConcurrentMap<Long, LeadingFace> leadingFaces)
+        {
+            this.blocks = blocks;
+            this.blockIndex = blockIndex;
+            this.geometry = geometry;
+            this.leadingFaces = leadingFaces;
+        }
+
+        BlockSet getBlocks() {
+            return this.blocks;
+        }
+
+        BlockBitmap getBlockIndex() {
+            return this.blockIndex;
+        }
+
+        CraftGeometry getGeometry() {
+            return this.geometry;
+        }
+
+        ConcurrentMap<Long, LeadingFace> getLeadingFaces() {
+            return this.leadingFaces;
+        }
+    }
+
+    /**
+     * Where a craft built from the templates stands: the layout of one orientation, moved so that
+     * the layout's origin lies at the anchor.
+     */
+    @Immutable
+    static final class Placement {
+        private final RotationTemplates templates;
+        private final int orientation;
+        private final int anchorX, anchorY, anchorZ;
+
+        private Placement(final RotationTemplates templates, final int orientation, final int anchorX,
+                          final int anchorY, final int anchorZ)
+        {
+            this.templates = templates;
+            this.orientation = orientation;
+            this.anchorX = anchorX;
+            this.anchorY = anchorY;
+            this.anchorZ = anchorZ;
+        }
+
+        Placement translate(final int dx, final int dy, final int dz) {
+            return new Placement(this.templates, this.orientation, this.anchorX + dx, this.anchorY + dy,
+                                 this.anchorZ + dz);
+        }
+
+        /**
+         * Returns this placement turned by {@code rotation} around {@code pivot}.
+         */
+        Placement rotate(final BlockVec pivot, final RotationXZ rotation) {
+            final int steps = steps(rotation);
+            final int x = this.anchorX - pivot.x();
+            final int z = this.anchorZ - pivot.z();
+            return new Placement(this.templates, (this.orientation + steps) & 3, turnX(x, z, steps) + pivot.x(),
+                                 this.anchorY, turnZ(x, z, steps) + pivot.z());
+        }
+
+        BlockSet getBlocks() {
+            return OffsetBlockSet.of(this.getLayout().getBlocks(), this.anchorX, this.anchorY, this.anchorZ);
+        }
+
+        BlockBitmap getBlockIndex() {
+            return this.getLayout().getBlockIndex().translate(this.anchorX, this.anchorY, this.anchorZ);
+        }
+
+        CraftGeometry getGeometry() {
+            return this.getLayout().getGeometry().translate(this.anchorX, this.anchorY, this.anchorZ);
+        }
+
+        ConcurrentMap<Long, LeadingFace> getLeadingFaces() {
+            return this.getLayout().getLeadingFaces();
+        }
+
+        private Layout getLayout() {
+            return this.templates.get(this.orientation);
+        }
+    }
+
+    // layout i is the base layout turned clockwise i times
+    private final AtomicReferenceArray<Layout> layouts = new AtomicReferenceArray<>(4);
+
+    private RotationTemplates(final Layout base) {
+        this.layouts.set(0, base);
+    }
+
+    /**
+     * Starts the templates of a block set, with its current layout as the base orientation
+     * anchored at {@code anchor}. The indexes already built for the block set are reused.
+     */
+    static Placement place(final BlockSet blocks, final BlockBitmap blockIndex, final CraftGeometry geometry,
+                           final ConcurrentMap<Long, LeadingFace> leadingFaces, final BlockVec anchor)
+    {
+        final Layout base = new Layout(OffsetBlockSet.of(blocks, -anchor.x(), -anchor.y(), -anchor.z()),
+                                       blockIndex.translate(-anchor.x(), -anchor.y(), -anchor.z()),
+                                       geometry.translate(-anchor.x(), -anchor.y(), -anchor.z()), leadingFaces);
+        return new Placement(new RotationTemplates(base), 0, anchor.x(), anchor.y(), anchor.z());
+    }
+
+    private Layout get(final int orientation) {
+        final Layout cached = this.layouts.get(orientation);
+        if (cached != null) return cached;
+
+        final BlockSet base = this.layouts.get(0).getBlocks();
+        final PackedBlockSet turned = new PackedBlockSet(base.size());
+        for (int i = 0; i < base.size(); i++) {
+            final long packed = base.getPacked(i);
+            final int x = PackedBlockPos.unpackX(packed);
+            final int z = PackedBlockPos.unpackZ(packed);
+            turned.add(turnX(x, z, orientation), PackedBlockPos.unpackY(packed), turnZ(x, z, orientation));
+        }
+        this.layouts.compareAndSet(orientation, null, new Layout(turned.readOnly(), BlockBitmap.of(turned),
+                                                                 CraftGeometry.of(turned), new ConcurrentHashMap<>()));
+        return this.layouts.get(orientation);
+    }
+
+    /**
+     * Returns the number of clockwise quarter turns {@code rotation} stands for.
+     */
+    static int steps(final RotationXZ rotation) {
+        if (rotation == RotationXZ.cw()) return 1;
+        if (rotation == RotationXZ.flip()) return 2;
+        if (rotation == RotationXZ.ccw()) return 3;
+        return 0;
+    }
+
+    // x, z turned clockwise around the origin the given number of times, as BlockVec.rotate does
+    private static int turnX(final int x, final int z, final int steps) {
+        switch (steps) {
+            case 1:
+                return -z;
+            case 2:
+                return -x;
+            case 3:
+                return z;
+            default:
+                return x;
+        }
+    }
+
+    private static int turnZ(final int x, final int z, final int steps) {
+        switch (steps) {
+            case 1:
+                return x;
+            case 2:
+                return -z;
+            case 3:
+                return -x;
+            default:
+                return z;
+        }
+    }
+}
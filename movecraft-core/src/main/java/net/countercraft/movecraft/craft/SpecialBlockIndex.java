@@ -0,0 +1,154 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.google.common.base.Preconditions;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+import org.bukkit.Material;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The blocks of a craft with tile entities that are looked up by type: signs, furnaces, chests and
+ * dispensers. Blocks are referred to by their index in the craft's {@link BlockSet}, so the index
+ * stays valid however far the set is moved. Blocks of a piloted craft can still be replaced, so
+ * callers check the type of every block they get back.
+ */
+@Immutable
+@SuppressWarnings("deprecation")
+public final class SpecialBlockIndex {
+    @FunctionalInterface
+    public interface TypeLookup {
+        int getTypeId(int x, int y, int z);
+    }
+
+    private static final Material[] TRACKED = {
+            Material.SIGN_POST, Material.WALL_SIGN, Material.FURNACE, Material.BURNING_FURNACE,
+            Material.CHEST, Material.TRAPPED_CHEST, Material.DISPENSER
+    };
+    // type id -> slot in TRACKED plus one, zero for types that aren't tracked
+    private static final byte[] SLOTS = new byte[1 << 12];
+
+    static {
+        for (int slot = 0; slot < TRACKED.length; slot++) {
+            SLOTS[TRACKED[slot].getId()] = (byte) (slot + 1);
+        }
+    }
+
+    // slot -> ascending indices of the blocks of that type
+    private final int[][] indices;
+
+    private SpecialBlockIndex(final int[][] indices) {
+        this.indices = indices;
+    }
+
+    public static SpecialBlockIndex of(final BlockSet blocks, final TypeLookup types) {
+        return of(blocks.size(), index -> {
+            final long packed = blocks.getPacked(index);
+            return types.getTypeId(PackedBlockPos.unpackX(packed), PackedBlockPos.unpackY(packed),
+                                   PackedBlockPos.unpackZ(packed));
+        });
+    }
+
+    public static SpecialBlockIndex of(final BlockVec[] blocks, final TypeLookup types) {
+        return of(blocks.length, index -> types.getTypeId(blocks[index].x(), blocks[index].y(), blocks[index].z()));
+    }
+
+    private static SpecialBlockIndex of(final int size, final IntUnaryOperator typeOfBlock) {
+        final int[][] indices = new int[TRACKED.length][];
+        final int[] counts = new int[TRACKED.length];
+        for (int i = 0; i < size; i++) {
+            final int typeId = typeOfBlock.applyAsInt(i);
+            if (typeId >>> 12 != 0 || SLOTS[typeId] == 0) continue;
+            final int slot = SLOTS[typeId] - 1;
+            if (indices[slot] == null) {
+                indices[slot] = new int[8];
+            } else if (counts[slot] == indices[slot].length) {
+                indices[slot] = Arrays.copyOf(indices[slot], counts[slot] * 2);
+            }
+            indices[slot][counts[slot]++] = i;
+        }
+        for (int slot = 0; slot < TRACKED.length; slot++) {
+            indices[slot] = indices[slot] == null ? new int[0] : Arrays.copyOf(indices[slot], counts[slot]);
+        }
+        return new SpecialBlockIndex(indices);
+    }
+
+    /**
+     * Returns the index of {@code PackedBlockSet.difference(blocks, removed)}, where this is the
+     * index of {@code blocks}.
+     */
+    public SpecialBlockIndex difference(final BlockSet blocks, final BlockSet removed) {
+        // index of every block in the difference, or -1 for the blocks that were removed
+        final int[] remaining = new int[blocks.size()];
+        int next = 0;
+        for (int i = 0; i < remaining.length; i++) {
+            remaining[i] = removed.containsPacked(blocks.getPacked(i)) ? -1 : next++;
+        }
+
+        final int[][] indices = new int[TRACKED.length][];
+        for (int slot = 0; slot < TRACKED.length; slot++) {
+            final int[] slotIndices = this.indices[slot];
+            int count = 0;
+            for (final int index : slotIndices) {
+                if (remaining[index] >= 0) count++;
+            }
+            indices[slot] = new int[count];
+            count = 0;
+            for (final int index : slotIndices) {
+                if (remaining[index] >= 0) indices[slot][count++] = remaining[index];
+            }
+        }
+        return new SpecialBlockIndex(indices);
+    }
+
+    public static boolean isTracked(final Material type) {
+        return SLOTS[type.getId()] != 0;
+    }
+
+    /**
+     * Returns the blocks of {@code blocks} that were of any of {@code types} when the index was
+     * built, in the order of the set. {@code blocks} must be the set the index was built for, or
+     * that set moved.
+     */
+    public BlockVec[] find(final BlockSet blocks, final Material... types) {
+        int count = 0;
+        for (final Material type : types) {
+            Preconditions.checkArgument(isTracked(type), "%s is not indexed", type);
+            count += this.indices[SLOTS[type.getId()] - 1].length;
+        }
+
+        final int[] found = new int[count];
+        count = 0;
+        for (final Material type : types) {
+            final int[] slotIndices = this.indices[SLOTS[type.getId()] - 1];
+            System.arraycopy(slotIndices, 0, found, count, slotIndices.length);
+            count += slotIndices.length;
+        }
+        if (types.length > 1) Arrays.sort(found);
+
+        final BlockVec[] result = new BlockVec[found.length];
+        for (int i = 0; i < found.length; i++) {
+            result[i] = blocks.get(found[i]);
+        }
+        return result;
+    }
+}
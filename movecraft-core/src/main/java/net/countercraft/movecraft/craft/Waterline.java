@@ -0,0 +1,179 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.alexknvl.shipcraft.math.RotationXZ;
+import net.countercraft.movecraft.detail.WorldSnapshot;
+import net.countercraft.movecraft.utils.ColumnHitBox;
+import org.bukkit.Material;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The water level around a water craft and the air inside its hull at or below that level,
+ * which has to move with the craft so that open hulls do not flood. Found by scanning the world
+ * around the craft, then moved and rotated along with it until it changes height or the water
+ * around it no longer matches.
+ */
+@Immutable
+@SuppressWarnings("deprecation")
+public final class Waterline {
+    private static final int AIR_ID = Material.AIR.getId();
+    private static final int STATIONARY_WATER_ID = Material.STATIONARY_WATER.getId();
+
+    private final int level;
+    private final BlockSet interiorAir;
+
+    private Waterline(final int level, final BlockSet interiorAir) {
+        this.level = level;
+        this.interiorAir = interiorAir;
+    }
+
+    /**
+     * Returns the y of the highest layer of water around the craft, or 0 if there is none.
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Returns the air cells inside of the craft's hull at or just above the water level.
+     */
+    public BlockSet getInteriorAir() {
+        return this.interiorAir;
+    }
+
+    public Waterline translate(final int dx, final int dy, final int dz) {
+        return new Waterline(this.level + dy, OffsetBlockSet.of(this.interiorAir, dx, dy, dz));
+    }
+
+    public Waterline rotate(final BlockVec originPoint, final RotationXZ rotation) {
+        final PackedBlockSet rotated = new PackedBlockSet(this.interiorAir.size());
+        for (int i = 0; i < this.interiorAir.size(); i++) {
+            rotated.add(this.interiorAir.get(i).subtract(originPoint).rotate(rotation).add(originPoint));
+        }
+        return new Waterline(this.level, rotated.readOnly());
+    }
+
+    /**
+     * Finds the waterline of a craft with {@code geometry} in {@code snapshot}. The level is the
+     * highest layer around the craft with more water than air, or {@code staticWaterLevel} if
+     * that is not zero. The snapshot must reach two blocks past the craft on every side.
+     */
+    public static Waterline scan(final WorldSnapshot snapshot, final CraftGeometry geometry,
+                                 final int staticWaterLevel)
+    {
+        // the craft's borders, maxX and maxZ are exclusive
+        final int minX = geometry.getMinX();
+        final int minY = geometry.getMinY();
+        final int minZ = geometry.getMinZ();
+        final int maxX = geometry.getMaxX() + 1;
+        final int maxY = geometry.getMaxY();
+        final int maxZ = geometry.getMaxZ() + 1;
+
+        int level = 0;
+        if (staticWaterLevel == 0) {
+            // figure out the water level by examining blocks next to the outer boundaries of the craft
+            for (int posY = maxY + 1; posY >= minY - 1 && level == 0; posY--) {
+                if (isWaterLayer(snapshot, geometry, posY)) level = posY;
+            }
+        } else {
+            level = staticWaterLevel;
+        }
+
+        // all the air found within the craft's hitbox immediately above the waterline, and all of it
+        // within the craft's borders below. The hitbox isn't checked underwater, or open hulls would flood.
+        final PackedBlockSet air = new PackedBlockSet();
+        final ColumnHitBox hitBox = geometry.getHitBox();
+        final int aboveY = level + 1;
+        for (int posX = minX; posX < maxX; posX++) {
+            for (int posZ = minZ; posZ < maxZ; posZ++) {
+                final int column = hitBox.indexOf(posX, posZ);
+                if (!hitBox.isEmpty(column) && aboveY > hitBox.getMinY(column) && aboveY < hitBox.getMaxY(column) &&
+                    snapshot.getTypeId(posX, aboveY, posZ) == AIR_ID) {
+                    air.add(posX, aboveY, posZ);
+                }
+            }
+        }
+        for (int posY = level; posY >= minY; posY--) {
+            for (int posX = minX; posX < maxX; posX++) {
+                for (int posZ = minZ; posZ < maxZ; posZ++) {
+                    if (snapshot.getTypeId(posX, posY, posZ) == AIR_ID) air.add(posX, posY, posZ);
+                }
+            }
+        }
+        return new Waterline(level, air.readOnly());
+    }
+
+    /**
+     * Returns true if {@link #scan} would still find the same level for a craft with {@code geometry},
+     * judging by the layers at and right above it only.
+     */
+    public boolean isCurrent(final WorldSnapshot snapshot, final CraftGeometry geometry, final int staticWaterLevel) {
+        if (staticWaterLevel != 0) return this.level == staticWaterLevel;
+        if (this.level == 0) return false;
+        if (this.level > geometry.getMaxY() + 1 || this.level < geometry.getMinY() - 1) return false;
+        return isWaterLayer(snapshot, geometry, this.level) &&
+               (this.level == geometry.getMaxY() + 1 || !isWaterLayer(snapshot, geometry, this.level + 1));
+    }
+
+    /**
+     * Returns true if {@code snapshot} holds every block {@link #scan} reads for a craft with {@code geometry}.
+     */
+    public static boolean canScan(final WorldSnapshot snapshot, final CraftGeometry geometry) {
+        final int maxX = geometry.getMaxX() + 2;
+        final int maxZ = geometry.getMaxZ() + 2;
+        final int maxY = geometry.getMaxY() + 1;
+        for (int x = geometry.getMinX() - 1; ; x = Math.min(x + 16, maxX)) {
+            for (int z = geometry.getMinZ() - 1; ; z = Math.min(z + 16, maxZ)) {
+                for (int y = geometry.getMinY() - 1; ; y = Math.min(y + 16, maxY)) {
+                    if (!snapshot.contains(x, y, z)) return false;
+                    if (y == maxY) break;
+                }
+                if (z == maxZ) break;
+            }
+            if (x == maxX) break;
+        }
+        return true;
+    }
+
+    // the ring of blocks around the craft's borders at posY has more still water than air
+    private static boolean isWaterLayer(final WorldSnapshot snapshot, final CraftGeometry geometry, final int posY) {
+        final int minX = geometry.getMinX();
+        final int minZ = geometry.getMinZ();
+        final int maxX = geometry.getMaxX() + 1;
+        final int maxZ = geometry.getMaxZ() + 1;
+        int balance = 0;
+        for (int posX = minX - 1; posX <= maxX + 1; posX++) {
+            balance += weigh(snapshot.getTypeId(posX, posY, minZ - 1));
+            balance += weigh(snapshot.getTypeId(posX, posY, maxZ + 1));
+        }
+        for (int posZ = minZ; posZ <= maxZ; posZ++) {
+            balance += weigh(snapshot.getTypeId(minX - 1, posY, posZ));
+            balance += weigh(snapshot.getTypeId(maxX + 1, posY, posZ));
+        }
+        return balance > 0;
+    }
+
+    private static int weigh(final int typeId) {
+        if (typeId == STATIONARY_WATER_ID) return 1;
+        if (typeId == AIR_ID) return -1;
+        return 0;
+    }
+}
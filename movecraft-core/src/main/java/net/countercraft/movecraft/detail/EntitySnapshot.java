@@ -0,0 +1,80 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.detail;
+
+import com.alexknvl.shipcraft.math.AABB;
+import com.google.common.collect.ImmutableList;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An entity and where it stood when it was captured. Entities are captured on the main thread so
+ * async tasks never have to read the world's entity list or an entity's position.
+ */
+@Immutable
+public final class EntitySnapshot {
+    @Nonnull private final Entity entity;
+    @Nonnull private final Location location;
+
+    private EntitySnapshot(@Nonnull final Entity entity, @Nonnull final Location location) {
+        this.entity = entity;
+        this.location = location;
+    }
+
+    /**
+     * Captures the entities standing in {@code region} grown by {@code headroom} blocks upwards.
+     * Only the loaded chunks under the region are searched. Must only be called from the main thread.
+     */
+    public static ImmutableList<EntitySnapshot> capture(final World world, final AABB region, final int headroom) {
+        final ImmutableList.Builder<EntitySnapshot> entities = ImmutableList.builder();
+        final int maxY = region.maxY() + headroom;
+        for (int chunkX = region.minX() >> 4; chunkX <= region.maxX() >> 4; chunkX++) {
+            for (int chunkZ = region.minZ() >> 4; chunkZ <= region.maxZ() >> 4; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) continue;
+                final Chunk chunk = world.getChunkAt(chunkX, chunkZ);
+                for (final Entity entity : chunk.getEntities()) {
+                    final Location location = entity.getLocation();
+                    final int x = location.getBlockX();
+                    final int y = location.getBlockY();
+                    final int z = location.getBlockZ();
+                    if (x < region.minX() || x > region.maxX() || z < region.minZ() || z > region.maxZ()) continue;
+                    if (y < region.minY() || y > maxY) continue;
+                    entities.add(new EntitySnapshot(entity, location));
+                }
+            }
+        }
+        return entities.build();
+    }
+
+    @Nonnull public Entity getEntity() {
+        return this.entity;
+    }
+
+    /**
+     * Returns a copy of the location of the entity when it was captured.
+     */
+    @Nonnull public Location getLocation() {
+        return this.location.clone();
+    }
+}
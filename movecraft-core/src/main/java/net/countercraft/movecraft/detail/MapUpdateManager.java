@@ -22,8 +22,11 @@ import com.alexknvl.shipcraft.math.RotationXZ;
 import com.google.common.collect.Sets;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.SignBlock;
+import net.countercraft.movecraft.async.detection.DetectionCache;
 import net.countercraft.movecraft.craft.Craft;
+import net.countercraft.movecraft.craft.PackedBlockSet;
 import net.countercraft.movecraft.utils.BlockUtils;
+import net.countercraft.movecraft.utils.RadixSort;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Effect;
@@ -36,7 +39,6 @@ import org.bukkit.block.CommandBlock;
 import org.bukkit.block.Sign;
 import org.bukkit.craftbukkit.v1_12_R1.CraftChunk;
 import org.bukkit.craftbukkit.v1_12_R1.util.CraftMagicNumbers;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
@@ -63,12 +65,16 @@ public final class MapUpdateManager extends BukkitRunnable {
     private static final Logger LOGGER = Logger.getLogger(MapUpdateManager.class.getSimpleName());
 
     private final Map<World, ArrayList<MapUpdateCommand.MoveBlock>> updates = new HashMap<>();
+    // destinations of the block updates queued in each world, to find conflicting updates
+    private final Map<World, PackedBlockSet> pendingTargets = new HashMap<>();
     private final Map<World, ArrayList<MapUpdateCommand.MoveEntity>> entityUpdates = new HashMap<>();
     private final Map<World, ArrayList<MapUpdateCommand.DropItem>> itemDropUpdates = new HashMap<>();
 
     private final Plugin plugin;
     private final boolean compatibilityMode;
     private final int queueChunkSize;
+    private final WorldSnapshotService worldSnapshots;
+    private final DetectionCache detectionCache;
 
     private static final Set<Material> LIGHT_SOURCES = Sets.immutableEnumSet(
             TORCH, GLOWSTONE, SEA_LANTERN, REDSTONE_LAMP_ON);
@@ -77,10 +83,14 @@ public final class MapUpdateManager extends BukkitRunnable {
             ANVIL, TRAPPED_CHEST, REDSTONE_COMPARATOR_OFF, REDSTONE_COMPARATOR_ON, HOPPER, DROPPER);
 
 
-    public MapUpdateManager(final Plugin plugin, final boolean compatibilityMode, final int queueChunkSize) {
+    public MapUpdateManager(final Plugin plugin, final boolean compatibilityMode, final int queueChunkSize,
+                            final WorldSnapshotService worldSnapshots, final DetectionCache detectionCache)
+    {
         this.plugin = plugin;
         this.compatibilityMode = compatibilityMode;
         this.queueChunkSize = queueChunkSize;
+        this.worldSnapshots = worldSnapshots;
+        this.detectionCache = detectionCache;
     }
 
     private void updateBlock(final MapUpdateCommand.MoveBlock command, final World world,
@@ -412,6 +422,8 @@ Changed for 1.8, and quite possibly wrong:
 
     @Override public void run() {
         if (this.updates.isEmpty()) return;
+        // snapshots taken later in this tick must see the blocks moved below
+        this.worldSnapshots.invalidate();
 
         final long startTime = System.currentTimeMillis();
 
@@ -419,6 +431,12 @@ Changed for 1.8, and quite possibly wrong:
             final World world = entry.getKey();
             if (world != null) {
                 final List<MapUpdateCommand.MoveBlock> updatesInWorld = entry.getValue();
+                if (!this.detectionCache.isEmpty()) {
+                    for (final MapUpdateCommand.MoveBlock command : updatesInWorld) {
+                        final BlockVec vec = command.newBlockLocation;
+                        this.detectionCache.invalidate(world, vec.x(), vec.y(), vec.z());
+                    }
+                }
                 final List<MapUpdateCommand.MoveEntity> entityUpdatesInWorld = this.entityUpdates.get(world);
                 final List<MapUpdateCommand.DropItem> itemDropUpdatesInWorld = this.itemDropUpdates.get(world);
                 final Map<BlockVec, List<MapUpdateCommand.DropItem>> itemMap = new HashMap<>();
@@ -435,48 +453,41 @@ Changed for 1.8, and quite possibly wrong:
                 // Preprocessing
                 final Map<BlockVec, TransferData> dataMap = new HashMap<>();
                 final HashMap<BlockVec, Byte> origLightMap = new HashMap<>();
-                final ArrayList<MapUpdateCommand.MoveBlock> queuedMapUpdateCommands = new ArrayList<>();
-                final ArrayList<Boolean> queuedPlaceDispensers = new ArrayList<>();
+                final MapUpdatePlan plan = new MapUpdatePlan(updatesInWorld.size());
                 for (final MapUpdateCommand.MoveBlock command : updatesInWorld) {
                     final BlockVec vec = command.blockLocation;
 
                     if (vec != null) {
+                        final Block source = world.getBlockAt(vec.x(), vec.y(), vec.z());
+                        final Material sourceType = source.getType();
+
                         // keep track of the light levels that were present before moving the craft
-                        origLightMap.put(vec, world.getBlockAt(vec.x(), vec.y(), vec.z()).getLightLevel());
+                        origLightMap.put(vec, source.getLightLevel());
 
                         // keep track of block data for later reconstruction
-                        final TransferData blockDataPacket = this.getBlockDataPacket(
-                                world.getBlockAt(vec.x(), vec.y(), vec.z()).getState(), command.rotation);
+                        final TransferData blockDataPacket = this.getBlockDataPacket(source.getState(), command.rotation);
                         if (blockDataPacket != null) {
                             dataMap.put(command.newBlockLocation, blockDataPacket);
                         }
 
                         // Remove dispensers and replace them with half slabs to prevent them firing
                         // during reconstruction.
-                        if (world.getBlockAt(vec.x(), vec.y(), vec.z()).getType() == Material.DISPENSER) {
-                            final MapUpdateCommand.MoveBlock blankCommand =
-                                    new MapUpdateCommand.MoveBlock(command.blockLocation, Material.DISPENSER, command.data.getData(), command.craft);
-                            // if(compatibilityMode) {
-                            queuedMapUpdateCommands.add(blankCommand);
-                            queuedPlaceDispensers.add(false);
-                            // } else updateBlock(blankCommand, world, dataMap, nativeChunks, chunks, origLightMap, false);
+                        if (sourceType == Material.DISPENSER) {
+                            plan.addBlank(new MapUpdateCommand.MoveBlock(command.blockLocation, Material.DISPENSER,
+                                                                         command.data.getData(), command.craft));
                         }
 
                         // Remove redstone blocks and replace them with stone to prevent redstone activation
                         // during reconstruction.
-                        if (world.getBlockAt(vec.x(), vec.y(), vec.z()).getType() == Material.REDSTONE_BLOCK) {
-                            final MapUpdateCommand.MoveBlock blankCommand =
-                                    new MapUpdateCommand.MoveBlock(command.blockLocation, Material.STONE, command.craft);
-                            // if(compatibilityMode) {
-                            queuedMapUpdateCommands.add(blankCommand);
-                            queuedPlaceDispensers.add(false);
-                            // } else updateBlock(blankCommand, world, dataMap, nativeChunks, chunks, origLightMap, false);
+                        if (sourceType == Material.REDSTONE_BLOCK) {
+                            plan.addBlank(new MapUpdateCommand.MoveBlock(command.blockLocation, Material.STONE,
+                                                                         command.craft));
                         }
 
                         // Remove water and lava blocks and replace them with stone to prevent spillage
                         // during reconstruction.
-                        if (world.getBlockAt(vec.x(), vec.y(), vec.z()).getTypeId() >= 8 &&
-                            world.getBlockAt(vec.x(), vec.y(), vec.z()).getTypeId() <= 11) {
+                        if (sourceType == Material.WATER || sourceType == Material.STATIONARY_WATER ||
+                            sourceType == Material.LAVA || sourceType == Material.STATIONARY_LAVA) {
                             final MapUpdateCommand.MoveBlock blankCommand =
                                     new MapUpdateCommand.MoveBlock(command.blockLocation, Material.AIR, command.craft);
                             this.updateBlock(blankCommand, world, dataMap, nativeChunks, chunks, origLightMap, false);
@@ -521,125 +532,25 @@ Changed for 1.8, and quite possibly wrong:
                     }
                 }
 
-                // Place any blocks that replace "fragiles", other than other fragiles
+                // Sort every block into the phase it is placed in, reading what its destination holds now
                 for (final MapUpdateCommand.MoveBlock command : updatesInWorld) {
-                    if (true) { // command.typeID >= 0
-                        final Material prevType =
-                                world.getBlockAt(command.newBlockLocation.x(), command.newBlockLocation.y(),
-                                                 command.newBlockLocation.z()).getType();
-                        final boolean prevIsFragile = BlockUtils.FRAGILE_BLOCKS.contains(prevType);
-                        final boolean isFragile = BlockUtils.FRAGILE_BLOCKS.contains(command.data.getItemType());
-
-                        if (prevIsFragile && (!isFragile)) {
-                            // if(compatibilityMode) {
-                            queuedMapUpdateCommands.add(command);
-                            queuedPlaceDispensers.add(false);
-                            // } else updateBlock(command, world, dataMap, nativeChunks, chunks, origLightMap, false);
-                        }
-                        if (prevIsFragile && isFragile) {
-                            final MapUpdateCommand.MoveBlock blankCommand = new MapUpdateCommand.MoveBlock(command.newBlockLocation, Material.AIR, command.craft);
-                            // if(compatibilityMode) {
-                            queuedMapUpdateCommands.add(blankCommand);
-                            queuedPlaceDispensers.add(false);
-                            // } else updateBlock(blankCommand, world, dataMap, nativeChunks, chunks, origLightMap, false);
-                        }
-                    }
-                }
-
-                // Perform core block updates, don't do "fragiles" yet. Don't do Dispensers or air yet either
-                for (final MapUpdateCommand.MoveBlock command : updatesInWorld) {
-                    final boolean isFragile = BlockUtils.FRAGILE_BLOCKS.contains(command.data.getItemType());
-
-                    if (!isFragile) {
-                        // a TypeID less than 0 indicates an explosion
-                        if (false) {
-                            /*if (command.typeID < -10) { // don't bother with tiny explosions
-                                float explosionPower = command.typeID;
-                                explosionPower = 0.0F - explosionPower / 100.0F;
-                                final Location loc = new Location(world, command.newBlockLocation.x() + 0.5,
-                                                                  command.newBlockLocation.y() + 0.5,
-                                                                  command.newBlockLocation.z());
-                                this.createExplosion(loc, explosionPower);
-                            }*/
-                        } else {
-                            //							if(compatibilityMode) {
-                            queuedMapUpdateCommands.add(command);
-                            queuedPlaceDispensers.add(false);
-                            //							} else
-                            //								updateBlock(command, world, dataMap, nativeChunks, chunks,
-                            // origLightMap, false);
-                        }
-                    }
+                    final BlockVec target = command.newBlockLocation;
+                    plan.add(command, world.getBlockAt(target.x(), target.y(), target.z()).getType());
 
                     // If the block you just updated had any entities on it, move them.
                     // If they are moving, add in their motion to the craft motion.
-                    if (entityMap.containsKey(command.newBlockLocation) && !this.compatibilityMode) {
-                        final List<MapUpdateCommand.MoveEntity> mapUpdateList = entityMap.get(command.newBlockLocation);
-                        for (final MapUpdateCommand.MoveEntity entityUpdate : mapUpdateList) {
-                            final Entity entity = entityUpdate.entity;
-
-                            entity.teleport(entityUpdate.newLocation);
+                    if (!entityMap.isEmpty() && !this.compatibilityMode) {
+                        final List<MapUpdateCommand.MoveEntity> mapUpdateList = entityMap.remove(target);
+                        if (mapUpdateList != null) {
+                            for (final MapUpdateCommand.MoveEntity entityUpdate : mapUpdateList) {
+                                entityUpdate.entity.teleport(entityUpdate.newLocation);
+                            }
                         }
-                        entityMap.remove(command.newBlockLocation);
-                    }
-                }
-
-                // Fix redstone and other "fragiles"
-                for (final MapUpdateCommand.MoveBlock command : updatesInWorld) {
-                    final boolean isFragile = BlockUtils.FRAGILE_BLOCKS.contains(command.data.getItemType());
-                    if (isFragile) {
-                        // if(compatibilityMode) {
-                        queuedMapUpdateCommands.add(command);
-                        queuedPlaceDispensers.add(false);
-                        // } else updateBlock(command, world, dataMap, nativeChunks, chunks, origLightMap, false);
-                    }
-                }
-
-                for (final MapUpdateCommand.MoveBlock command : updatesInWorld) {
-                    // Put Dispensers back in now that the ship is reconstructed
-                    final Material type = command.data.getItemType();
-                    if (type == Material.DISPENSER || type == Material.REDSTONE_BLOCK) {
-                        // if(compatibilityMode) {
-                        queuedMapUpdateCommands.add(command);
-                        queuedPlaceDispensers.add(true);
-                        // } else updateBlock(command, world, dataMap, nativeChunks, chunks, origLightMap, true);
-                    }
-                }
-
-				/*for ( MapUpdateCommand i : updatesInWorld ) {
-                    if(i!=null) {
-						// Place air
-						if(i.getTypeID()==0) {
-							if(compatibilityMode) {
-								queuedMapUpdateCommands.add(i);
-								queuedPlaceDispensers.add(true);
-							} else 
-								updateBlock(i, world, dataMap, nativeChunks, chunks, origLightMap, true);
-						}
-						
-					}
-				}*/
-
-                for (final MapUpdateCommand.MoveBlock command : updatesInWorld) {
-                    // Place beds
-                    if (command.data.getItemType() == Material.BED_BLOCK) {
-                        // if(compatibilityMode) {
-                        queuedMapUpdateCommands.add(command);
-                        queuedPlaceDispensers.add(true);
-                        // } else updateBlock(command, world, dataMap, nativeChunks, chunks, origLightMap, true);
-                    }
-                }
-
-                for (final MapUpdateCommand.MoveBlock command : updatesInWorld) {
-                    // Place fragiles again, in case they got screwed up the first time
-                    final boolean isFragile = BlockUtils.FRAGILE_BLOCKS.contains(command.data.getItemType());
-                    if (isFragile) {
-                        // if(compatibilityMode) {
-                        queuedMapUpdateCommands.add(command);
-                        queuedPlaceDispensers.add(true);
-                        // } else updateBlock(command, world, dataMap, nativeChunks, chunks, origLightMap, true);
                     }
                 }
+                final ArrayList<MapUpdateCommand.MoveBlock> queuedMapUpdateCommands = new ArrayList<>();
+                final ArrayList<Boolean> queuedPlaceDispensers = new ArrayList<>();
+                plan.drainTo(queuedMapUpdateCommands, queuedPlaceDispensers);
 
 				// move entities again
                 /*if(!compatibilityMode)
@@ -747,6 +658,7 @@ Changed for 1.8, and quite possibly wrong:
         }
 
         this.updates.clear();
+        this.pendingTargets.clear();
         this.entityUpdates.clear();
         this.itemDropUpdates.clear();
     }
@@ -757,52 +669,40 @@ Changed for 1.8, and quite possibly wrong:
                                   final MapUpdateCommand.DropItem[] iUpdates)
     {
         ArrayList<MapUpdateCommand.MoveBlock> get = this.updates.get(world);
-        if (get != null) {
-            this.updates.remove(world);
-        } else {
+        if (get == null) {
             get = new ArrayList<>();
         }
 
-        Integer miny = Integer.MAX_VALUE;
-        Integer maxy = Integer.MIN_VALUE;
         if (mapUpdates != null) {
-            Integer minx = Integer.MAX_VALUE;
-            Integer maxx = Integer.MIN_VALUE;
-            Integer minz = Integer.MAX_VALUE;
-            Integer maxz = Integer.MIN_VALUE;
-            //final Map<BlockVec, MapUpdateCommand> sortRef = new HashMap<>();
+            final PackedBlockSet targets = this.pendingTargets.computeIfAbsent(world, w -> new PackedBlockSet());
+            int miny = Integer.MAX_VALUE;
+            int maxy = Integer.MIN_VALUE;
+            int count = 0;
             for (final MapUpdateCommand.MoveBlock command : mapUpdates) {
-                if (MapUpdateManager.areIntersecting(get, command)) {
+                if (command != null && targets.contains(command.newBlockLocation)) {
                     return true;
                 }
                 if (command != null) {
-                    if (command.newBlockLocation.x() < minx) minx = command.newBlockLocation.x();
                     if (command.newBlockLocation.y() < miny) miny = command.newBlockLocation.y();
-                    if (command.newBlockLocation.z() < minz) minz = command.newBlockLocation.z();
-                    if (command.newBlockLocation.x() > maxx) maxx = command.newBlockLocation.x();
                     if (command.newBlockLocation.y() > maxy) maxy = command.newBlockLocation.y();
-                    if (command.newBlockLocation.z() > maxz) maxz = command.newBlockLocation.z();
-                    //sortRef.put(command.newBlockLocation, command);
+                    count++;
                 }
             }
-        }
 
-        List<MapUpdateCommand.MoveBlock> tempSet = null;
-        if (mapUpdates != null) {
-            tempSet = new ArrayList<>();//(Arrays.asList(mapUpdates));
-            // Sort the blocks from the bottom up to minimize lower altitude block updates
-            for (int posy = maxy; posy >= miny; posy--) {
-                for (final MapUpdateCommand.MoveBlock test : mapUpdates) {
-                    if (test.newBlockLocation.y() == posy) {
-                        tempSet.add(test);
-                    }
-                }
+            // Sort the blocks from the top down, keeping the order of blocks at the same height
+            final long[] keys = new long[count];
+            count = 0;
+            for (int i = 0; i < mapUpdates.length; i++) {
+                if (mapUpdates[i] == null) continue;
+                keys[count++] = ((long) (maxy - mapUpdates[i].newBlockLocation.y()) << 32) | i;
+            }
+            if (count > 0) RadixSort.sort(keys, count, 32 + RadixSort.bitsFor(maxy - miny));
+            get.ensureCapacity(get.size() + count);
+            for (final long key : keys) {
+                get.add(mapUpdates[(int) key]);
+                targets.add(mapUpdates[(int) key].newBlockLocation);
             }
-        } else {
-            tempSet = new ArrayList<>();
         }
-
-        get.addAll(tempSet);
         this.updates.put(world, get);
 
         //now do entity updates
@@ -824,7 +724,7 @@ Changed for 1.8, and quite possibly wrong:
         if (iUpdates != null) {
             ArrayList<MapUpdateCommand.DropItem> iGet = this.itemDropUpdates.get(world);
             if (iGet != null) {
-                this.entityUpdates.remove(world);
+                this.itemDropUpdates.remove(world);
             } else {
                 iGet = new ArrayList<>();
             }
@@ -838,16 +738,6 @@ Changed for 1.8, and quite possibly wrong:
         return false;
     }
 
-    private static boolean areIntersecting(final Iterable<MapUpdateCommand.MoveBlock> set, final MapUpdateCommand.MoveBlock c) {
-        for (final MapUpdateCommand.MoveBlock command : set) {
-            if (command != null && c != null) if (command.newBlockLocation.equals(c.newBlockLocation)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     private TransferData getBlockDataPacket(final BlockState state, final RotationXZ rotation) {
         if (BlockUtils.blockHasNoData(state.getType())) {
             return null;
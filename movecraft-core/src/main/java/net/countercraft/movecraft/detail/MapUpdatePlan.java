@@ -0,0 +1,125 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.detail;
+
+import net.countercraft.movecraft.utils.BlockUtils;
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Orders the block updates of one world into the phases they are placed in. Every update is
+ * classified once, and the queue is emitted phase by phase in the order the updates were added:
+ * <ol>
+ *     <li>blanks placed over dispensers and redstone blocks before they move,</li>
+ *     <li>blocks that replace fragiles, and air over fragiles replaced by fragiles,</li>
+ *     <li>every block that isn't fragile,</li>
+ *     <li>fragiles,</li>
+ *     <li>dispensers and redstone blocks, with physics,</li>
+ *     <li>beds, with physics,</li>
+ *     <li>fragiles again with physics, in case the first placement broke.</li>
+ * </ol>
+ */
+final class MapUpdatePlan {
+    private static final byte FRAGILE = 1;
+    private static final byte PLACED_LAST = 2;
+    private static final byte BED = 4;
+    // Material ordinal -> flags
+    private static final byte[] FLAGS = new byte[Material.values().length];
+
+    static {
+        for (final Material type : BlockUtils.FRAGILE_BLOCKS) {
+            FLAGS[type.ordinal()] |= FRAGILE;
+        }
+        FLAGS[Material.DISPENSER.ordinal()] |= PLACED_LAST;
+        FLAGS[Material.REDSTONE_BLOCK.ordinal()] |= PLACED_LAST;
+        FLAGS[Material.BED_BLOCK.ordinal()] |= BED;
+    }
+
+    private final List<MapUpdateCommand.MoveBlock> blanks = new ArrayList<>();
+    private final List<MapUpdateCommand.MoveBlock> fragileReplacements = new ArrayList<>();
+    private final List<MapUpdateCommand.MoveBlock> core;
+    private final List<MapUpdateCommand.MoveBlock> fragiles = new ArrayList<>();
+    private final List<MapUpdateCommand.MoveBlock> placedLast = new ArrayList<>();
+    private final List<MapUpdateCommand.MoveBlock> beds = new ArrayList<>();
+
+    MapUpdatePlan(final int expectedSize) {
+        this.core = new ArrayList<>(expectedSize);
+    }
+
+    private static boolean isFragile(final Material type) {
+        return (FLAGS[type.ordinal()] & FRAGILE) != 0;
+    }
+
+    /**
+     * Adds a block placed over the source of an update before anything moves.
+     */
+    void addBlank(final MapUpdateCommand.MoveBlock blank) {
+        this.blanks.add(blank);
+    }
+
+    /**
+     * Adds {@code command}, whose destination currently holds a block of type {@code previous}.
+     */
+    void add(final MapUpdateCommand.MoveBlock command, final Material previous) {
+        final byte flags = FLAGS[command.data.getItemType().ordinal()];
+        final boolean fragile = (flags & FRAGILE) != 0;
+        if (isFragile(previous)) {
+            this.fragileReplacements.add(fragile ?
+                                         new MapUpdateCommand.MoveBlock(command.newBlockLocation, Material.AIR,
+                                                                        command.craft) :
+                                         command);
+        }
+        if (fragile) {
+            this.fragiles.add(command);
+        } else {
+            this.core.add(command);
+        }
+        if ((flags & PLACED_LAST) != 0) this.placedLast.add(command);
+        if ((flags & BED) != 0) this.beds.add(command);
+    }
+
+    /**
+     * Appends the planned updates to {@code commands} in the order they are placed, and whether
+     * each is placed with physics to {@code physics}.
+     */
+    void drainTo(final ArrayList<MapUpdateCommand.MoveBlock> commands, final ArrayList<Boolean> physics) {
+        final int size = this.blanks.size() + this.fragileReplacements.size() + this.core.size() +
+                         2 * this.fragiles.size() + this.placedLast.size() + this.beds.size();
+        commands.ensureCapacity(commands.size() + size);
+        physics.ensureCapacity(physics.size() + size);
+        drain(this.blanks, false, commands, physics);
+        drain(this.fragileReplacements, false, commands, physics);
+        drain(this.core, false, commands, physics);
+        drain(this.fragiles, false, commands, physics);
+        drain(this.placedLast, true, commands, physics);
+        drain(this.beds, true, commands, physics);
+        drain(this.fragiles, true, commands, physics);
+    }
+
+    private static void drain(final List<MapUpdateCommand.MoveBlock> phase, final boolean withPhysics,
+                              final ArrayList<MapUpdateCommand.MoveBlock> commands, final ArrayList<Boolean> physics)
+    {
+        for (final MapUpdateCommand.MoveBlock command : phase) {
+            commands.add(command);
+            physics.add(withPhysics);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.detail;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.material.MaterialData;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Read-only copy of the block types and data values in a region of a world, taken on the main
+ * thread by {@link WorldSnapshotService} and safe to read from any thread afterwards.
+ *
+ * The region is a set of whole chunk sections. Reading a position outside of it throws
+ * {@link IndexOutOfBoundsException}, except above and below the world, which always reads as air.
+ */
+@Immutable
+public final class WorldSnapshot {
+    private final World world;
+    private final int minChunkX, minChunkZ;
+    private final int sizeX, sizeZ;
+    private final int minSection, sectionCount;
+    // (typeId << 4 | data) per block, indexed by section then by y << 8 | z << 4 | x; null if not captured
+    private final char[][] sections;
+    private final WorldSnapshotService.Section[] retained;
+
+    WorldSnapshot(final World world, final int minChunkX, final int minChunkZ, final int sizeX, final int sizeZ,
+                  final int minSection, final int sectionCount, final char[][] sections,
+                  final WorldSnapshotService.Section[] retained)
+    {
+        this.world = world;
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.sizeX = sizeX;
+        this.sizeZ = sizeZ;
+        this.minSection = minSection;
+        this.sectionCount = sectionCount;
+        this.sections = sections;
+        this.retained = retained;
+    }
+
+    WorldSnapshotService.Section[] getRetained() {
+        return this.retained;
+    }
+
+    private char[] sectionAt(final int x, final int y, final int z) {
+        return this.getSection(x >> 4, y >> 4, z >> 4);
+    }
+
+    /**
+     * Returns the blocks of the section at {@code chunkX, sectionY, chunkZ}, or null if it wasn't
+     * captured.
+     */
+    char[] getSection(final int chunkX, final int sectionY, final int chunkZ) {
+        final int column = chunkX - this.minChunkX;
+        final int row = chunkZ - this.minChunkZ;
+        final int section = sectionY - this.minSection;
+        if (column < 0 || column >= this.sizeX || row < 0 || row >= this.sizeZ ||
+            section < 0 || section >= this.sectionCount) {
+            return null;
+        }
+        return this.sections[(column * this.sizeZ + row) * this.sectionCount + section];
+    }
+
+    public World getWorld() {
+        return this.world;
+    }
+
+    /**
+     * Returns true if the block at {@code x, y, z} can be read from this snapshot.
+     */
+    public boolean contains(final int x, final int y, final int z) {
+        return y < 0 || y > 255 || this.sectionAt(x, y, z) != null;
+    }
+
+    /**
+     * Returns the type id of the block in the upper 12 bits and its data value in the lower 4.
+     */
+    public int getBlock(final int x, final int y, final int z) {
+        if (y < 0 || y > 255) return 0;
+        final char[] section = this.sectionAt(x, y, z);
+        if (section == null) {
+            throw new IndexOutOfBoundsException(String.format("%d,%d,%d is outside of the snapshot", x, y, z));
+        }
+        return section[((y & 15) << 8) | ((z & 15) << 4) | (x & 15)];
+    }
+
+    public int getTypeId(final int x, final int y, final int z) {
+        return this.getBlock(x, y, z) >>> 4;
+    }
+
+    public byte getData(final int x, final int y, final int z) {
+        return (byte) (this.getBlock(x, y, z) & 15);
+    }
+
+    @SuppressWarnings("deprecation")
+    public Material getType(final int x, final int y, final int z) {
+        return Material.getMaterial(this.getTypeId(x, y, z));
+    }
+
+    /**
+     * Returns the same {@link MaterialData} a {@link org.bukkit.block.BlockState} of the block
+     * would, without touching the world.
+     */
+    @SuppressWarnings("deprecation")
+    public MaterialData getMaterialData(final int x, final int y, final int z) {
+        final int block = this.getBlock(x, y, z);
+        final Material material = Material.getMaterial(block >>> 4);
+        if (material == null) return new MaterialData(block >>> 4, (byte) (block & 15));
+        return material.getNewData((byte) (block & 15));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.detail;
+
+import com.alexknvl.shipcraft.math.AABB;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+import net.minecraft.server.v1_12_R1.ChunkSection;
+import net.minecraft.server.v1_12_R1.NibbleArray;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.craftbukkit.v1_12_R1.CraftChunk;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes {@link WorldSnapshot}s for async tasks. Must only be used from the main thread.
+ *
+ * Only the chunk sections overlapping the requested region are copied, into pooled arrays that
+ * are recycled once every snapshot using them has been released. Sections copied since the last
+ * call to {@link #invalidate()} are shared between snapshots, so tasks started in the same tick
+ * over the same chunks copy them once.
+ */
+public final class WorldSnapshotService {
+    private static final int SECTION_VOLUME = 16 * 16 * 16;
+    private static final int MAX_POOLED_SECTIONS = 1024;
+    // shared by every section that holds only air, never pooled
+    private static final Section AIR = new Section();
+
+    static final class Section {
+        final char[] blocks = new char[SECTION_VOLUME];
+        int references;
+    }
+
+    private final boolean compatibilityMode;
+    private final Map<World, Map<Long, Section>> sectionCache = new HashMap<>();
+    private final ArrayDeque<Section> pool = new ArrayDeque<>();
+    private final byte[] exportIds = new byte[SECTION_VOLUME];
+    private final NibbleArray exportData;
+
+    public WorldSnapshotService(final boolean compatibilityMode) {
+        this.compatibilityMode = compatibilityMode;
+        this.exportData = compatibilityMode ? null : new NibbleArray();
+    }
+
+    /**
+     * Copies every loaded chunk section that overlaps {@code region} grown by {@code margin}
+     * blocks on each side. Sections of unloaded chunks are left out of the snapshot.
+     */
+    public WorldSnapshot capture(final World world, final AABB region, final int margin) {
+        return this.capture(world, region, margin, null);
+    }
+
+    /**
+     * Copies the sections of {@code region} grown by {@code margin} like
+     * {@link #capture(World, AABB, int)}, but shares the sections {@code previous} holds instead of
+     * copying them again, so a grown region only copies the sections it adds. {@code previous}
+     * must not have been released yet.
+     */
+    public WorldSnapshot extend(final WorldSnapshot previous, final AABB region, final int margin) {
+        return this.capture(previous.getWorld(), region, margin, previous);
+    }
+
+    private WorldSnapshot capture(final World world, final AABB region, final int margin,
+                                  @Nullable final WorldSnapshot previous) {
+        final int minChunkX = (region.minX() - margin) >> 4;
+        final int minChunkZ = (region.minZ() - margin) >> 4;
+        final int maxChunkX = (region.maxX() + margin) >> 4;
+        final int maxChunkZ = (region.maxZ() + margin) >> 4;
+        final int minSection = Math.max(region.minY() - margin, 0) >> 4;
+        final int maxSection = Math.min(region.maxY() + margin, 255) >> 4;
+        final int sizeX = maxChunkX - minChunkX + 1;
+        final int sizeZ = maxChunkZ - minChunkZ + 1;
+        final int sectionCount = Math.max(maxSection - minSection + 1, 0);
+
+        final Map<Long, Section> cache = this.sectionCache.computeIfAbsent(world, w -> new HashMap<>());
+        final char[][] sections = new char[sizeX * sizeZ * sectionCount][];
+        final List<Section> retained = new ArrayList<>();
+        final Map<char[], Section> shared = new IdentityHashMap<>();
+        if (previous != null) {
+            shared.put(AIR.blocks, AIR);
+            for (final Section section : previous.getRetained()) shared.put(section.blocks, section);
+        }
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                if (!world.isChunkLoaded(chunkX, chunkZ)) continue;
+
+                Chunk chunk = null;
+                ChunkSnapshot chunkSnapshot = null;
+                final int column = ((chunkX - minChunkX) * sizeZ + (chunkZ - minChunkZ)) * sectionCount;
+                for (int sectionY = minSection; sectionY <= maxSection; sectionY++) {
+                    final long key = PackedBlockPos.pack(chunkX, sectionY, chunkZ);
+                    final char[] previousBlocks =
+                            previous == null ? null : previous.getSection(chunkX, sectionY, chunkZ);
+                    Section section = previousBlocks == null ? cache.get(key) : shared.get(previousBlocks);
+                    if (section == null) {
+                        if (chunk == null) chunk = world.getChunkAt(chunkX, chunkZ);
+                        if (this.compatibilityMode) {
+                            if (chunkSnapshot == null) chunkSnapshot = chunk.getChunkSnapshot(false, false, false);
+                            section = this.copySection(chunkSnapshot, sectionY);
+                        } else {
+                            section = this.copySection(chunk, sectionY);
+                        }
+                        cache.put(key, section);
+                        if (section != AIR) section.references++;
+                    }
+                    if (section != AIR) {
+                        section.references++;
+                        retained.add(section);
+                    }
+                    sections[column + sectionY - minSection] = section.blocks;
+                }
+            }
+        }
+        return new WorldSnapshot(world, minChunkX, minChunkZ, sizeX, sizeZ, minSection, sectionCount, sections,
+                                 retained.toArray(new Section[retained.size()]));
+    }
+
+    /**
+     * Returns a snapshot that holds no blocks, for tasks that have nothing to read.
+     */
+    public WorldSnapshot empty(final World world) {
+        return new WorldSnapshot(world, 0, 0, 0, 0, 0, 0, new char[0][], new Section[0]);
+    }
+
+    private Section copySection(final Chunk chunk, final int sectionY) {
+        final ChunkSection nativeSection = ((CraftChunk) chunk).getHandle().getSections()[sectionY];
+        if (nativeSection == null || nativeSection.a()) return AIR;
+
+        final NibbleArray extension = nativeSection.getBlocks().exportData(this.exportIds, this.exportData);
+        final byte[] data = this.exportData.asBytes();
+        final byte[] extensionData = extension == null ? null : extension.asBytes();
+        final Section section = this.allocate();
+        for (int i = 0; i < SECTION_VOLUME; i++) {
+            final int shift = (i & 1) << 2;
+            int block = ((this.exportIds[i] & 0xFF) << 4) | ((data[i >> 1] >> shift) & 15);
+            if (extensionData != null) block |= ((extensionData[i >> 1] >> shift) & 15) << 12;
+            section.blocks[i] = (char) block;
+        }
+        return section;
+    }
+
+    @SuppressWarnings("deprecation")
+    private Section copySection(final ChunkSnapshot chunkSnapshot, final int sectionY) {
+        if (chunkSnapshot.isSectionEmpty(sectionY)) return AIR;
+
+        final Section section = this.allocate();
+        int i = 0;
+        for (int y = sectionY << 4; y < (sectionY + 1) << 4; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    section.blocks[i++] = (char) ((chunkSnapshot.getBlockTypeId(x, y, z) << 4) |
+                                                  chunkSnapshot.getBlockData(x, y, z));
+                }
+            }
+        }
+        return section;
+    }
+
+    private Section allocate() {
+        final Section section = this.pool.poll();
+        return section == null ? new Section() : section;
+    }
+
+    private void unreference(final Section section) {
+        section.references--;
+        if (section.references == 0 && this.pool.size() < MAX_POOLED_SECTIONS) {
+            this.pool.push(section);
+        }
+    }
+
+    /**
+     * Gives the arrays of a snapshot back to the pool. The snapshot must not be read afterwards.
+     */
+    public void release(final WorldSnapshot snapshot) {
+        for (final Section section : snapshot.getRetained()) {
+            this.unreference(section);
+        }
+    }
+
+    /**
+     * Drops the shared sections, so the next snapshots copy the world again. Called whenever
+     * Movecraft writes blocks and at the start of every tick.
+     */
+    public void invalidate() {
+        for (final Map<Long, Section> cache : this.sectionCache.values()) {
+            for (final Section section : cache.values()) {
+                if (section != AIR) this.unreference(section);
+            }
+        }
+        this.sectionCache.clear();
+    }
+}
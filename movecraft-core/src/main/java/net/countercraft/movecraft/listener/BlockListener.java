@@ -53,7 +53,6 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.Iterator;
-import java.util.Set;
 
 public class BlockListener implements Listener {
     private final Movecraft plugin;
@@ -75,8 +74,7 @@ public class BlockListener implements Listener {
             final Block below = event.getBlock().getRelative(BlockFace.DOWN);
             final BlockVec mloc = new BlockVec(below.getX(), below.getY(), below.getZ());
             final boolean blockInCraft = false;
-            final Set<Craft> crafts = this.craftManager.getCraftsInWorld(info.getWorld());
-            for (final Craft craft : crafts) {
+            for (final Craft craft : this.craftManager.getCraftsInChunk(info.getWorld(), mloc.x() >> 4, mloc.z() >> 4)) {
                 if (craft != null && craft.isCraftBlock(mloc)) {
                     event.setCancelled(true);
                     return;
@@ -93,11 +91,11 @@ public class BlockListener implements Listener {
         if (this.settings.ProtectPilotedCrafts) {
             final BlockVec mloc = BlockVec.from(event.getBlock().getLocation());
             boolean blockInCraft = false;
-            for (final Craft craft : this.craftManager.getCraftsInWorld(event.getBlock().getWorld())) {
-                if (craft != null) {
-                    for (final BlockVec tloc : craft.getBlockList()) {
-                        if (tloc.equals(mloc)) blockInCraft = true;
-                    }
+            for (final Craft craft : this.craftManager.getCraftsInChunk(event.getBlock().getWorld(), mloc.x() >> 4,
+                                                                        mloc.z() >> 4)) {
+                if (craft != null && craft.isCraftBlock(mloc)) {
+                    blockInCraft = true;
+                    break;
                 }
             }
             if (blockInCraft) {
@@ -113,10 +111,10 @@ public class BlockListener implements Listener {
         if (event.isCancelled()) {
             return;
         }
-        for (final Craft tcraft : this.craftManager.getCraftsInWorld(event.getLocation().getWorld())) {
-            if ((!tcraft.isNotProcessing()) && MathUtils
-                    .playerIsWithinBoundingPolygon(tcraft.getHitBox(), tcraft.getMinX(), tcraft.getMinZ(),
-                                                   BlockVec.from(event.getLocation()))) {
+        final BlockVec mloc = BlockVec.from(event.getLocation());
+        for (final Craft tcraft : this.craftManager.getCraftsInChunk(event.getLocation().getWorld(), mloc.x() >> 4,
+                                                                     mloc.z() >> 4)) {
+            if ((!tcraft.isNotProcessing()) && MathUtils.playerIsWithinBoundingPolygon(tcraft.getHitBox(), mloc)) {
                 event.setCancelled(true);
                 return;
             }
@@ -131,10 +129,10 @@ public class BlockListener implements Listener {
         }
         final Block block = event.getToBlock();
         if (block.getType() == Material.WATER) {
-            for (final Craft craft : this.craftManager.getCraftsInWorld(block.getWorld())) {
+            for (final Craft craft : this.craftManager.getCraftsInChunk(block.getWorld(), block.getX() >> 4,
+                                                                        block.getZ() >> 4)) {
                 if ((!craft.isNotProcessing()) && MathUtils
-                        .playerIsWithinBoundingPolygon(craft.getHitBox(), craft.getMinX(), craft.getMinZ(),
-                                                       BlockVec.from(block.getLocation()))) {
+                        .playerIsWithinBoundingPolygon(craft.getHitBox(), BlockVec.from(block.getLocation()))) {
                     event.setCancelled(true);
                     return;
                 }
@@ -149,10 +147,9 @@ public class BlockListener implements Listener {
             return;
         }
         final Block block = event.getBlock();
-        for (final Craft tcraft : this.craftManager.getCraftsInWorld(block.getWorld())) {
+        for (final Craft tcraft : this.craftManager.getCraftsInChunk(block.getWorld(), block.getX() >> 4, block.getZ() >> 4)) {
             if ((!tcraft.isNotProcessing()) && MathUtils
-                    .playerIsWithinBoundingPolygon(tcraft.getHitBox(), tcraft.getMinX(), tcraft.getMinZ(),
-                                                   BlockVec.from(block.getLocation()))) {
+                    .playerIsWithinBoundingPolygon(tcraft.getHitBox(), BlockVec.from(block.getLocation()))) {
                 if (BlockUtils.FRAGILE_BLOCKS.contains(block.getType())) {
 //						BlockFace face = ((Attachable) block).getAttachedFace();
 //					    if (!event.getBlock().getRelative(face).getType().isSolid()) {
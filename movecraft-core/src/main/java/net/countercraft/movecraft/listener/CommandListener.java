@@ -27,6 +27,7 @@ import net.countercraft.movecraft.craft.Craft;
 import net.countercraft.movecraft.craft.CraftManager;
 import net.countercraft.movecraft.craft.CraftType;
 import net.countercraft.movecraft.localisation.I18nSupport;
+import net.countercraft.movecraft.utils.ColumnHitBox;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -54,68 +55,18 @@ public class CommandListener implements CommandExecutor {
     }
 
     private static Location getCraftTeleportPoint(final Craft craft, final World world) {
-        int maxDX = 0;
-        int maxDZ = 0;
-        int maxY = 0;
-        int minY = 32767;
-        for (final int[][] i1 : craft.getHitBox()) {
-            maxDX++;
-            if (i1 != null) {
-                int indexZ = 0;
-                for (final int[] i2 : i1) {
-                    indexZ++;
-                    if (i2 != null) {
-                        if (i2[0] < minY) {
-                            minY = i2[0];
-                        }
-                    }
-                    if (i2 != null) {
-                        if (i2[1] > maxY) {
-                            maxY = i2[1];
-                        }
-                    }
-                }
-                if (indexZ > maxDZ) {
-                    maxDZ = indexZ;
-                }
-            }
-        }
-        final double telX = craft.getMinX() + (maxDX / 2.0);
-        final double telZ = craft.getMinZ() + (maxDZ / 2.0);
-        final double telY = maxY + 1.0;
+        final ColumnHitBox hitBox = craft.getHitBox();
+        final double telX = craft.getMinX() + (hitBox.getSizeX() / 2.0);
+        final double telZ = craft.getMinZ() + (hitBox.getSizeZ() / 2.0);
+        final double telY = craft.getMaxY() + 1.0;
         return new Location(world, telX, telY, telZ);
     }
 
     private static BlockVec getCraftMidPoint(final Craft craft) {
-        int maxDX = 0;
-        int maxDZ = 0;
-        int maxY = 0;
-        int minY = 32767;
-        for (final int[][] i1 : craft.getHitBox()) {
-            maxDX++;
-            if (i1 != null) {
-                int indexZ = 0;
-                for (final int[] i2 : i1) {
-                    indexZ++;
-                    if (i2 != null) {
-                        if (i2[0] < minY) {
-                            minY = i2[0];
-                        }
-                    }
-                    if (i2 != null) {
-                        if (i2[1] < maxY) {
-                            maxY = i2[1];
-                        }
-                    }
-                }
-                if (indexZ > maxDZ) {
-                    maxDZ = indexZ;
-                }
-            }
-        }
-        final int midX = craft.getMinX() + (maxDX / 2);
-        final int midY = (minY + maxY) / 2;
-        final int midZ = craft.getMinZ() + (maxDZ / 2);
+        final ColumnHitBox hitBox = craft.getHitBox();
+        final int midX = craft.getMinX() + (hitBox.getSizeX() / 2);
+        final int midY = (craft.getMinY() + craft.getMaxY()) / 2;
+        final int midZ = craft.getMinZ() + (hitBox.getSizeZ() / 2);
         return new BlockVec(midX, midY, midZ);
     }
 
@@ -283,7 +234,7 @@ public class CommandListener implements CommandExecutor {
                     final String output = MessageFormat.format("{0} {1} {2} @ {3},{4},{5}",
                                                                craft.getType().getCraftName(),
                                                                notificationPlayer,
-                                                               craft.getBlockList().length,
+                                                               craft.getBlocks().size(),
                                                                craft.getMinX(), craft.getMinY(), craft.getMinZ());
 
                     player.sendMessage(output);
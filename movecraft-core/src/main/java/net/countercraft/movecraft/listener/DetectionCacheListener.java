@@ -0,0 +1,201 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.listener;
+
+import net.countercraft.movecraft.async.detection.DetectionCache;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockGrowEvent;
+import org.bukkit.event.block.BlockIgniteEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockRedstoneEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+
+import java.util.List;
+
+/**
+ * Drops cached detection results when a block they depend on changes.
+ */
+public final class DetectionCacheListener implements Listener {
+    private final DetectionCache detectionCache;
+
+    public DetectionCacheListener(final DetectionCache detectionCache) {
+        this.detectionCache = detectionCache;
+    }
+
+    private void changed(final Block block) {
+        this.detectionCache.invalidate(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    private void changed(final List<Block> blocks) {
+        for (final Block block : blocks) this.changed(block);
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(final BlockPlaceEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(final BlockBreakEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(final BlockBurnEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(final BlockFadeEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(final BlockFormEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockSpread(final BlockSpreadEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockGrow(final BlockGrowEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(final BlockFromToEvent event) {
+        this.changed(event.getToBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockIgnite(final BlockIgniteEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBlockRedstone(final BlockRedstoneEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    // pushed and pulled blocks end up one block along the piston's axis
+    private void pistonMoved(final Block piston, final List<Block> blocks, final BlockFace direction) {
+        this.changed(piston);
+        this.changed(piston.getRelative(direction));
+        for (final Block block : blocks) {
+            this.changed(block);
+            this.changed(block.getRelative(direction));
+            this.changed(block.getRelative(direction.getOppositeFace()));
+        }
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(final BlockPistonExtendEvent event) {
+        this.pistonMoved(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(final BlockPistonRetractEvent event) {
+        this.pistonMoved(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeavesDecay(final LeavesDecayEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSignChange(final SignChangeEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(final EntityChangeBlockEvent event) {
+        this.changed(event.getBlock());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(final EntityExplodeEvent event) {
+        this.changed(event.blockList());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(final BlockExplodeEvent event) {
+        this.changed(event.blockList());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(final PlayerBucketEmptyEvent event) {
+        this.changed(event.getBlockClicked().getRelative(event.getBlockFace()));
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(final PlayerBucketFillEvent event) {
+        this.changed(event.getBlockClicked().getRelative(event.getBlockFace()));
+        this.changed(event.getBlockClicked());
+    }
+
+    @SuppressWarnings("unused")
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStructureGrow(final StructureGrowEvent event) {
+        for (final BlockState state : event.getBlocks()) {
+            this.detectionCache.invalidate(state.getWorld(), state.getX(), state.getY(), state.getZ());
+        }
+    }
+}
@@ -78,8 +78,7 @@ public class InteractListener implements Listener {
                     final BlockVec sourceLocation = BlockVec.from(event.getClickedBlock().getLocation());
                     Craft foundCraft = null;
                     for (final Craft tcraft : this.craftManager.getCraftsInWorld(event.getClickedBlock().getWorld())) {
-                        if (MathUtils.playerIsWithinBoundingPolygon(tcraft.getHitBox(), tcraft.getMinX(),
-                                                                    tcraft.getMinZ(), sourceLocation)) {
+                        if (MathUtils.playerIsWithinBoundingPolygon(tcraft.getHitBox(), sourceLocation)) {
                             // don't use a craft with a null player. This is mostly to avoid trying to use subcrafts
                             if (this.craftManager.getPlayerFromCraft(tcraft) != null) foundCraft = tcraft;
                         }
@@ -98,7 +97,7 @@ public class InteractListener implements Listener {
 
                     final String targetText = org.bukkit.ChatColor.stripColor(sign.getLine(1));
                     BlockVec foundLoc = null;
-                    for (final BlockVec tloc : foundCraft.getBlockList()) {
+                    for (final BlockVec tloc : foundCraft.findSpecialBlocks(Material.SIGN_POST, Material.WALL_SIGN)) {
                         final Block tb = event.getClickedBlock().getWorld().getBlockAt(tloc.x(), tloc.y(), tloc.z());
                         if (tb.getType() == Material.SIGN_POST || tb.getType() == Material.WALL_SIGN) {
                             final Sign ts = (Sign) tb.getState();
@@ -179,9 +178,8 @@ public class InteractListener implements Listener {
                                 }
                             }
 
-                            if (MathUtils.playerIsWithinBoundingPolygon(playerCraft.getHitBox(), playerCraft.getMinX(),
-                                                                        playerCraft.getMinZ(), BlockVec.from(event.getPlayer()
-                                                                                                          .getLocation()))) {
+                            if (MathUtils.playerIsWithinBoundingPolygon(playerCraft.getHitBox(),
+                                                                        BlockVec.from(event.getPlayer().getLocation()))) {
                                 if (playerCraft.getType().rotateAtMidpoint()) {
                                     final BlockVec midpoint = new BlockVec(
                                             (playerCraft.getMaxX() + playerCraft.getMinX()) / 2,
@@ -330,9 +328,7 @@ public class InteractListener implements Listener {
                         }
                     }
 
-                    if (MathUtils.playerIsWithinBoundingPolygon(playerCraft.getHitBox(), playerCraft.getMinX(),
-                                                                playerCraft.getMinZ(),
-                                                                BlockVec.from(player.getLocation()))) {
+                    if (MathUtils.playerIsWithinBoundingPolygon(playerCraft.getHitBox(), BlockVec.from(player.getLocation()))) {
                         if (playerCraft.getType().rotateAtMidpoint()) {
                             final BlockVec midpoint = new BlockVec(
                                     (playerCraft.getMaxX() + playerCraft.getMinX()) / 2,
@@ -621,8 +617,7 @@ public class InteractListener implements Listener {
                     }
                 }
 
-                if (MathUtils.playerIsWithinBoundingPolygon(craft.getHitBox(), craft.getMinX(), craft.getMinZ(),
-                                                            BlockVec.from(event.getPlayer().getLocation()))) {
+                if (MathUtils.playerIsWithinBoundingPolygon(craft.getHitBox(), BlockVec.from(event.getPlayer().getLocation()))) {
 
                     if (event.getPlayer().hasPermission("movecraft." + craft.getType().getCraftName() + ".move")) {
                         if (craft.getPilotLocked()) {
@@ -20,6 +20,7 @@ package net.countercraft.movecraft.listener;
 import com.alexknvl.shipcraft.math.BlockVec;
 import com.alexknvl.shipcraft.math.BlockVec$;
 import net.countercraft.movecraft.config.Settings;
+import net.countercraft.movecraft.craft.BlockSet;
 import net.countercraft.movecraft.craft.Craft;
 import net.countercraft.movecraft.craft.CraftManager;
 import net.countercraft.movecraft.localisation.I18nSupport;
@@ -37,10 +38,6 @@ import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-
 
 public class PlayerListener implements Listener {
     private final Plugin plugin;
@@ -56,8 +53,9 @@ public class PlayerListener implements Listener {
     }
 
     private static String checkCraftBorders(final Craft craft) {
-        final Set<BlockVec> craftBlocks = new HashSet<>(Arrays.asList(craft.getBlockList()));
-        for (final BlockVec block : craftBlocks) {
+        final BlockSet craftBlocks = craft.getBlocks();
+        for (int i = 0; i < craftBlocks.size(); i++) {
+            final BlockVec block = craftBlocks.get(i);
             for (int x = -1; x <= 1; x++) {
                 for (int y = -1; y <= 1; y++) {
                     for (int z = -1; z <= 1; z++) {
@@ -115,8 +113,7 @@ public class PlayerListener implements Listener {
 
         if (craft != null) {
             if (craft.isNotProcessing() && (!MathUtils
-                    .playerIsWithinBoundingPolygon(craft.getHitBox(), craft.getMinX(), craft.getMinZ(),
-                                                   BlockVec$.MODULE$.from(player.getLocation())))) {
+                    .playerIsWithinBoundingPolygon(craft.getHitBox(), BlockVec$.MODULE$.from(player.getLocation())))) {
 
                 if (!this.craftManager.getReleaseEvents().containsKey(player) && craft.getType().getMoveEntities()) {
                     if (this.settings.ManOverBoardTimeout == 0)
@@ -124,7 +121,7 @@ public class PlayerListener implements Listener {
                     else player.sendMessage(this.i18n.get(
                             "You have left your craft. You may return to your craft by typing /manoverboard any time " +
                             "before the timeout expires"));
-                    if (craft.getBlockList().length > 11000) {
+                    if (craft.getBlocks().size() > 11000) {
                         player.sendMessage(this.i18n.get(
                                 "Craft is too big to check its borders. Make sure this area is safe to release your " +
                                 "craft in."));
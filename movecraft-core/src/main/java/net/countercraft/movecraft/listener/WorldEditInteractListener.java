@@ -315,12 +315,13 @@ public class WorldEditInteractListener implements Listener {
                 final Map<Integer, ArrayList<InventoryHolder>> chestsToTakeFrom = new HashMap<>(); // typeid, list of chest
                 // inventories
                 boolean enoughMaterial = true;
+                final BlockVec[] craftChests = craft.findSpecialBlocks(Material.CHEST, Material.TRAPPED_CHEST);
                 for (final Map.Entry<Integer, Integer> entry : numMissingItems.entrySet()) {
                     int remainingQty = entry.getValue();
                     final int itemTypeId = entry.getKey();
                     final ArrayList<InventoryHolder> chests = new ArrayList<>();
 
-                    for (final BlockVec loc : craft.getBlockList()) {
+                    for (final BlockVec loc : craftChests) {
                         final Block b = craft.getWorld().getBlockAt(loc.x(), loc.y(), loc.z());
                         if ((b.getTypeId() == 54) || (b.getTypeId() == 146)) {
                             final InventoryHolder inventoryHolder = (InventoryHolder) b.getState();
@@ -46,9 +46,25 @@ public final class BlockUtils {
             65, 68, 61, 23, 69, 77, 143, 93, 94, 96, 107, 120, 131, 144, 145, 62, 99, 100, 106, 127, 130, 145, 149, 150,
             154, 157, 158, 170, 86, 91, 163, 164, 203};
 
+    // rotated data of every type id and data value, indexed by (typeId << 6) | (data << 2) | rotation
+    private static final int TABLE_TYPE_IDS = 256;
+    private static final byte[] ROTATION_TABLE = new byte[TABLE_TYPE_IDS << 6];
+    private static final RotationXZ[] ROTATIONS = {
+            RotationXZ.none(), RotationXZ.cw(), RotationXZ.ccw(), RotationXZ.flip()
+    };
+
     static {
         Arrays.sort(DATA_BLOCKS);
         Arrays.sort(ROTATION_BLOCKS);
+
+        for (int typeID = 0; typeID < TABLE_TYPE_IDS; typeID++) {
+            for (int data = 0; data < 16; data++) {
+                for (int rotation = 0; rotation < ROTATIONS.length; rotation++) {
+                    ROTATION_TABLE[(typeID << 6) | (data << 2) | rotation] =
+                            computeRotation((byte) data, typeID, ROTATIONS[rotation]);
+                }
+            }
+        }
     }
 
     public static boolean blockHasNoData(Material id) {
@@ -59,20 +75,25 @@ public final class BlockUtils {
         return Arrays.binarySearch(ROTATION_BLOCKS, id) != -1;
     }
 
-    public static boolean arrayContainsOverlap(Object[] array1, Object[] array2) {
-        for (Object o : array1) {
+    private static int rotationIndex(final RotationXZ rotation) {
+        if (rotation == RotationXZ.cw()) return 1;
+        if (rotation == RotationXZ.ccw()) return 2;
+        if (rotation == RotationXZ.flip()) return 3;
+        return 0;
+    }
 
-            for (Object o1 : array2) {
-                if (o.equals(o1)) {
-                    return true;
-                }
-            }
+    /**
+     * Returns the data value of a block of type {@code typeID} turned by {@code rotation}.
+     * Looks the result up in a table built once from {@link #computeRotation(byte, int, RotationXZ)}.
+     */
+    public static byte rotate(final byte data, final int typeID, final RotationXZ rotation) {
+        if (typeID < 0 || typeID >= TABLE_TYPE_IDS || (data & ~0xF) != 0) {
+            return computeRotation(data, typeID, rotation);
         }
-
-        return false;
+        return ROTATION_TABLE[(typeID << 6) | (data << 2) | rotationIndex(rotation)];
     }
 
-    public static byte rotate(byte data, int typeID, RotationXZ rotation) {
+    static byte computeRotation(byte data, int typeID, RotationXZ rotation) {
         switch (typeID) {
             case 17:
             case 170:
@@ -17,61 +17,40 @@
 
 package net.countercraft.movecraft.utils;
 
-import com.alexknvl.shipcraft.math.BlockVec;
+import net.countercraft.movecraft.craft.BlockSet;
+
+import java.util.Arrays;
 
 public final class BoundingBoxUtils {
 
-    public static int[][][] formBoundingBox(final BlockVec[] blockList,
-                                            final Integer minX, final Integer maxX, final Integer minZ,
-                                            final Integer maxZ)
+    public static ColumnHitBox formBoundingBox(final BlockSet blocks, final int minX, final int maxX, final int minZ,
+                                               final int maxZ)
     {
         final int sizeX = (maxX - minX) + 1;
         final int sizeZ = (maxZ - minZ) + 1;
 
-        final int[][][] polygonalBox = new int[sizeX][][];
-
-        for (final BlockVec l : blockList) {
-            if (polygonalBox[l.x() - minX] == null) {
-                polygonalBox[l.x() - minX] = new int[sizeZ][];
-            }
+        final short[] columnMinY = new short[sizeX * sizeZ];
+        final short[] columnMaxY = new short[sizeX * sizeZ];
+        Arrays.fill(columnMinY, ColumnHitBox.EMPTY_COLUMN);
 
-            if (polygonalBox[l.x() - minX][l.z() - minZ] == null) {
+        for (int i = 0; i < blocks.size(); i++) {
+            final long packed = blocks.getPacked(i);
+            final int index = (PackedBlockPos.unpackX(packed) - minX) * sizeZ + (PackedBlockPos.unpackZ(packed) - minZ);
+            final short y = (short) PackedBlockPos.unpackY(packed);
 
-                polygonalBox[l.x() - minX][l.z() - minZ] = new int[2];
-                polygonalBox[l.x() - minX][l.z() - minZ][0] = l.y();
-                polygonalBox[l.x() - minX][l.z() - minZ][1] = l.y();
+            if (columnMinY[index] == ColumnHitBox.EMPTY_COLUMN) {
+                columnMinY[index] = y;
+                columnMaxY[index] = y;
             } else {
-                final int minY = polygonalBox[l.x() - minX][l.z() - minZ][0];
-                final int maxY = polygonalBox[l.x() - minX][l.z() - minZ][1];
-
-                if (l.y() < minY) {
-                    polygonalBox[l.x() - minX][l.z() - minZ][0] = l.y();
+                if (y < columnMinY[index]) {
+                    columnMinY[index] = y;
                 }
-                if (l.y() > maxY) {
-                    polygonalBox[l.x() - minX][l.z() - minZ][1] = l.y();
-                }
-            }
-        }
-
-        return polygonalBox;
-    }
-
-    public static int[][][] translateBoundingBoxVertically(final int[][][] hitbox, final int dy) {
-        final int[][][] newHitbox = new int[hitbox.length][][];
-
-        for (int x = 0; x < hitbox.length; x++) {
-            newHitbox[x] = new int[hitbox[x].length][];
-
-            for (int z = 0; z < hitbox[x].length; z++) {
-
-                if (hitbox[x][z] != null) {
-                    newHitbox[x][z] = new int[2];
-                    newHitbox[x][z][0] = hitbox[x][z][0] + dy;
-                    newHitbox[x][z][1] = hitbox[x][z][1] + dy;
+                if (y > columnMaxY[index]) {
+                    columnMaxY[index] = y;
                 }
             }
         }
 
-        return newHitbox;
+        return new ColumnHitBox(minX, minZ, sizeX, sizeZ, 0, columnMinY, columnMaxY);
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.utils;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Lowest and highest block of every column of a craft, stored in two flat arrays indexed by
+ * {@code (x - minX) * sizeZ + (z - minZ)}. Empty columns hold {@link #EMPTY_COLUMN} as their
+ * lowest block.
+ */
+@Immutable
+public final class ColumnHitBox {
+    public static final short EMPTY_COLUMN = Short.MIN_VALUE;
+    public static final ColumnHitBox EMPTY = new ColumnHitBox(0, 0, 0, 0, 0, new short[0], new short[0]);
+
+    private final int minX, minZ;
+    private final int sizeX, sizeZ;
+    // added to the stored heights, so that moving the box does not touch the arrays
+    private final int offsetY;
+    private final short[] minY;
+    private final short[] maxY;
+
+    ColumnHitBox(final int minX, final int minZ, final int sizeX, final int sizeZ, final int offsetY,
+                 final short[] minY, final short[] maxY)
+    {
+        this.minX = minX;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeZ = sizeZ;
+        this.offsetY = offsetY;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Returns this box moved by {@code dx, dy, dz}. The column arrays are shared with this box.
+     */
+    public ColumnHitBox translate(final int dx, final int dy, final int dz) {
+        return new ColumnHitBox(this.minX + dx, this.minZ + dz, this.sizeX, this.sizeZ, this.offsetY + dy,
+                                this.minY, this.maxY);
+    }
+
+    public int getMinX() {
+        return this.minX;
+    }
+
+    public int getMinZ() {
+        return this.minZ;
+    }
+
+    public int getSizeX() {
+        return this.sizeX;
+    }
+
+    public int getSizeZ() {
+        return this.sizeZ;
+    }
+
+    /**
+     * Returns the index of the column at {@code x, z}, or -1 if it lies outside the box.
+     */
+    public int indexOf(final int x, final int z) {
+        final int dx = x - this.minX;
+        final int dz = z - this.minZ;
+        if (dx < 0 || dx >= this.sizeX || dz < 0 || dz >= this.sizeZ) return -1;
+        return dx * this.sizeZ + dz;
+    }
+
+    public boolean isEmpty(final int index) {
+        return this.minY[index] == EMPTY_COLUMN;
+    }
+
+    public int getMinY(final int index) {
+        return this.minY[index] + this.offsetY;
+    }
+
+    public int getMaxY(final int index) {
+        return this.maxY[index] + this.offsetY;
+    }
+
+    public boolean hasColumn(final int x, final int z) {
+        final int index = this.indexOf(x, z);
+        return index >= 0 && this.minY[index] != EMPTY_COLUMN;
+    }
+
+    /**
+     * Returns true if {@code x, y, z} lies in an occupied column, between its lowest block and
+     * {@code headroom} blocks above its highest one.
+     */
+    public boolean isWithin(final int x, final int y, final int z, final int headroom) {
+        final int index = this.indexOf(x, z);
+        if (index < 0) return false;
+        final int columnMinY = this.minY[index];
+        if (columnMinY == EMPTY_COLUMN) return false;
+        return y >= columnMinY + this.offsetY && y <= this.maxY[index] + this.offsetY + headroom;
+    }
+
+    public boolean isWithin(final BlockVec l, final int headroom) {
+        return this.isWithin(l.x(), l.y(), l.z(), headroom);
+    }
+}
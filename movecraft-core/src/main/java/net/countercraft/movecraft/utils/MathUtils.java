@@ -23,30 +23,9 @@ import org.bukkit.Location;
 
 public final class MathUtils {
 
-    public static boolean playerIsWithinBoundingPolygon(final int[][][] box, final int minX, final int minZ, final BlockVec l) {
-
-        if (l.x() >= minX && l.x() < (minX + box.length)) {
-            // PLayer is within correct X boundary
-            if (l.z() >= minZ && l.z() < (minZ + box[l.x() - minX].length)) {
-                // Player is within valid Z boundary
-                final int minY;
-                final int maxY;
-
-                try {
-                    minY = box[l.x() - minX][l.z() - minZ][0];
-                    maxY = box[l.x() - minX][l.z() - minZ][1];
-                } catch (final NullPointerException e) {
-                    return false;
-                }
-
-                if (l.y() >= minY && l.y() <= (maxY + 2)) {
-                    // Player is on board the vessel
-                    return true;
-                }
-            }
-        }
-
-        return false;
+    public static boolean playerIsWithinBoundingPolygon(final ColumnHitBox box, final BlockVec l) {
+        // Player is on board the vessel if they stand in an occupied column, at most two blocks above its top
+        return box.isWithin(l, 2);
     }
 
 //    public static BlockVec bukkit2MovecraftLoc(final Location l) {
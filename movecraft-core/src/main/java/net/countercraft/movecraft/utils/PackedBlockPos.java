@@ -0,0 +1,63 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.utils;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+
+/**
+ * Packs block coordinates into a single long, using the same layout as the
+ * vanilla BlockPosition: 26 bits of X, 26 bits of Z and 12 bits of Y.
+ */
+public final class PackedBlockPos {
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final int X_SHIFT = XZ_BITS + Y_BITS;
+    private static final int Z_SHIFT = Y_BITS;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+
+    private PackedBlockPos() { }
+
+    public static long pack(final int x, final int y, final int z) {
+        return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    public static long pack(final BlockVec vec) {
+        return pack(vec.x(), vec.y(), vec.z());
+    }
+
+    public static int unpackX(final long packed) {
+        return (int) (packed >> X_SHIFT);
+    }
+
+    public static int unpackY(final long packed) {
+        return (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int unpackZ(final long packed) {
+        return (int) (packed << (64 - X_SHIFT) >> (64 - XZ_BITS));
+    }
+
+    public static BlockVec unpack(final long packed) {
+        return new BlockVec(unpackX(packed), unpackY(packed), unpackZ(packed));
+    }
+
+    public static long translate(final long packed, final int dx, final int dy, final int dz) {
+        return pack(unpackX(packed) + dx, unpackY(packed) + dy, unpackZ(packed) + dz);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.utils;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Least significant digit radix sort of non-negative long keys, in time proportional to the
+ * number of keys times the number of significant bits. Block lists are ordered by packing the
+ * fields to order by, relative to their minimum, into the high bits of each key; anything that
+ * has to survive the sort, like the index of the block, goes in the low bits.
+ */
+public final class RadixSort {
+    private static final int DIGIT_BITS = 11;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final int DIGIT_MASK = RADIX - 1;
+
+    private RadixSort() { }
+
+    /**
+     * Returns the number of bits needed to hold every value from zero to {@code max}.
+     */
+    public static int bitsFor(final long max) {
+        Preconditions.checkArgument(max >= 0);
+        return 64 - Long.numberOfLeadingZeros(max);
+    }
+
+    /**
+     * Sorts the first {@code size} keys ascending. Every key must be below {@code 1 << bits}.
+     */
+    public static void sort(final long[] keys, final int size, final int bits) {
+        Preconditions.checkPositionIndex(size, keys.length);
+        Preconditions.checkArgument(bits >= 0 && bits < 64);
+
+        long[] from = keys;
+        long[] to = new long[size];
+        final int[] counts = new int[RADIX];
+        for (int shift = 0; shift < bits; shift += DIGIT_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (from[i] >>> shift) & DIGIT_MASK]++;
+            }
+            // every key has the same digit here, the pass would not move anything
+            if (size > 0 && counts[(int) (from[0] >>> shift) & DIGIT_MASK] == size) continue;
+
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                final int count = counts[digit];
+                counts[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                final long key = from[i];
+                to[counts[(int) (key >>> shift) & DIGIT_MASK]++] = key;
+            }
+
+            final long[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != keys) System.arraycopy(from, 0, keys, 0, size);
+    }
+}
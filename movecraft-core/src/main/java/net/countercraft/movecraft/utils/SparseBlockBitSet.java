@@ -0,0 +1,103 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of block positions stored as one 4096-bit page per 16x16x16 section. Pages are found
+ * through an open-addressing table keyed by packed section coordinates, so the set only costs
+ * memory for the sections it touches and adding a position never allocates once its page exists.
+ */
+public final class SparseBlockBitSet {
+    private static final int PAGE_WORDS = 4096 / 64;
+
+    private long[] keys = new long[16];
+    private long[][] pages = new long[16][];
+    private int pageCount;
+
+    private static int hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int bitIndex(final int x, final int y, final int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private long[] page(final int x, final int y, final int z, final boolean create) {
+        final long key = PackedBlockPos.pack(x >> 4, y >> 4, z >> 4);
+        final int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.pages[slot] != null) {
+            if (this.keys[slot] == key) return this.pages[slot];
+            slot = (slot + 1) & mask;
+        }
+        if (!create) return null;
+
+        if ((this.pageCount + 1) * 2 > this.keys.length) {
+            this.grow();
+            return this.page(x, y, z, true);
+        }
+        final long[] page = new long[PAGE_WORDS];
+        this.keys[slot] = key;
+        this.pages[slot] = page;
+        this.pageCount++;
+        return page;
+    }
+
+    private void grow() {
+        final long[] oldKeys = this.keys;
+        final long[][] oldPages = this.pages;
+        this.keys = new long[oldKeys.length * 2];
+        this.pages = new long[oldKeys.length * 2][];
+        final int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldPages[i] == null) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (this.pages[slot] != null) slot = (slot + 1) & mask;
+            this.keys[slot] = oldKeys[i];
+            this.pages[slot] = oldPages[i];
+        }
+    }
+
+    /**
+     * Adds the position, returns false if it was already in the set.
+     */
+    public boolean add(final int x, final int y, final int z) {
+        final long[] page = this.page(x, y, z, true);
+        final int bit = bitIndex(x, y, z);
+        final long word = page[bit >>> 6];
+        final long mask = 1L << bit;
+        if ((word & mask) != 0) return false;
+        page[bit >>> 6] = word | mask;
+        return true;
+    }
+
+    public boolean contains(final int x, final int y, final int z) {
+        final long[] page = this.page(x, y, z, false);
+        if (page == null) return false;
+        final int bit = bitIndex(x, y, z);
+        return (page[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.pages, null);
+        this.pageCount = 0;
+    }
+}
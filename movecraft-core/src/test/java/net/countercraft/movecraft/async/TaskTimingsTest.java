@@ -0,0 +1,44 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.async;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TaskTimingsTest {
+
+    @Test public void testRecordsPerTaskAndStage() throws Exception {
+        final TaskTimings timings = new TaskTimings();
+        timings.record("TranslationTask", TaskStage.COMPUTE, 3000000);
+        timings.record("TranslationTask", TaskStage.COMPUTE, 1000000);
+        timings.record("TranslationTask", TaskStage.APPLY, 500000);
+        timings.record("RotationTask", TaskStage.COMPUTE, 2000000);
+
+        Assert.assertEquals(timings.getCount("TranslationTask", TaskStage.COMPUTE), 2);
+        Assert.assertEquals(timings.getTotalNanos("TranslationTask", TaskStage.COMPUTE), 4000000);
+        Assert.assertEquals(timings.getMaxNanos("TranslationTask", TaskStage.COMPUTE), 3000000);
+        Assert.assertEquals(timings.getCount("TranslationTask", TaskStage.GATHER), 0);
+        Assert.assertEquals(timings.getCount("RotationTask", TaskStage.COMPUTE), 1);
+        Assert.assertEquals(timings.summary().size(), 3);
+
+        timings.reset();
+        Assert.assertEquals(timings.getCount("TranslationTask", TaskStage.COMPUTE), 0);
+        Assert.assertTrue(timings.summary().isEmpty());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.async.detection;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import net.countercraft.movecraft.craft.CraftType;
+import org.bukkit.World;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+
+public class DetectionCacheTest {
+
+    private static World world() {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] { World.class },
+                                              (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                default: throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test public void testInvalidatedByChangesInCoveredSections() throws Exception {
+        final World world = world();
+        final CraftType type = new CraftType();
+        final BlockVec start = new BlockVec(0, 64, 0);
+        final BlockVec[] blocks = { new BlockVec(0, 63, 0), new BlockVec(1, 63, 0), new BlockVec(2, 63, 0) };
+        final DetectionCache cache = new DetectionCache(4, 60000);
+
+        Assert.assertNull(cache.get(world, start, type, null));
+        cache.put(world, start, type, null,
+                  new DetectionCache.Result(blocks, false, DetectionCache.coveredSections(blocks, start)));
+        Assert.assertNotNull(cache.get(world, start, type, null));
+        Assert.assertNull(cache.get(world(), start, type, null));
+        Assert.assertNull(cache.get(world, start, new CraftType(), null));
+
+        // neighbours of the craft reach into the sections below and to the west and north
+        cache.invalidate(world, 100, 64, 100);
+        cache.invalidate(world, 5, 80, 5);
+        Assert.assertNotNull(cache.get(world, start, type, null));
+        cache.invalidate(world, -1, 62, -1);
+        Assert.assertNull(cache.get(world, start, type, null));
+        Assert.assertTrue(cache.isEmpty());
+
+        Assert.assertEquals(cache.getHits(), 2);
+        Assert.assertEquals(cache.getMisses(), 4);
+    }
+
+    @Test public void testEvictsLeastRecentlyUsed() throws Exception {
+        final World world = world();
+        final CraftType type = new CraftType();
+        final DetectionCache cache = new DetectionCache(2, 60000);
+        for (int i = 0; i < 3; i++) {
+            final BlockVec start = new BlockVec(i * 100, 64, 0);
+            final BlockVec[] blocks = { new BlockVec(i * 100, 63, 0) };
+            cache.put(world, start, type, null,
+                      new DetectionCache.Result(blocks, false, DetectionCache.coveredSections(blocks, start)));
+            if (i == 1) cache.get(world, new BlockVec(0, 64, 0), type, null);
+        }
+        Assert.assertNotNull(cache.get(world, new BlockVec(0, 64, 0), type, null));
+        Assert.assertNull(cache.get(world, new BlockVec(100, 64, 0), type, null));
+        Assert.assertNotNull(cache.get(world, new BlockVec(200, 64, 0), type, null));
+    }
+}
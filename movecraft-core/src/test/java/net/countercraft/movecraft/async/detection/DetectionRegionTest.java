@@ -0,0 +1,77 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.async.detection;
+
+import com.alexknvl.shipcraft.math.AABB;
+import com.alexknvl.shipcraft.math.BlockVec;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DetectionRegionTest {
+    private static final BlockVec START = new BlockVec(100, 64, -100);
+
+    @Test public void testFacesPast() throws Exception {
+        final DetectionRegion region = DetectionRegion.around(START, 8, 64, 4096);
+        Assert.assertEquals(region.getBounds(), new AABB(92, 56, -108, 108, 72, -92));
+        Assert.assertEquals(region.facesPast(92, 56, -92), 0);
+        Assert.assertEquals(region.facesPast(91, 64, -100), DetectionRegion.MIN_X);
+        Assert.assertEquals(region.facesPast(109, 73, -100), DetectionRegion.MAX_X | DetectionRegion.MAX_Y);
+        Assert.assertEquals(region.facesPast(100, 64, -109), DetectionRegion.MIN_Z);
+
+        // the world ends before the box does, nothing lies past it there
+        final DetectionRegion low = DetectionRegion.around(new BlockVec(0, 4, 0), 8, 64, 4096);
+        Assert.assertEquals(low.facesPast(0, -1, 0), 0);
+    }
+
+    @Test public void testGrowsPastReachedFacesOnly() throws Exception {
+        final DetectionRegion region = DetectionRegion.around(START, 8, 64, 4096);
+        final DetectionRegion grown = region.grow(DetectionRegion.MAX_X | DetectionRegion.MIN_Y);
+        Assert.assertNotNull(grown);
+        Assert.assertEquals(grown.getBounds(), new AABB(92, 48, -108, 116, 72, -92));
+        Assert.assertEquals(grown.facesPast(116, 48, -100), 0);
+        Assert.assertEquals(grown.facesPast(117, 64, -100), DetectionRegion.MAX_X);
+    }
+
+    @Test public void testGrowthStopsAtMaxRadius() throws Exception {
+        DetectionRegion region = DetectionRegion.around(START, 8, 40, 4096);
+        int retries = 0;
+        DetectionRegion grown;
+        while ((grown = region.grow(DetectionRegion.MAX_Z)) != null) {
+            region = grown;
+            retries++;
+        }
+        // 8 -> 16 -> 32 -> 40, then the face can't move any further
+        Assert.assertEquals(retries, 3);
+        Assert.assertEquals(region.getBounds(), new AABB(92, 56, -108, 108, 72, -60));
+        Assert.assertNull(region.grow(DetectionRegion.MAX_Z));
+        Assert.assertNotNull(region.grow(DetectionRegion.MAX_Z | DetectionRegion.MIN_X));
+    }
+
+    @Test public void testGrowthStopsAtMaxSections() throws Exception {
+        // the cube spans 2 x 2 chunks and 2 sections with its margin
+        final DetectionRegion region = DetectionRegion.around(new BlockVec(16, 16, 16), 8, 256, 16);
+        Assert.assertEquals(region.getSectionCount(), 2 * 2 * 2);
+        final DetectionRegion grown = region.grow(DetectionRegion.MAX_X);
+        Assert.assertNotNull(grown);
+        Assert.assertEquals(grown.getSectionCount(), 3 * 2 * 2);
+        // the next step would copy 4 x 2 x 2 sections, and the one after that more than the limit
+        final DetectionRegion next = grown.grow(DetectionRegion.MAX_X);
+        Assert.assertNotNull(next);
+        Assert.assertNull(next.grow(DetectionRegion.MAX_X | DetectionRegion.MAX_Z));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.async.detection;
+
+import net.countercraft.movecraft.craft.PackedBlockSet;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelBlockFloodFillTest {
+
+    @Test public void testVisitsSamePositionsAsSerialFill() throws Exception {
+        final PackedBlockSet solid = new PackedBlockSet();
+        final Random random = new Random(42);
+        for (int x = -40; x < 40; x++) {
+            for (int z = -40; z < 40; z++) {
+                for (int y = 50; y < 90; y++) {
+                    if (random.nextInt(100) < 55) solid.add(x, y, z);
+                }
+            }
+        }
+
+        final PackedBlockSet serial = new PackedBlockSet();
+        new BlockFloodFill().run(0, 70, 0, (x, y, z) -> {
+            Assert.assertTrue(serial.add(x, y, z));
+            return solid.contains(x, y, z);
+        });
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final PackedBlockSet parallel = new PackedBlockSet();
+            new ParallelBlockFloodFill(pool).run(0, 70, 0, () -> (x, y, z) -> {
+                synchronized (parallel) {
+                    Assert.assertTrue(parallel.add(x, y, z));
+                }
+                return solid.contains(x, y, z);
+            });
+
+            Assert.assertEquals(parallel.size(), serial.size());
+            for (int i = 0; i < serial.size(); i++) {
+                Assert.assertTrue(parallel.containsPacked(serial.getPacked(i)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+public class BlockBitmapTest {
+
+    private static PackedBlockSet hollowBox(final int sizeX, final int sizeY, final int sizeZ) {
+        final PackedBlockSet blocks = new PackedBlockSet();
+        for (int x = 0; x < sizeX; x++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int y = 0; y < sizeY; y++) {
+                    if (x == 0 || y == 0 || z == 0 || x == sizeX - 1 || y == sizeY - 1 || z == sizeZ - 1) {
+                        blocks.add(x - 100, y + 60, z - 100);
+                    }
+                }
+            }
+        }
+        return blocks;
+    }
+
+    @Test public void testMatchesBlockSet() throws Exception {
+        final PackedBlockSet blocks = hollowBox(40, 12, 30);
+        final BlockBitmap bitmap = BlockBitmap.of(blocks);
+        Assert.assertEquals(bitmap.getMinY(), 60);
+        Assert.assertEquals(bitmap.getMaxY(), 71);
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final int x = random.nextInt(50) - 105;
+            final int y = random.nextInt(20) + 55;
+            final int z = random.nextInt(40) - 105;
+            Assert.assertEquals(bitmap.contains(x, y, z), blocks.contains(x, y, z));
+        }
+    }
+
+    @Test public void testLargeBoundsFallBackToSet() throws Exception {
+        final PackedBlockSet blocks = new PackedBlockSet();
+        blocks.add(0, 0, 0);
+        blocks.add(20000, 255, 20000);
+        final BlockBitmap bitmap = BlockBitmap.of(blocks);
+        Assert.assertTrue(bitmap.contains(0, 0, 0));
+        Assert.assertTrue(bitmap.contains(20000, 255, 20000));
+        Assert.assertFalse(bitmap.contains(1, 0, 0));
+    }
+
+    @Test public void testEmpty() throws Exception {
+        Assert.assertFalse(BlockBitmap.of(new PackedBlockSet()).contains(0, 0, 0));
+    }
+}
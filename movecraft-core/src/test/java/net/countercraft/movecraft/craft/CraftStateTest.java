@@ -0,0 +1,155 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import com.alexknvl.shipcraft.math.RotationXZ;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+import net.countercraft.movecraft.utils.ColumnHitBox;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+public class CraftStateTest {
+
+    private static PackedBlockSet randomCraft(final Random random, final int dx, final int dy, final int dz) {
+        final PackedBlockSet blocks = new PackedBlockSet();
+        for (int i = 0; i < 2000; i++) {
+            blocks.add(random.nextInt(40) + dx, random.nextInt(12) + dy, random.nextInt(30) + dz);
+        }
+        return blocks;
+    }
+
+    private static void assertSameCraft(final CraftState actual, final CraftState expected) {
+        final CraftGeometry a = actual.getGeometry();
+        final CraftGeometry e = expected.getGeometry();
+        Assert.assertEquals(a.getMinX(), e.getMinX());
+        Assert.assertEquals(a.getMinY(), e.getMinY());
+        Assert.assertEquals(a.getMinZ(), e.getMinZ());
+        Assert.assertEquals(a.getMaxX(), e.getMaxX());
+        Assert.assertEquals(a.getMaxY(), e.getMaxY());
+        Assert.assertEquals(a.getMaxZ(), e.getMaxZ());
+        Assert.assertEquals(a.getChunkCount(), e.getChunkCount());
+        for (int i = 0; i < a.getChunkCount(); i++) {
+            Assert.assertEquals(a.getChunkKey(i), e.getChunkKey(i));
+        }
+
+        final ColumnHitBox ah = a.getHitBox();
+        final ColumnHitBox eh = e.getHitBox();
+        for (int x = e.getMinX() - 1; x <= e.getMaxX() + 1; x++) {
+            for (int z = e.getMinZ() - 1; z <= e.getMaxZ() + 1; z++) {
+                Assert.assertEquals(ah.hasColumn(x, z), eh.hasColumn(x, z));
+                if (eh.hasColumn(x, z)) {
+                    Assert.assertEquals(ah.getMinY(ah.indexOf(x, z)), eh.getMinY(eh.indexOf(x, z)));
+                    Assert.assertEquals(ah.getMaxY(ah.indexOf(x, z)), eh.getMaxY(eh.indexOf(x, z)));
+                }
+                for (int y = e.getMinY() - 1; y <= e.getMaxY() + 1; y++) {
+                    Assert.assertEquals(actual.getBlocks().contains(x, y, z), expected.getBlocks().contains(x, y, z));
+                    Assert.assertEquals(actual.getBlockIndex().contains(x, y, z), expected.getBlocks().contains(x, y, z));
+                }
+            }
+        }
+
+        Assert.assertEquals(actual.getBlocks().size(), expected.getBlocks().size());
+        for (int i = 0; i < actual.getBlocks().size(); i++) {
+            Assert.assertTrue(expected.getBlocks().containsPacked(actual.getBlocks().getPacked(i)));
+        }
+    }
+
+    @Test public void testTranslateMatchesRebuild() throws Exception {
+        final int[][] moves = {{1, 0, 0}, {0, -1, 0}, {-7, 2, 13}, {16, 0, -32}, {-3, 0, 5}};
+        CraftState state = CraftState.INITIAL.withBlocks(randomCraft(new Random(7), -20, 60, -9));
+        int dx = -20, dy = 60, dz = -9;
+        for (final int[] move : moves) {
+            state = state.translate(move[0], move[1], move[2]);
+            dx += move[0];
+            dy += move[1];
+            dz += move[2];
+            assertSameCraft(state, CraftState.INITIAL.withBlocks(randomCraft(new Random(7), dx, dy, dz)));
+        }
+    }
+
+    @Test public void testLeadingFace() throws Exception {
+        final int[][] moves = {{1, 0, 0}, {0, -1, 0}, {-2, 1, 0}, {0, 0, 3}};
+        final CraftState state = CraftState.INITIAL.withBlocks(randomCraft(new Random(11), 5, 70, -40));
+        for (final int[] move : moves) {
+            // the face survives a translation, and is checked against the moved blocks
+            for (final CraftState moved : new CraftState[] { state, state.translate(9, -4, 2) }) {
+                final LeadingFace face = moved.getLeadingFace(move[0], move[1], move[2]);
+                final BlockSet blocks = moved.getBlocks();
+                int count = 0;
+                for (int i = 0; i < blocks.size(); i++) {
+                    final BlockVec block = blocks.get(i);
+                    final boolean leading = !blocks.contains(block.x() + move[0], block.y() + move[1],
+                                                             block.z() + move[2]);
+                    Assert.assertEquals(face.isLeading(i), leading);
+                    if (leading) count++;
+                }
+                Assert.assertEquals(face.getCount(), count);
+                Assert.assertTrue(count > 0 && count < blocks.size());
+                Assert.assertTrue(face.isLeading(blocks.size()));
+            }
+        }
+    }
+
+    @Test public void testRotateMatchesRebuild() throws Exception {
+        final RotationXZ[] rotations = {RotationXZ.cw(), RotationXZ.ccw(), RotationXZ.flip(), RotationXZ.none()};
+        final Random random = new Random(11);
+        CraftState state = CraftState.INITIAL.withBlocks(randomCraft(random, -20, 60, -9));
+        final BlockVec[] expected = new BlockVec[state.getBlocks().size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = state.getBlocks().get(i);
+        }
+
+        BlockVec pivot = new BlockVec(0, 65, 5);
+        for (int step = 0; step < 24; step++) {
+            if (step % 5 == 4) {
+                // a turret mostly turns around the same point, but the pivot may move along with the craft
+                final int dx = random.nextInt(7) - 3;
+                final int dz = random.nextInt(7) - 3;
+                state = state.translate(dx, 0, dz);
+                pivot = pivot.translate(dx, 0, dz);
+                for (int i = 0; i < expected.length; i++) {
+                    expected[i] = expected[i].translate(dx, 0, dz);
+                }
+            }
+            if (step % 7 == 6) pivot = pivot.translate(random.nextInt(5) - 2, 0, random.nextInt(5) - 2);
+
+            final RotationXZ rotation = rotations[random.nextInt(rotations.length)];
+            state = state.rotate(pivot, rotation);
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = expected[i].subtract(pivot).rotate(rotation).add(pivot);
+            }
+
+            assertSameCraft(state, CraftState.INITIAL.withBlocks(PackedBlockSet.of(expected)));
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(state.getBlocks().getPacked(i), PackedBlockPos.pack(expected[i]));
+            }
+        }
+    }
+
+    @Test public void testVersionsIncrease() throws Exception {
+        final CraftState first = CraftState.INITIAL.withBlocks(new PackedBlockSet());
+        final CraftState second = first.translate(1, 0, 0);
+        final CraftState third = second.withBurningFuel(3.0);
+        Assert.assertTrue(first.getVersion() < second.getVersion());
+        Assert.assertTrue(second.getVersion() < third.getVersion());
+        Assert.assertEquals(third.getBurningFuel(), 3.0);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.MaterialDataPredicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.bukkit.Material;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+@SuppressWarnings("deprecation")
+public class FlyBlockTableTest {
+
+    @Test public void testMatchesPredicates() throws Exception {
+        final MaterialDataPredicate.Builder builder = new MaterialDataPredicate.Builder();
+        builder.add(Material.IRON_BLOCK);
+        builder.add(MaterialDataPredicate.single(Material.WOOL, (byte) 14));
+        final List<CraftType.Constraint> none = ImmutableList.of();
+        final Map<MaterialDataPredicate, List<CraftType.Constraint>> flyBlocks = ImmutableMap.of(
+                MaterialDataPredicate.single(Material.IRON_BLOCK), none,
+                MaterialDataPredicate.single(Material.WOOL, (byte) 14).compile(), none,
+                builder.result(), none);
+        final FlyBlockTable table = FlyBlockTable.of(flyBlocks);
+        Assert.assertEquals(table.size(), 3);
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            final int typeId = i < 16 ? Material.WOOL.getId() : random.nextInt(256);
+            final byte data = (byte) (i < 16 ? i : random.nextInt(16));
+            final int[] counts = table.newCounts();
+            table.count(counts, typeId, data);
+            for (int slot = 0; slot < table.size(); slot++) {
+                Assert.assertEquals(counts[slot], table.getPredicate(slot).check(typeId, data) ? 1 : 0);
+            }
+        }
+
+        final int[] counts = table.newCounts();
+        table.count(counts, Material.IRON_BLOCK.getId(), (byte) 0);
+        table.count(counts, Material.WOOL.getId(), (byte) 14);
+        table.count(counts, Material.WOOL.getId(), (byte) 0);
+        Assert.assertEquals(counts, new int[] { 1, 1, 2 });
+    }
+
+    @Test public void testEmpty() throws Exception {
+        final FlyBlockTable table = FlyBlockTable.of(ImmutableMap.of());
+        Assert.assertEquals(table.size(), 0);
+        table.count(table.newCounts(), Material.STONE.getId(), (byte) 0);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import net.countercraft.movecraft.utils.PackedBlockPos;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PackedBlockSetTest {
+
+    @Test public void testPackRoundTrip() throws Exception {
+        final int[] values = {0, 1, -1, 255, -2048, 2047, 29999999, -29999999};
+        for (final int x : values) {
+            for (final int z : values) {
+                for (final int y : new int[]{0, 1, 255, -1, -2048, 2047}) {
+                    final long packed = PackedBlockPos.pack(x, y, z);
+                    Assert.assertEquals(PackedBlockPos.unpackX(packed), x);
+                    Assert.assertEquals(PackedBlockPos.unpackY(packed), y);
+                    Assert.assertEquals(PackedBlockPos.unpackZ(packed), z);
+                }
+            }
+        }
+    }
+
+    @Test public void testAddContainsAndOrder() throws Exception {
+        final PackedBlockSet set = new PackedBlockSet();
+        int count = 0;
+        for (int x = -20; x < 20; x++) {
+            for (int y = 0; y < 10; y++) {
+                for (int z = -20; z < 20; z += 3) {
+                    Assert.assertTrue(set.add(x, y, z));
+                    count++;
+                }
+            }
+        }
+        Assert.assertFalse(set.add(0, 0, -20));
+        Assert.assertEquals(set.size(), count);
+        Assert.assertTrue(set.contains(new BlockVec(-20, 9, 19)));
+        Assert.assertFalse(set.contains(new BlockVec(-20, 9, 18)));
+        Assert.assertFalse(set.contains(20, 0, -20));
+        Assert.assertEquals(set.get(0), new BlockVec(-20, 0, -20));
+        Assert.assertEquals(set.get(1), new BlockVec(-20, 0, -17));
+
+        final BlockVec[] array = set.toArray();
+        Assert.assertEquals(array.length, count);
+        Assert.assertEquals(PackedBlockSet.of(array).size(), count);
+    }
+
+    @Test public void testDifferenceAndIntersects() throws Exception {
+        final PackedBlockSet a = new PackedBlockSet();
+        final PackedBlockSet b = new PackedBlockSet();
+        for (int i = 0; i < 100; i++) {
+            a.add(i, 64, 0);
+            if (i % 2 == 0) b.add(i, 64, 0);
+        }
+        Assert.assertTrue(a.intersects(b));
+        Assert.assertTrue(b.intersects(a));
+
+        final PackedBlockSet diff = PackedBlockSet.difference(a.readOnly(), b);
+        Assert.assertEquals(diff.size(), 50);
+        Assert.assertFalse(diff.intersects(b));
+        Assert.assertEquals(diff.get(0), new BlockVec(1, 64, 0));
+    }
+}
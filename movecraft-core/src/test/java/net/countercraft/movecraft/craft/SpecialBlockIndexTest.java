@@ -0,0 +1,56 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.craft;
+
+import org.bukkit.Material;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("deprecation")
+public class SpecialBlockIndexTest {
+    private static final Material[] TYPES = {
+            Material.STONE, Material.WALL_SIGN, Material.FURNACE, Material.CHEST, Material.AIR, Material.DISPENSER
+    };
+
+    private static int typeAt(final int x, final int y, final int z) {
+        return TYPES[Math.floorMod(x * 7 + z * 3, TYPES.length)].getId();
+    }
+
+    @Test public void testDifferenceMatchesRebuild() throws Exception {
+        final PackedBlockSet blocks = new PackedBlockSet();
+        final PackedBlockSet removed = new PackedBlockSet();
+        for (int x = 0; x < 30; x++) {
+            for (int z = 0; z < 30; z++) {
+                blocks.add(x, 64, z);
+                if ((x + z) % 4 == 0) removed.add(x, 64, z);
+            }
+        }
+        removed.add(100, 64, 100);
+
+        final SpecialBlockIndex index = SpecialBlockIndex.of(blocks, SpecialBlockIndexTest::typeAt);
+        final PackedBlockSet remaining = PackedBlockSet.difference(blocks, removed);
+        final SpecialBlockIndex expected = SpecialBlockIndex.of(remaining, SpecialBlockIndexTest::typeAt);
+        final SpecialBlockIndex actual = index.difference(blocks, removed);
+        for (final Material type : new Material[]{Material.WALL_SIGN, Material.FURNACE, Material.CHEST,
+                                                  Material.DISPENSER}) {
+            Assert.assertEquals(actual.find(remaining, type), expected.find(remaining, type));
+        }
+        Assert.assertEquals(actual.find(remaining, Material.CHEST, Material.WALL_SIGN),
+                            expected.find(remaining, Material.CHEST, Material.WALL_SIGN));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.detail;
+
+import com.alexknvl.shipcraft.math.BlockVec;
+import org.bukkit.Material;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class MapUpdatePlanTest {
+    private static MapUpdateCommand.MoveBlock block(final int x, final Material type) {
+        return new MapUpdateCommand.MoveBlock(new BlockVec(x, 64, 0), type, null);
+    }
+
+    @Test public void testPlacementOrder() throws Exception {
+        final MapUpdateCommand.MoveBlock blank = block(0, Material.AIR);
+        final MapUpdateCommand.MoveBlock stone = block(1, Material.STONE);
+        final MapUpdateCommand.MoveBlock torch = block(2, Material.TORCH);
+        final MapUpdateCommand.MoveBlock stoneOverTorch = block(3, Material.STONE);
+        final MapUpdateCommand.MoveBlock torchOverLever = block(4, Material.TORCH);
+        final MapUpdateCommand.MoveBlock dispenser = block(5, Material.DISPENSER);
+        final MapUpdateCommand.MoveBlock redstone = block(6, Material.REDSTONE_BLOCK);
+        final MapUpdateCommand.MoveBlock bed = block(7, Material.BED_BLOCK);
+
+        final MapUpdatePlan plan = new MapUpdatePlan(8);
+        plan.addBlank(blank);
+        plan.add(stone, Material.AIR);
+        plan.add(torch, Material.AIR);
+        plan.add(stoneOverTorch, Material.TORCH);
+        plan.add(torchOverLever, Material.LEVER);
+        plan.add(dispenser, Material.AIR);
+        plan.add(redstone, Material.AIR);
+        plan.add(bed, Material.AIR);
+
+        final ArrayList<MapUpdateCommand.MoveBlock> commands = new ArrayList<>();
+        final ArrayList<Boolean> physics = new ArrayList<>();
+        plan.drainTo(commands, physics);
+
+        // a fragile replacing a fragile clears the old one with air first
+        final MapUpdateCommand.MoveBlock clear = commands.get(2);
+        Assert.assertEquals(clear.newBlockLocation, torchOverLever.newBlockLocation);
+        Assert.assertEquals(clear.data.getItemType(), Material.AIR);
+
+        Assert.assertEquals(commands, Arrays.asList(
+                blank,
+                stoneOverTorch, clear,
+                stone, stoneOverTorch, dispenser, redstone,
+                torch, torchOverLever, bed,
+                dispenser, redstone,
+                bed,
+                torch, torchOverLever, bed));
+        Assert.assertEquals(physics, Arrays.asList(
+                false,
+                false, false,
+                false, false, false, false,
+                false, false, false,
+                true, true,
+                true,
+                true, true, true));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.countercraft.movecraft.utils;
+
+import com.alexknvl.shipcraft.math.RotationXZ;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BlockUtilsTest {
+    private static final RotationXZ[] ROTATIONS = {
+            RotationXZ.none(), RotationXZ.cw(), RotationXZ.ccw(), RotationXZ.flip()
+    };
+
+    @Test public void testRotationTableMatchesSwitch() throws Exception {
+        for (int typeID = 0; typeID < 256; typeID++) {
+            for (int data = 0; data < 16; data++) {
+                for (final RotationXZ rotation : ROTATIONS) {
+                    Assert.assertEquals(BlockUtils.rotate((byte) data, typeID, rotation),
+                                        BlockUtils.computeRotation((byte) data, typeID, rotation),
+                                        "type " + typeID + " data " + data + " rotation " + rotation);
+                }
+            }
+        }
+    }
+
+    @Test public void testRotationOutsideTable() throws Exception {
+        Assert.assertEquals(BlockUtils.rotate((byte) 3, 300, RotationXZ.cw()), (byte) 3);
+        Assert.assertEquals(BlockUtils.rotate((byte) 0x13, 17, RotationXZ.cw()),
+                            BlockUtils.computeRotation((byte) 0x13, 17, RotationXZ.cw()));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of Movecraft.
+ *
+ *     Movecraft is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Movecraft is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Movecraft.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.countercraft.movecraft.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class RadixSortTest {
+
+    @Test public void testMatchesArraysSort() throws Exception {
+        final Random random = new Random(42);
+        for (final int bits : new int[] { 0, 1, 11, 12, 22, 40, 63 }) {
+            final long[] keys = new long[5000];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = bits == 0 ? 0 : random.nextLong() >>> (64 - bits);
+            }
+            final long[] expected = keys.clone();
+            Arrays.sort(expected);
+            RadixSort.sort(keys, keys.length, bits);
+            Assert.assertEquals(keys, expected);
+        }
+    }
+
+    @Test public void testSortsPrefixOnly() throws Exception {
+        final long[] keys = { 5, 3, 9, 1, 0 };
+        RadixSort.sort(keys, 3, RadixSort.bitsFor(9));
+        Assert.assertEquals(keys, new long[] { 3, 5, 9, 1, 0 });
+    }
+
+    @Test public void testBitsFor() throws Exception {
+        Assert.assertEquals(RadixSort.bitsFor(0), 0);
+        Assert.assertEquals(RadixSort.bitsFor(1), 1);
+        Assert.assertEquals(RadixSort.bitsFor(255), 8);
+        Assert.assertEquals(RadixSort.bitsFor(256), 9);
+    }
+}